@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.bench.common.test;
+
+import com.wapitia.common.test.TextSource;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Benchmark state holding a generated text data file of some size, with
+ * one hash comment line in ten, in the manner of expected test output.
+ *
+ * <p>Data files are written once to the directory named by the
+ * {@code bench.data.dir} system property, by default
+ * {@code wapitia-bench} under {@code java.io.tmpdir}, and reused while
+ * their size is right. That directory must be on the class path, as the
+ * {@code bench} Ant target puts it, for the files to be read as
+ * resources.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+public class BenchData {
+
+    /**
+     * Counts the lines a benchmark has processed, so that JMH reports line
+     * throughput alongside the throughput of whole files.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Lines {
+
+        /** Lines processed this iteration. */
+        public long lines;
+
+        /**
+         * Counts one pass over a data file.
+         * @param data the data file passed over.
+         */
+        public void add(final BenchData data) {
+            lines += data.getLineCount();
+        }
+
+        /**
+         * Zeroes the count before each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            lines = 0L;
+        }
+    }
+
+    /**
+     * Size of the data file, as a number of bytes with an optional
+     * {@code KB}, {@code MB} or {@code GB} suffix.
+     */
+    @Param({ "4KB", "4MB", "1GB" })
+    public String size;
+
+    private Path path;
+    private long lineCount;
+
+    /**
+     * Writes the data file, unless one of the right size already exists.
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final long bytes = parseSize(size);
+        final Path dir = Paths.get(System.getProperty("bench.data.dir",
+            Paths.get(System.getProperty("java.io.tmpdir"), "wapitia-bench")
+                .toString()));
+        Files.createDirectories(dir);
+        path = dir.resolve("bench-" + size + ".txt");
+        if (!Files.exists(path) || Files.size(path) != bytes) {
+            write(path, bytes);
+        }
+        lineCount = TextSource.fromPath(path, StandardCharsets.UTF_8)
+            .toByteLineStream().count();
+    }
+
+    /**
+     * The data file.
+     * @return the path of the data file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * The number of lines in the data file, by which a benchmark
+     * advances {@link Lines} for each pass over the file.
+     * @return the number of lines.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * The data file's name as an absolute resource name, for
+     * {@link com.wapitia.common.test.TextSource#fromResource(String)}.
+     * @return the resource name.
+     */
+    public String getResourceName() {
+        return "/" + path.getFileName();
+    }
+
+    /**
+     * Parses a size such as {@code 64KB} into a number of bytes.
+     * @param size a number with an optional unit suffix.
+     * @return the number of bytes.
+     */
+    static long parseSize(final String size) {
+        final String upper = size.trim().toUpperCase(Locale.ROOT);
+        final String[] units = { "KB", "MB", "GB" };
+        for (int i = 0; i < units.length; ++i) {
+            if (upper.endsWith(units[i])) {
+                final String number =
+                    upper.substring(0, upper.length() - 2).trim();
+                return Long.parseLong(number) << (10 * (i + 1));
+            }
+        }
+        return Long.parseLong(upper);
+    }
+
+    /**
+     * Writes lines of varying lengths to exactly fill some number of
+     * bytes.
+     */
+    private static void write(final Path path, final long bytes)
+        throws IOException
+    {
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out =
+                Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            long written = 0L;
+            long line = 0L;
+            while (written < bytes) {
+                String text = line % 10 == 0
+                    ? "# comment " + line
+                    : "line " + line + " value " + Long.toHexString(
+                        line * 0x9E3779B97F4A7C15L)
+                        + "    padding".substring((int) (line % 11));
+                if (written + text.length() + 1 > bytes) {
+                    text = text.substring(0,
+                        (int) Math.max(0L, bytes - written - 1));
+                }
+                out.write(text);
+                out.write('\n');
+                written += text.length() + 1;
+                ++line;
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
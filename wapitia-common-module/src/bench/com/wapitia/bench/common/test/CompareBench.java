@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.bench.common.test;
+
+import com.wapitia.common.test.ByteTextSource;
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line throughput of the {@link CompareTestData} assertions, comparing a
+ * data file with itself so that every line is compared, the worst case
+ * of a passing test.
+ *
+ * @author Corey Morgan
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompareBench {
+
+    /**
+     * Compares the expected lines of a resource with those of a file.
+     * @param data the data file.
+     * @param lines line counter.
+     */
+    @Benchmark
+    public void assertEqualResource(
+        final BenchData data,
+        final BenchData.Lines lines)
+    {
+        CompareTestData.assertEqual(data.getResourceName(),
+            source(data).toStream());
+        lines.add(data);
+    }
+
+    /**
+     * Compares two streams of String lines.
+     * @param data the data file.
+     * @param lines line counter.
+     */
+    @Benchmark
+    public void assertEqual(
+        final BenchData data,
+        final BenchData.Lines lines)
+    {
+        CompareTestData.assertEqual(source(data).toStream(),
+            source(data).toStream(), CompareTestData.noHashComments());
+        lines.add(data);
+    }
+
+    /**
+     * Compares two streams of String lines in parallel chunks.
+     * @param data the data file.
+     * @param lines line counter.
+     */
+    @Benchmark
+    public void assertEqualParallel(
+        final BenchData data,
+        final BenchData.Lines lines)
+    {
+        CompareTestData.assertEqualParallel(source(data).toStream(),
+            source(data).toStream(), String::compareTo,
+            CompareTestData.noHashComments(), true);
+        lines.add(data);
+    }
+
+    /**
+     * Compares the digests of two streams of String lines.
+     * @param data the data file.
+     * @param lines line counter.
+     */
+    @Benchmark
+    public void assertEqualDigest(
+        final BenchData data,
+        final BenchData.Lines lines)
+    {
+        CompareTestData.assertEqualDigest(() -> source(data).toStream(),
+            () -> source(data).toStream(), CompareTestData.noHashComments(),
+            true);
+        lines.add(data);
+    }
+
+    /**
+     * Compares two streams of byte lines.
+     * @param data the data file.
+     * @param lines line counter.
+     */
+    @Benchmark
+    public void assertEqualBytes(
+        final BenchData data,
+        final BenchData.Lines lines)
+    {
+        CompareTestData.assertEqualBytes(source(data).toByteLineStream(),
+            source(data).toByteLineStream(),
+            CompareTestData.noHashCommentBytes(), true);
+        lines.add(data);
+    }
+
+    private static ByteTextSource source(final BenchData data) {
+        return TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.bench.common.test;
+
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Line throughput of dropping the hash comment lines of a mapped data
+ * file, with {@link CompareTestData#noHashComments()} on Strings and byte
+ * lines, and, as a baseline, with the comment regular expression matched
+ * per line.
+ *
+ * @author Corey Morgan
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterBench {
+
+    private static final Pattern COMMENT =
+        Pattern.compile(CompareTestData.HASH_COMMENT_REGEX);
+
+    /**
+     * Filters String lines by matching the comment regular expression.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the kept lines.
+     */
+    @Benchmark
+    public void regex(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8)
+            .toStream()
+            .filter(line -> !COMMENT.matcher(line).matches())
+            .forEach(hole::consume);
+        lines.add(data);
+    }
+
+    /**
+     * Filters String lines with {@code noHashComments()}.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the kept lines.
+     */
+    @Benchmark
+    public void noHashComments(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8)
+            .toStream()
+            .filter(CompareTestData.noHashComments())
+            .forEach(hole::consume);
+        lines.add(data);
+    }
+
+    /**
+     * Filters byte lines with {@code noHashCommentBytes()}.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the kept lines.
+     */
+    @Benchmark
+    public void noHashCommentBytes(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8)
+            .toByteLineStream()
+            .filter(CompareTestData.noHashCommentBytes())
+            .forEach(hole::consume);
+        lines.add(data);
+    }
+
+}
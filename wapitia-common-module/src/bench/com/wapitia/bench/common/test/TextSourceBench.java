@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.bench.common.test;
+
+import com.wapitia.common.test.TextSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Line throughput of reading a data file through the kinds of
+ * {@link TextSource}: a resource, as {@code fromResource} gives it or
+ * streamed by a {@code StreamTextSource} every time, and a
+ * memory-mapped file decoded to Strings, viewed as byte lines, or split
+ * among threads.
+ *
+ * @author Corey Morgan
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TextSourceBench {
+
+    /**
+     * Reads the lines of a resource through {@code fromResource}, as for
+     * expected test data: a resource within the golden cache's budget is
+     * loaded once and then read from memory, a larger one is streamed by a
+     * {@code StreamTextSource} each time.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the lines.
+     */
+    @Benchmark
+    public void fromResource(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        try (Stream<String> stream =
+                TextSource.fromResource(data.getResourceName()).toStream()) {
+            stream.forEach(hole::consume);
+        }
+        lines.add(data);
+    }
+
+    /**
+     * Streams the lines of a resource through {@code fromStream}, as
+     * {@code fromResource} does for a resource too large to cache, so that
+     * the streaming path is measured whatever the size of the data.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the lines.
+     */
+    @Benchmark
+    public void streamedResource(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        try (TextSource source = TextSource.fromStream(
+                TextSourceBench.class.getResourceAsStream(
+                    data.getResourceName()), StandardCharsets.UTF_8)) {
+            source.toStream().forEach(hole::consume);
+        }
+        lines.add(data);
+    }
+
+    /**
+     * Reads the lines of a mapped file as Strings.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the lines.
+     */
+    @Benchmark
+    public void mappedStrings(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8)
+            .toStream().forEach(hole::consume);
+        lines.add(data);
+    }
+
+    /**
+     * Reads the lines of a mapped file as byte line views.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the lines.
+     */
+    @Benchmark
+    public void mappedByteLines(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8)
+            .toByteLineStream().forEach(hole::consume);
+        lines.add(data);
+    }
+
+    /**
+     * Reads the lines of a mapped file as byte line views in parallel.
+     * @param data the data file.
+     * @param lines line counter.
+     * @param hole consumer of the lines.
+     */
+    @Benchmark
+    public void mappedParallel(
+        final BenchData data,
+        final BenchData.Lines lines,
+        final Blackhole hole)
+    {
+        hole.consume(TextSource.fromPath(data.getPath(), StandardCharsets.UTF_8)
+            .toByteLineStream().parallel()
+            .mapToInt(CharSequence::length).sum());
+        lines.add(data);
+    }
+
+}
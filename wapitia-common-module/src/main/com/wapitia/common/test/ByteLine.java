@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A line of text held as a view over a range of bytes in some
+ * {@link ByteBuffer}, such as a memory-mapped golden file.
+ *
+ * <p>Nothing is copied or decoded when a {@code ByteLine} is made.
+ * As a {@link CharSequence} each byte reads as a single {@code char}
+ * in the range 0 to 255, so an ASCII line reads as its own text, and two
+ * lines hold the same characters whenever they hold the same bytes,
+ * whatever the encoding. Only {@link #toString()} decodes, using the
+ * {@link Charset} of the source the line came from. A line holding
+ * non-ASCII bytes therefore does not read as its text, and is decoded by
+ * {@link com.wapitia.common.test.junit.CompareTestData#compareContent
+ * CompareTestData.compareContent} when compared with anything but a line
+ * in the same encoding.
+ *
+ * @author Corey Morgan
+ */
+public final class ByteLine
+    implements CharSequence, Comparable<ByteLine> {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private final Charset charset;
+
+    /**
+     * Creates a view over {@code length} bytes of {@code buffer}
+     * starting at the absolute index {@code offset}.
+     * The buffer's position and limit are neither used nor changed.
+     *
+     * @param buffer bytes holding the line, without its line terminator.
+     * @param offset absolute index of the first byte of the line.
+     * @param length number of bytes in the line.
+     * @param charset character set used to decode the line as a String.
+     */
+    ByteLine(
+        final ByteBuffer buffer,
+        final int offset,
+        final int length,
+        final Charset charset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.charset = charset;
+    }
+
+    /**
+     * Number of bytes in this line.
+     * @return the line length in bytes, which is also its length as a
+     *         {@code CharSequence}.
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The byte at {@code index} presented as a {@code char} from 0 to 255.
+     * @param index index of the byte within this line.
+     * @return the unsigned byte value as a {@code char}.
+     */
+    @Override
+    public char charAt(final int index) {
+        return (char) (byteAt(index) & 0xFF);
+    }
+
+    /**
+     * The raw byte at {@code index} of this line.
+     * @param index index of the byte within this line.
+     * @return the byte value.
+     * @throws IndexOutOfBoundsException if {@code index} is outside the
+     *         line.
+     */
+    public byte byteAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        return buffer.get(offset + index);
+    }
+
+    /**
+     * {@code true} when every byte of this line is ASCII, so that as a
+     * {@code CharSequence} it reads as its own text.
+     * @return {@code false} if some byte is 0x80 or above.
+     */
+    public boolean isAscii() {
+        int idx = 0;
+        while (idx + Long.BYTES <= length) {
+            if ((buffer.getLong(offset + idx) & 0x8080808080808080L) != 0L) {
+                return false;
+            }
+            idx += Long.BYTES;
+        }
+        while (idx < length) {
+            if (buffer.get(offset + idx) < 0) {
+                return false;
+            }
+            ++idx;
+        }
+        return true;
+    }
+
+    /**
+     * Another view over a part of this line's bytes.
+     * @param start index of the first byte, inclusive.
+     * @param end index of the last byte, exclusive.
+     * @return a {@code ByteLine} sharing this line's buffer.
+     */
+    @Override
+    public ByteLine subSequence(final int start, final int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(
+                "start " + start + ", end " + end + ", length " + length);
+        }
+        return new ByteLine(buffer, offset + start, end - start, charset);
+    }
+
+    /**
+     * Character set used to decode this line.
+     * @return the charset of the line's source.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * A read-only {@link ByteBuffer} slice over exactly this line's bytes.
+     * @return a new buffer whose position is zero and whose limit is the
+     *         line length.
+     */
+    public ByteBuffer toByteBuffer() {
+        final ByteBuffer dup = buffer.asReadOnlyBuffer();
+        dup.limit(offset + length);
+        dup.position(offset);
+        return dup.slice();
+    }
+
+    /**
+     * {@code true} when {@code other} holds exactly the same bytes as
+     * this line.
+     * @param other line to compare with, not null.
+     * @return {@code true} if both lines hold the same bytes.
+     */
+    public boolean contentEquals(final ByteLine other) {
+        return other.length == length && mismatch(other) < 0;
+    }
+
+    /**
+     * Orders lines by their bytes, taken as unsigned values, and then by
+     * length, which for ASCII text is the order of
+     * {@link String#compareTo(String)}.
+     * @param other line to compare with, not null.
+     * @return zero when both lines hold the same bytes, otherwise a
+     *         negative or positive number as this line orders before or
+     *         after {@code other}.
+     */
+    @Override
+    public int compareTo(final ByteLine other) {
+        final int idx = mismatch(other);
+        if (idx < 0) {
+            return 0;
+        }
+        if (idx == length || idx == other.length) {
+            return length - other.length;
+        }
+        return (buffer.get(offset + idx) & 0xFF)
+            - (other.buffer.get(other.offset + idx) & 0xFF);
+    }
+
+    /**
+     * Finds the first index where this line and {@code other} differ,
+     * comparing eight bytes at a time while it can.
+     * @param other line to compare with.
+     * @return the index of the first differing byte, the length of the
+     *         shorter line if one is a prefix of the other, or -1 if both
+     *         hold the same bytes.
+     */
+    private int mismatch(final ByteLine other) {
+        final int len = Math.min(length, other.length);
+        int idx = 0;
+        while (idx + Long.BYTES <= len
+            && buffer.getLong(offset + idx)
+                == other.buffer.getLong(other.offset + idx)) {
+            idx += Long.BYTES;
+        }
+        while (idx < len) {
+            if (buffer.get(offset + idx)
+                != other.buffer.get(other.offset + idx)) {
+                return idx;
+            }
+            ++idx;
+        }
+        return length == other.length ? -1 : len;
+    }
+
+    /**
+     * Decodes this line using the charset of its source.
+     * @return the line's text.
+     */
+    @Override
+    public String toString() {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, charset);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof ByteLine && contentEquals((ByteLine) obj);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < length; ++i) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code TextSource} whose lines are found by scanning encoded bytes
+ * held in one or more {@link ByteBuffer}s, and handed out as
+ * {@link ByteLine} views over those bytes without copying or decoding.
+ *
+ * <p>A line ends at a line feed {@code '\n'}, a carriage return
+ * {@code '\r'}, or a carriage return followed by a line feed, just as with
+ * {@link java.io.BufferedReader#readLine()}. The byte extent of the lines
+ * is known, so the streams split at line boundaries and scale across the
+ * common fork-join pool when made {@link Stream#parallel() parallel}; see
+ * {@link LineSpliterator}. Unlike a {@link ReaderTextSource}, such a
+ * source may be streamed any number of times.
+ *
+ * @author Corey Morgan
+ */
+public abstract class ByteTextSource implements TextSource {
+
+    private final Charset charset;
+
+    /**
+     * Creates a {@link TextSource} decoding its lines with some charset.
+     * @param charset character set used when decoding lines to Strings.
+     */
+    protected ByteTextSource(final Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Produce a stream of the lines, each decoded to a String.
+     * @return a non-null {@code Stream} of {@code String}s.
+     */
+    @Override
+    public Stream<String> toStream() {
+        return toByteLineStream().map(ByteLine::toString);
+    }
+
+    /**
+     * Produce a stream of the lines as {@link ByteLine} views, typed for
+     * use with the {@code CharSequence} comparisons. Nothing is decoded,
+     * and the lines remain valid after the stream completes.
+     * @return a non-null {@code Stream} of {@code CharSequence}s.
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<CharSequence> toCharSequenceStream() {
+        final Stream<? extends CharSequence> lines = toByteLineStream();
+        return (Stream<CharSequence>) lines;
+    }
+
+    /**
+     * Produce a stream of the lines as {@link ByteLine} views over the
+     * source's bytes. Nothing is decoded, and the lines remain valid after
+     * the stream completes.
+     * @return a non-null {@code Stream} of {@code ByteLine}s.
+     */
+    public Stream<ByteLine> toByteLineStream() {
+        return StreamSupport.stream(TestDataMetrics.countBytes(
+            new LineSpliterator(regions(), charset)), false);
+    }
+
+    /**
+     * Reads the numbers in the source's lines as ints, without boxing or
+     * making Strings of them. Numbers are separated by whitespace or
+     * commas, and hash comment lines are skipped; see {@link NumberScanner}.
+     * @return a non-null sequential {@code IntStream}.
+     * @throws NumberFormatException when a token that is not an int is
+     *         reached.
+     */
+    public IntStream toIntStream() {
+        return StreamSupport.intStream(
+            new NumberScanner(regions()).ints(), false);
+    }
+
+    /**
+     * Reads the numbers in the source's lines as longs, as
+     * {@link #toIntStream()} does ints.
+     * @return a non-null sequential {@code LongStream}.
+     * @throws NumberFormatException when a token that is not a long is
+     *         reached.
+     */
+    public LongStream toLongStream() {
+        return StreamSupport.longStream(
+            new NumberScanner(regions()).longs(), false);
+    }
+
+    /**
+     * Reads the numbers in the source's lines as doubles, as
+     * {@link #toIntStream()} does ints. Most decimal numbers are converted
+     * exactly without making a String; the rest go through
+     * {@link Double#parseDouble(String)}.
+     * @return a non-null sequential {@code DoubleStream}.
+     * @throws NumberFormatException when a token that is not a number is
+     *         reached.
+     */
+    public DoubleStream toDoubleStream() {
+        return StreamSupport.doubleStream(
+            new NumberScanner(regions()).doubles(), false);
+    }
+
+    /**
+     * Character set used to decode lines to Strings.
+     * @return the charset.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * The bytes of this source's lines, each buffer read from position zero
+     * to its limit and holding only whole lines.
+     * @return the buffers in line order.
+     */
+    protected abstract List<ByteBuffer> regions();
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable {@code TextSource} holding its lines in memory in a compact
+ * layout: the encoded text in one byte array, and the offset of each line
+ * in one int array, rather than a String per line. It costs little more
+ * memory than the size of the text, plus four bytes a line.
+ *
+ * <p>Once loaded the source may be streamed any number of times, by any
+ * number of threads at once, so one copy of some golden resource can be
+ * shared by every test that compares against it. As the number of lines
+ * is known, its streams are {@link Spliterator#SIZED SIZED} and split
+ * evenly by line when made {@link Stream#parallel() parallel}.
+ *
+ * @author Corey Morgan
+ */
+public class CompactTextSource extends ByteTextSource {
+
+    /**
+     * Most bytes of text a source can hold, {@value}, a little under the
+     * largest array some virtual machines allow.
+     */
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    static final String TOO_LARGE_STR =
+        "Text of %d bytes or more is too large to hold";
+
+    private final ByteBuffer text;
+    private final int[] starts;
+    private final int lineCount;
+
+    /**
+     * Creates a {@link TextSource} over the lines of some encoded text.
+     * @param bytes the encoded text, which is not copied and must not be
+     *              changed afterwards.
+     * @param charset character set used when decoding lines to Strings.
+     */
+    protected CompactTextSource(final byte[] bytes, final Charset charset) {
+        super(charset);
+        this.text = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        int[] found = new int[Math.max(16, bytes.length / 32)];
+        int count = 0;
+        int pos = 0;
+        while (pos < bytes.length) {
+            if (count + 1 == found.length) {
+                found = Arrays.copyOf(found, found.length * 2);
+            }
+            found[count++] = pos;
+            pos = LineSpliterator.nextLine(text,
+                LineSpliterator.lineEnd(text, pos, bytes.length),
+                bytes.length);
+        }
+        found[count] = bytes.length;
+        this.starts = Arrays.copyOf(found, count + 1);
+        this.lineCount = count;
+    }
+
+    /**
+     * Reads all of a stream of encoded text into a new source, and closes
+     * the stream.
+     * @param in stream of encoded text.
+     * @param charset character set used when decoding lines to Strings.
+     * @return the source.
+     * @throws UncheckedIOException if the stream cannot be read, or holds
+     *         {@value #MAX_SIZE} bytes or more.
+     */
+    static CompactTextSource read(
+        final InputStream in,
+        final Charset charset)
+    {
+        return read(in, charset, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads all of a stream of encoded text into a new source, unless it
+     * holds more than some number of bytes, and closes the stream.
+     * @param in stream of encoded text.
+     * @param charset character set used when decoding lines to Strings.
+     * @param limit most bytes to read.
+     * @return the source, or {@code null} if the stream holds more than
+     *         {@code limit} bytes.
+     * @throws UncheckedIOException if the stream cannot be read, or holds
+     *         {@value #MAX_SIZE} bytes or more within the limit.
+     */
+    static CompactTextSource read(
+        final InputStream in,
+        final Charset charset,
+        final long limit)
+    {
+        try (InputStream input = in) {
+            byte[] bytes = new byte[
+                Math.max(8192, Math.min(input.available(), MAX_SIZE - 1) + 1)];
+            int size = 0;
+            int count = input.read(bytes, 0, bytes.length);
+            while (count > 0) {
+                size += count;
+                if (size > limit) {
+                    return null;
+                }
+                if (size == bytes.length) {
+                    if (size >= MAX_SIZE) {
+                        throw new IOException(
+                            String.format(TOO_LARGE_STR, MAX_SIZE));
+                    }
+                    bytes = Arrays.copyOf(bytes,
+                        (int) Math.min(2L * size, MAX_SIZE));
+                }
+                count = input.read(bytes, size, bytes.length - size);
+            }
+            return new CompactTextSource(
+                size == bytes.length ? bytes : Arrays.copyOf(bytes, size),
+                charset);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Number of lines.
+     * @return the number of lines.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Size of the encoded text.
+     * @return the number of bytes.
+     */
+    public int getByteSize() {
+        return text.limit();
+    }
+
+    /**
+     * Produce a stream of the lines as {@link ByteLine} views over the
+     * source's bytes, sized and splitting evenly by line.
+     * @return a non-null {@code Stream} of {@code ByteLine}s.
+     */
+    @Override
+    public Stream<ByteLine> toByteLineStream() {
+        return StreamSupport.stream(
+            TestDataMetrics.countBytes(new Lines(0, lineCount)), false);
+    }
+
+    @Override
+    protected List<ByteBuffer> regions() {
+        return Collections.singletonList(text);
+    }
+
+    /**
+     * The line at some index, without its line terminator.
+     */
+    private ByteLine line(final int index) {
+        final int start = starts[index];
+        int end = starts[index + 1];
+        if (end > start && text.get(end - 1) == '\n') {
+            --end;
+        }
+        if (end > start && text.get(end - 1) == '\r') {
+            --end;
+        }
+        return new ByteLine(text, start, end - start, getCharset());
+    }
+
+    /**
+     * Spliterator over a range of line indexes.
+     */
+    private final class Lines implements Spliterator<ByteLine> {
+
+        private int next;
+        private final int end;
+
+        Lines(final int next, final int end) {
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super ByteLine> action) {
+            if (next >= end) {
+                return false;
+            }
+            action.accept(line(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super ByteLine> action) {
+            while (next < end) {
+                action.accept(line(next++));
+            }
+        }
+
+        @Override
+        public Spliterator<ByteLine> trySplit() {
+            final int mid = (next + end) >>> 1;
+            if (mid <= next) {
+                return null;
+            }
+            final Lines prefix = new Lines(next, mid);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+/**
+ * Converts decimal numbers written as text to doubles exactly, without
+ * making a String, when they are simple enough to, for the readers of
+ * numeric golden data.
+ *
+ * <p>A number whose digits make an integer below 2<sup>53</sup>, scaled by
+ * a power of ten no more than 22 either way, is converted exactly by one
+ * multiplication or division, as most numbers written by programs can be.
+ * Any other, such as {@code NaN}, {@code 6.02214076e23} or text that is not
+ * a number at all, is left to the caller, which will usually pass it to
+ * {@link Double#parseDouble(String)}.
+ *
+ * @author Corey Morgan
+ */
+public final class DecimalParser {
+
+    /** Largest mantissa of the exact fast path, 2 to the 53rd. */
+    private static final long MAX_EXACT = 1L << 53;
+
+    /** Most significant digits read before giving up, fewer than overflow. */
+    private static final int MAX_DIGITS = 18;
+
+    /** Largest exponent read before giving up. */
+    private static final int MAX_EXPONENT = 1000;
+
+    /** Powers of ten exactly representable as doubles. */
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    /**
+     * Converts a decimal number exactly, if it is simple enough to.
+     * @param cs the whole text of the number, with an optional sign, digits
+     *           with an optional decimal point, and an optional exponent.
+     * @return the number, or {@code NaN} if it is not a number that can be
+     *         converted exactly this way.
+     */
+    public static double parseExact(final CharSequence cs) {
+        final int len = cs.length();
+        int idx = 0;
+        final boolean negative = len > 0 && cs.charAt(0) == '-';
+        if (negative || len > 0 && cs.charAt(0) == '+') {
+            ++idx;
+        }
+        long mantissa = 0L;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        while (idx < len) {
+            final char ch = cs.charAt(idx);
+            if (ch >= '0' && ch <= '9') {
+                seenDigit = true;
+                if (mantissa != 0L || ch != '0') {
+                    if (++digits > MAX_DIGITS) {
+                        return Double.NaN;
+                    }
+                    mantissa = mantissa * 10 + (ch - '0');
+                }
+                if (seenPoint) {
+                    --scale;
+                }
+            } else if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (ch == 'e' || ch == 'E') {
+                break;
+            } else {
+                return Double.NaN;
+            }
+            ++idx;
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        if (idx < len) {
+            final int exponent = exponent(cs, idx + 1, len);
+            if (exponent == Integer.MIN_VALUE) {
+                return Double.NaN;
+            }
+            scale += exponent;
+        }
+        if (mantissa == 0L) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (mantissa >= MAX_EXACT || Math.abs(scale) >= POWERS.length) {
+            return Double.NaN;
+        }
+        final double value = scale < 0
+            ? mantissa / POWERS[-scale]
+            : mantissa * POWERS[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * The signed exponent from {@code at} to {@code len}, or
+     * {@code Integer.MIN_VALUE} if there is none or it is too large.
+     */
+    private static int exponent(
+        final CharSequence cs,
+        final int at,
+        final int len)
+    {
+        int idx = at;
+        final boolean negative = idx < len && cs.charAt(idx) == '-';
+        if (negative || idx < len && cs.charAt(idx) == '+') {
+            ++idx;
+        }
+        if (idx == len) {
+            return Integer.MIN_VALUE;
+        }
+        int exponent = 0;
+        while (idx < len) {
+            final int digit = cs.charAt(idx++) - '0';
+            if (digit < 0 || digit > 9 || exponent > MAX_EXPONENT) {
+                return Integer.MIN_VALUE;
+            }
+            exponent = exponent * 10 + digit;
+        }
+        return negative ? -exponent : exponent;
+    }
+
+    /**
+     * Constructor is private as this is a utility class.
+     */
+    private DecimalParser() {
+    }
+
+}
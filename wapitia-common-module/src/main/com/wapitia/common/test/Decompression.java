@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Recognizes compressed resources, and wraps their streams to decompress
+ * them, so that a golden file may be kept compressed and read just as if
+ * it were not.
+ *
+ * <p>A resource is taken to be gzip if its name ends in {@code .gz} or
+ * its first two bytes are the gzip magic number, and zlib deflate if its
+ * name ends in {@code .zz} or {@code .deflate}, or it starts with one of
+ * the zlib headers that cannot begin ASCII text. Anything else is passed
+ * through unchanged.
+ *
+ * <p>Gzip made of many members in the blocked layout of {@code bgzip},
+ * each recording its own compressed size, may be decompressed in parallel
+ * by setting the {@value #PARALLEL_PROPERTY} system property to
+ * {@code true}; see {@link ParallelGzipInputStream}.
+ *
+ * @author Corey Morgan
+ */
+final class Decompression {
+
+    /**
+     * System property enabling parallel decompression of blocked gzip,
+     * {@value}.
+     */
+    static final String PARALLEL_PROPERTY = "wapitia.gzip.parallel";
+
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    private static final int GZIP_MAGIC_2 = 0x8B;
+    private static final int ZLIB_DEFLATE = 0x78;
+
+    /**
+     * Wraps a resource's stream to decompress it if it is compressed.
+     * @param raw stream of the resource's bytes.
+     * @param name name of the resource.
+     * @return a stream of the decompressed bytes.
+     * @throws IOException if the stream cannot be read.
+     */
+    static InputStream decompress(final InputStream raw, final String name)
+        throws IOException
+    {
+        return decompress(raw, name, Boolean.getBoolean(PARALLEL_PROPERTY));
+    }
+
+    /**
+     * Wraps a resource's stream to decompress it if it is compressed.
+     * @param raw stream of the resource's bytes.
+     * @param name name of the resource.
+     * @param parallel {@code true} to decompress blocked gzip in parallel.
+     * @return a stream of the decompressed bytes.
+     * @throws IOException if the stream cannot be read.
+     */
+    static InputStream decompress(
+        final InputStream raw,
+        final String name,
+        final boolean parallel) throws IOException
+    {
+        final BufferedInputStream in = new BufferedInputStream(raw);
+        in.mark(2);
+        final int first = in.read();
+        final int second = in.read();
+        in.reset();
+        final String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz")
+            || first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            return parallel
+                ? new ParallelGzipInputStream(in)
+                : new GZIPInputStream(in, 1 << 16);
+        }
+        if (lower.endsWith(".zz") || lower.endsWith(".deflate")
+            || first == ZLIB_DEFLATE
+                && (second == 0x01 || second == 0x9C || second == 0xDA)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Constructor is private as this is a utility class.
+     */
+    private Decompression() {
+    }
+
+}
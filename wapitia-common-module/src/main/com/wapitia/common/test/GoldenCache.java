@@ -0,0 +1,451 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of golden text resources, each loaded once into a
+ * {@link CompactTextSource} and shared by every test that reads it, under a
+ * budget of bytes held.
+ *
+ * <p>Resources are keyed on the URL at which
+ * {@link Class#getResource(String)} finds them, on the modification time
+ * and length of the file or jar file holding them, and on the charset
+ * decoding their lines. So test classes loaded afresh by another class
+ * loader, as the
+ * {@link com.wapitia.common.test.junit.WapitiaTestMain#runResident
+ * resident runner} loads them on each run, still share the resources
+ * already loaded, while a golden file edited or a jar rebuilt between
+ * runs is loaded again. A resource held neither in a file nor in a jar
+ * file is also keyed on its class loader, so each new class loader loads
+ * it again. When the cache would exceed its budget the least recently used
+ * resources are evicted. When several threads ask for a resource that is
+ * not cached, one of them loads it while the others wait for it. A
+ * resource larger than the budget, or whose size is unknown before
+ * reading it, is not loaded at all, so that it can be streamed instead. A
+ * compressed resource is decompressed as it loads, and dropped once it
+ * decompresses to more than the budget, as is any resource whose lines
+ * take it over the budget once loaded. A resource that could not be
+ * loaded is remembered as such, so later requests for it go straight to
+ * streaming it, until the resource is changed.
+ *
+ * <p>The {@link #shared()} cache has a budget of a quarter of the maximum
+ * heap, up to {@value #DEFAULT_BUDGET} bytes, so that suites run with a
+ * small heap, or several at once, still have room for their tests, unless
+ * the {@value #BUDGET_PROPERTY} system property says otherwise.
+ *
+ * @author Corey Morgan
+ */
+public final class GoldenCache {
+
+    /**
+     * System property setting the budget of the shared cache in bytes,
+     * {@value}.
+     */
+    public static final String BUDGET_PROPERTY = "wapitia.golden.cache.bytes";
+
+    /**
+     * Most default budget of the shared cache, {@value} bytes, which a
+     * quarter of the maximum heap may lower.
+     */
+    public static final long DEFAULT_BUDGET = 256L << 20;
+
+    private static final GoldenCache SHARED = new GoldenCache(
+        Long.getLong(BUDGET_PROPERTY, Math.min(DEFAULT_BUDGET,
+            Runtime.getRuntime().maxMemory() / 4)));
+
+    private final long budget;
+    private final Map<Key, CompactTextSource> entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<CompactTextSource>> loading =
+        new HashMap<>();
+    private final Set<Key> unloadable = new HashSet<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long weight;
+
+    /**
+     * Creates an empty cache.
+     * @param budget most bytes of resources held, counting four bytes a
+     *               line for the line offsets.
+     */
+    public GoldenCache(final long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * The process-wide cache that
+     * {@link TextSource#fromResource(String, Class)} reads through.
+     * @return the shared cache.
+     */
+    public static GoldenCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * The resource from the cache, loading it if it is not cached.
+     * @param resourceName the name of a resource, suitable for passing
+     *                     to {@link Class#getResourceAsStream(String)}.
+     * @param clss {@code Class} to use to load the text resource.
+     * @param charset character set used when decoding lines to Strings.
+     * @return the resource, or {@code null} if there is no such resource,
+     *         or it is too large for the cache.
+     * @throws UncheckedIOException if the resource cannot be read.
+     */
+    public CompactTextSource get(
+        final String resourceName,
+        final Class<?> clss,
+        final Charset charset)
+    {
+        final String name = resolve(resourceName, clss);
+        final URL url = classLoader(clss).getResource(name);
+        if (url == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        final Key key = new Key(url, classLoader(clss), charset);
+        final CompletableFuture<CompactTextSource> pending;
+        final boolean loader;
+        synchronized (this) {
+            final CompactTextSource cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            misses.incrementAndGet();
+            if (unloadable.contains(key)) {
+                return null;
+            }
+            final CompletableFuture<CompactTextSource> inFlight =
+                loading.get(key);
+            loader = inFlight == null;
+            pending = loader ? new CompletableFuture<>() : inFlight;
+            if (loader) {
+                loading.put(key, pending);
+            }
+        }
+        if (!loader) {
+            try {
+                return pending.join();
+            } catch (CompletionException ex) {
+                throw unchecked(ex.getCause());
+            }
+        }
+        try {
+            loads.incrementAndGet();
+            final CompactTextSource loaded = load(url, name, charset);
+            synchronized (this) {
+                loading.remove(key);
+                if (loaded != null) {
+                    add(key, loaded);
+                } else {
+                    unloadable.add(key);
+                }
+            }
+            pending.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error ex) {
+            synchronized (this) {
+                loading.remove(key);
+            }
+            pending.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Number of requests answered from the cache.
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of requests not answered from the cache, including those
+     * waiting on another thread's load.
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of loads run, which is fewer than the misses when several
+     * threads wait on one load.
+     * @return the load count.
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /**
+     * Number of resources evicted to stay within the budget.
+     * @return the eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Bytes held by the cached resources.
+     * @return the weight of the cache.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Most bytes of resources held.
+     * @return the budget.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Number of cached resources.
+     * @return the number of resources.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops every cached resource, and forgets which could not be loaded.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        unloadable.clear();
+        weight = 0L;
+    }
+
+    /**
+     * The name of a resource as its class loader sees it, as
+     * {@link Class#getResourceAsStream(String)} resolves it.
+     */
+    private static String resolve(final String name, final Class<?> clss) {
+        if (name.startsWith("/")) {
+            return name.substring(1);
+        }
+        Class<?> base = clss;
+        while (base.isArray()) {
+            base = base.getComponentType();
+        }
+        final String className = base.getName();
+        final int dot = className.lastIndexOf('.');
+        return dot < 0
+            ? name
+            : className.substring(0, dot).replace('.', '/') + '/' + name;
+    }
+
+    private static ClassLoader classLoader(final Class<?> clss) {
+        final ClassLoader classLoader = clss.getClassLoader();
+        return classLoader == null
+            ? ClassLoader.getSystemClassLoader()
+            : classLoader;
+    }
+
+    /**
+     * The failure of another thread's load, to throw again in this one.
+     * Loads throw only unchecked exceptions and errors.
+     */
+    private static RuntimeException unchecked(final Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof RuntimeException
+            ? (RuntimeException) cause
+            : new IllegalStateException(cause);
+    }
+
+    private static long weigh(final CompactTextSource source) {
+        return source.getByteSize() + 4L * source.getLineCount();
+    }
+
+    /**
+     * Loads a resource, if it exists, its size is known to be within the
+     * budget, and its weight, lines and all, is found to be too.
+     */
+    private CompactTextSource load(
+        final URL url,
+        final String name,
+        final Charset charset)
+    {
+        try {
+            final URLConnection conn = url.openConnection();
+            // a rebuilt jar is opened afresh, not served from the jar cache
+            conn.setUseCaches(false);
+            final long length = conn.getContentLengthLong();
+            if (length < 0L || length > budget) {
+                conn.getInputStream().close();
+                return null;
+            }
+            final long started = TestDataMetrics.loadStarted();
+            final CompactTextSource loaded = CompactTextSource.read(
+                Decompression.decompress(conn.getInputStream(), name),
+                charset, budget);
+            TestDataMetrics.loaded(name, started);
+            return loaded == null || weigh(loaded) > budget ? null : loaded;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Adds a loaded resource, evicting the least recently used to stay
+     * within the budget.
+     */
+    private void add(final Key key, final CompactTextSource source) {
+        weight += weigh(source);
+        entries.put(key, source);
+        final Iterator<CompactTextSource> eldest = entries.values().iterator();
+        while (weight > budget && eldest.hasNext()) {
+            final CompactTextSource evicted = eldest.next();
+            if (evicted == source) {
+                break;
+            }
+            eldest.remove();
+            weight -= weigh(evicted);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Key of a cached resource: where it is, which version of the file
+     * holding it, and how it is decoded. A resource not held in a file,
+     * nor in a jar that is, is keyed on its class loader as well, which is
+     * held weakly, since there is no telling whether it has changed.
+     */
+    private static final class Key {
+
+        private static final long UNKNOWN = -1L;
+
+        private final String url;
+        private final long modified;
+        private final long length;
+        private final WeakReference<ClassLoader> classLoader;
+        private final Charset charset;
+        private final int hash;
+
+        Key(
+            final URL url,
+            final ClassLoader classLoader,
+            final Charset charset)
+        {
+            this.url = url.toExternalForm();
+            final File file = file(url);
+            this.modified = file == null ? UNKNOWN : file.lastModified();
+            this.length = file == null ? UNKNOWN : file.length();
+            this.classLoader =
+                file == null ? new WeakReference<>(classLoader) : null;
+            this.charset = charset;
+            this.hash = ((this.url.hashCode() * 31 + Long.hashCode(modified))
+                * 31 + System.identityHashCode(loader())) * 31
+                + charset.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash
+                && modified == other.modified
+                && length == other.length
+                && loader() == other.loader()
+                && url.equals(other.url)
+                && charset.equals(other.charset);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private ClassLoader loader() {
+            return classLoader == null ? null : classLoader.get();
+        }
+
+        /**
+         * The file holding a resource, itself for a file or the jar for an
+         * entry of a jar file, or {@code null} if it is held elsewhere.
+         */
+        private static File file(final URL url) {
+            URL located = url;
+            if ("jar".equals(located.getProtocol())) {
+                final String path = located.getPath();
+                final int bang = path.indexOf("!/");
+                try {
+                    located =
+                        new URL(bang < 0 ? path : path.substring(0, bang));
+                } catch (MalformedURLException ex) {
+                    return null;
+                }
+            }
+            if (!"file".equals(located.getProtocol())) {
+                return null;
+            }
+            try {
+                return Paths.get(located.toURI()).toFile();
+            } catch (URISyntaxException | IllegalArgumentException
+                | FileSystemNotFoundException ex) {
+                return null;
+            }
+        }
+    }
+
+}
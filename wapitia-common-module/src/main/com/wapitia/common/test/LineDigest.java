@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.util.stream.Stream;
+
+/**
+ * A streaming, non-cryptographic 64-bit digest of a sequence of lines.
+ *
+ * <p>Each character is folded in with the 64-bit FNV-1a step, each line
+ * end with a value no character can take, so that the same characters
+ * split into different lines give a different digest, and the line count
+ * and a final bit mix are applied by {@link #getValue()}. Two sequences
+ * of lines with equal digests are, with overwhelming likelihood, equal;
+ * two with different digests are certainly different.
+ *
+ * @author Corey Morgan
+ */
+public final class LineDigest {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final int LINE_END = 0x10000;
+
+    private long hash = OFFSET_BASIS;
+    private long lineCount;
+
+    /**
+     * Digests every line of some stream, in encounter order.
+     * @param lines lines to digest.
+     * @return the digest value of the lines.
+     */
+    public static long of(final Stream<? extends CharSequence> lines) {
+        final LineDigest digest = new LineDigest();
+        lines.forEachOrdered(digest::update);
+        return digest.getValue();
+    }
+
+    /**
+     * Folds the next line into the digest.
+     * @param line the line's characters, without a line terminator.
+     * @return this digest.
+     */
+    public LineDigest update(final CharSequence line) {
+        long mix = hash;
+        final int len = line.length();
+        for (int i = 0; i < len; ++i) {
+            mix = (mix ^ line.charAt(i)) * PRIME;
+        }
+        hash = (mix ^ LINE_END) * PRIME;
+        ++lineCount;
+        return this;
+    }
+
+    /**
+     * Number of lines digested so far.
+     * @return the line count.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * The digest of the lines so far.
+     * @return a 64-bit digest value.
+     */
+    public long getValue() {
+        long mix = hash ^ lineCount * PRIME;
+        mix = (mix ^ mix >>> 33) * 0xff51afd7ed558ccdL;
+        mix = (mix ^ mix >>> 33) * 0xc4ceb9fe1a85ec53L;
+        return mix ^ mix >>> 33;
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A compiled filter of text lines, testing {@code true} for the lines to
+ * keep and {@code false} for those to drop, such as comments and blank
+ * lines.
+ *
+ * <p>A filter is built by starting from {@link #keepAll()} and adding the
+ * kinds of line to drop, each step returning a new, immutable filter:
+ *
+ * <pre>
+ *   LineFilter filter = LineFilter.keepAll()
+ *       .dropHashComments()
+ *       .dropBlankLines()
+ *       .dropPrefix("//");
+ * </pre>
+ *
+ * <p>However many kinds of line are dropped, a line is tested in a single
+ * scan over its characters, with no regular expression, no
+ * {@link java.util.regex.Matcher} and nothing else allocated per line,
+ * rather than by a chain of {@link Predicate} lambdas each scanning the
+ * line again. Whitespace here is what a regular expression {@code \s}
+ * matches: space, tab, line feed, vertical tab, form feed and carriage
+ * return.
+ *
+ * <p>Lines may be any {@link CharSequence}. A {@link ByteLine} in UTF-8 or
+ * ASCII is scanned as bytes, with the same result as scanning its decoded
+ * text; one in any other encoding is decoded first. Prefixes are best
+ * kept to ASCII when filtering {@code ByteLine}s.
+ *
+ * @author Corey Morgan
+ */
+public final class LineFilter implements Predicate<String> {
+
+    private static final LineFilter KEEP_ALL =
+        new LineFilter(false, false, new char[0][]);
+
+    private final boolean dropHashComments;
+    private final boolean dropBlankLines;
+    private final char[][] prefixes;
+
+    private LineFilter(
+        final boolean dropHashComments,
+        final boolean dropBlankLines,
+        final char[][] prefixes)
+    {
+        this.dropHashComments = dropHashComments;
+        this.dropBlankLines = dropBlankLines;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * The filter keeping every line, from which others are built.
+     * @return a filter that drops nothing.
+     */
+    public static LineFilter keepAll() {
+        return KEEP_ALL;
+    }
+
+    /**
+     * A filter also dropping hash comment lines: those matching
+     * {@code ^\s*#.*$}, whitespace, a hash, and then anything but the
+     * line terminators a regular expression {@code '.'} will not match,
+     * which are U+000A, U+000D, U+0085, U+2028 and U+2029.
+     * @return a new filter.
+     */
+    public LineFilter dropHashComments() {
+        return new LineFilter(true, dropBlankLines, prefixes);
+    }
+
+    /**
+     * A filter also dropping blank lines: those empty or holding only
+     * whitespace.
+     * @return a new filter.
+     */
+    public LineFilter dropBlankLines() {
+        return new LineFilter(dropHashComments, true, prefixes);
+    }
+
+    /**
+     * A filter also dropping lines that start with {@code prefix} after
+     * any leading whitespace.
+     * @param prefix non-empty text marking lines to drop, such as
+     *               {@code "//"}.
+     * @return a new filter.
+     */
+    public LineFilter dropPrefix(final String prefix) {
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("empty prefix");
+        }
+        final char[][] more = Arrays.copyOf(prefixes, prefixes.length + 1);
+        more[prefixes.length] = prefix.toCharArray();
+        return new LineFilter(dropHashComments, dropBlankLines, more);
+    }
+
+    /**
+     * Tests a String line.
+     * @param line the line, without a line terminator.
+     * @return {@code true} if the line is to be kept.
+     */
+    @Override
+    public boolean test(final String line) {
+        return accepts(line);
+    }
+
+    /**
+     * Tests a line of any kind of character sequence.
+     * @param line the line, without a line terminator.
+     * @return {@code true} if the line is to be kept.
+     */
+    public boolean accepts(final CharSequence line) {
+        if (line instanceof ByteLine && !isUtf8((ByteLine) line)) {
+            return accepts(line.toString());
+        }
+        final int len = line.length();
+        int idx = 0;
+        while (idx < len && isSpace(line.charAt(idx))) {
+            ++idx;
+        }
+        if (idx == len) {
+            return !dropBlankLines;
+        }
+        if (dropHashComments && line.charAt(idx) == '#'
+            && !hasTerminator(line, idx + 1)) {
+            return false;
+        }
+        for (char[] prefix : prefixes) {
+            if (startsWith(line, idx, prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@code true} for the characters matched by a regular expression
+     * {@code \s}.
+     * @param ch a character.
+     * @return {@code true} if the character is whitespace.
+     */
+    public static boolean isSpace(final char ch) {
+        return ch == ' ' || ch >= '\t' && ch <= '\r';
+    }
+
+    private static boolean isUtf8(final ByteLine line) {
+        final Charset charset = line.getCharset();
+        return StandardCharsets.UTF_8.equals(charset)
+            || StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    /**
+     * {@code true} if a line terminator that a regular expression
+     * {@code '.'} will not match occurs from {@code from} on. In a UTF-8
+     * {@link ByteLine}, whose characters are bytes, the terminators above
+     * U+007F are found by their encoded byte sequences.
+     */
+    private static boolean hasTerminator(
+        final CharSequence line,
+        final int from)
+    {
+        final boolean bytes = line instanceof ByteLine;
+        final int len = line.length();
+        for (int idx = from; idx < len; ++idx) {
+            final char ch = line.charAt(idx);
+            if (ch == '\n' || ch == '\r') {
+                return true;
+            }
+            if (bytes) {
+                if (ch == 0xC2 && idx + 1 < len
+                    && line.charAt(idx + 1) == 0x85) {
+                    return true;
+                }
+                if (ch == 0xE2 && idx + 2 < len
+                    && line.charAt(idx + 1) == 0x80
+                    && (line.charAt(idx + 2) == 0xA8
+                        || line.charAt(idx + 2) == 0xA9)) {
+                    return true;
+                }
+            } else if (ch == 0x85 || ch == 0x2028 || ch == 0x2029) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(
+        final CharSequence line,
+        final int from,
+        final char[] prefix)
+    {
+        if (line.length() - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if (line.charAt(from + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
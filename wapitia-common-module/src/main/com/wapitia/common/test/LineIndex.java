@@ -0,0 +1,373 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A sparse index of the line offsets of a text file, recording the byte
+ * offset of every {@code interval}th line, so that reading from any line
+ * need only scan the lines after the nearest recorded one.
+ *
+ * <p>An index is built by one pass over the file, and kept next to it in
+ * a binary sidecar file, named as the file with a {@value #SUFFIX} suffix.
+ * The sidecar records the file's length and modification time, and is
+ * used only while both still match, so an edited file is indexed again.
+ * The sidecar holds a header and then the gaps between the recorded
+ * offsets, each as a variable-length integer of seven bits a byte, so it
+ * takes only two or three bytes per recorded line.
+ *
+ * @author Corey Morgan
+ */
+public final class LineIndex {
+
+    /**
+     * Suffix added to a file name to name its index sidecar, {@value}.
+     */
+    public static final String SUFFIX = ".lineidx";
+
+    /**
+     * Default number of lines between recorded offsets, {@value}.
+     */
+    public static final int DEFAULT_INTERVAL = 1024;
+
+    private static final int MAGIC = 0x574C4958;
+    private static final int VERSION = 1;
+
+    private final int interval;
+    private final long lineCount;
+    private final long length;
+    private final long lastModified;
+    private final long[] offsets;
+
+    private LineIndex(
+        final int interval,
+        final long lineCount,
+        final long length,
+        final long lastModified,
+        final long[] offsets)
+    {
+        this.interval = interval;
+        this.lineCount = lineCount;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.offsets = offsets;
+    }
+
+    /**
+     * The index of a file, read from its sidecar if that is up to date
+     * and has the default interval, or else built and saved in the
+     * sidecar.
+     * @param path location of the text file.
+     * @return the index.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public static LineIndex forPath(final Path path) {
+        return forPath(path, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * The index of a file, read from its sidecar if that is up to date
+     * and has the given interval, or else built and saved in the sidecar.
+     * Failure to save the sidecar is ignored, since it is only a cache.
+     * @param path location of the text file.
+     * @param interval number of lines between recorded offsets.
+     * @return the index.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public static LineIndex forPath(final Path path, final int interval) {
+        final Path sidecar = sidecarOf(path);
+        try {
+            final LineIndex cached = read(sidecar);
+            if (cached.interval == interval && cached.describes(path)) {
+                return cached;
+            }
+        } catch (UncheckedIOException | IllegalArgumentException ex) {
+            // a missing, unreadable or stale sidecar is rebuilt
+        }
+        final LineIndex built = build(path, interval);
+        try {
+            built.write(sidecar);
+        } catch (UncheckedIOException ex) {
+            // the sidecar is only a cache
+        }
+        return built;
+    }
+
+    /**
+     * Builds the index of a file by scanning all its lines.
+     * @param path location of the text file.
+     * @param interval number of lines between recorded offsets.
+     * @return the index.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public static LineIndex build(final Path path, final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval " + interval);
+        }
+        final long fileLength;
+        final long fileModified;
+        try {
+            fileLength = Files.size(path);
+            fileModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        long[] found = new long[16];
+        int count = 0;
+        long line = 0L;
+        long base = 0L;
+        try (MappedTextSource source =
+                TextSource.fromPath(path, StandardCharsets.ISO_8859_1)) {
+            for (ByteBuffer region : source.regions()) {
+                final int limit = region.limit();
+                int pos = 0;
+                while (pos < limit) {
+                    if (line % interval == 0) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = base + pos;
+                    }
+                    pos = LineSpliterator.nextLine(region,
+                        LineSpliterator.lineEnd(region, pos, limit), limit);
+                    ++line;
+                }
+                base += limit;
+            }
+        }
+        return new LineIndex(interval, line, fileLength, fileModified,
+            Arrays.copyOf(found, count));
+    }
+
+    /**
+     * Reads an index from a sidecar file.
+     * @param sidecar the index file.
+     * @return the index.
+     * @throws UncheckedIOException if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a line index,
+     *         or its counts or offsets are out of range.
+     */
+    public static LineIndex read(final Path sidecar) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalArgumentException(
+                    sidecar + " is not a line index");
+            }
+            final int interval = in.readInt();
+            final long length = in.readLong();
+            final long lastModified = in.readLong();
+            final long lineCount = in.readLong();
+            final int count = in.readInt();
+            if (interval < 1 || length < 0L || lineCount < 0L
+                || count < 0 || count > length + 1L) {
+                throw new IllegalArgumentException(
+                    sidecar + " is a corrupt line index");
+            }
+            final long[] offsets = new long[count];
+            long offset = 0L;
+            for (int i = 0; i < offsets.length; ++i) {
+                offset += readVarLong(in);
+                if (offset < 0L || offset > length) {
+                    throw new IllegalArgumentException(
+                        sidecar + " is a corrupt line index");
+                }
+                offsets[i] = offset;
+            }
+            return new LineIndex(interval, lineCount, length, lastModified,
+                offsets);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes this index to a sidecar file, through a temporary file moved
+     * into place, so that a reader never sees a partly written index.
+     * @param sidecar the index file, replaced if it exists.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    public void write(final Path sidecar) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(sidecar.toAbsolutePath().getParent(),
+                sidecar.getFileName().toString(), ".tmp");
+            writeTo(tmp);
+            try {
+                Files.move(tmp, sidecar, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+    private void writeTo(final Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(interval);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeLong(lineCount);
+            out.writeInt(offsets.length);
+            long previous = 0L;
+            for (long offset : offsets) {
+                writeVarLong(out, offset - previous);
+                previous = offset;
+            }
+        }
+    }
+
+    /**
+     * The sidecar file holding the index of a file.
+     * @param path location of the text file.
+     * @return the location of its index.
+     */
+    public static Path sidecarOf(final Path path) {
+        return path.resolveSibling(path.getFileName() + SUFFIX);
+    }
+
+    /**
+     * {@code true} if the file still has the length and modification time
+     * it had when indexed.
+     * @param path location of the text file.
+     * @return {@code true} if this index is up to date.
+     */
+    public boolean describes(final Path path) {
+        try {
+            return Files.size(path) == length && Files.getLastModifiedTime(
+                path).toMillis() == lastModified;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Number of lines in the file.
+     * @return the line count.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Number of lines between recorded offsets.
+     * @return the interval.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Length of the file indexed.
+     * @return the number of bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * The byte offset of the nearest recorded line at or before some
+     * line.
+     * @param line zero-based index of a line.
+     * @return offset of line {@code floor(line / interval) * interval}, or
+     *         the file length if that is past the last line.
+     */
+    public long offsetAtOrBefore(final long line) {
+        final long sample = line / interval;
+        return sample < offsets.length ? offsets[(int) sample] : length;
+    }
+
+    /**
+     * The byte offset of the nearest recorded line at or after some line.
+     * @param line zero-based index of a line.
+     * @return offset of line {@code ceil(line / interval) * interval}, or
+     *         the file length if that is past the last line.
+     */
+    public long offsetAtOrAfter(final long line) {
+        final long sample = line / interval + (line % interval == 0L ? 0L : 1L);
+        return sample < offsets.length ? offsets[(int) sample] : length;
+    }
+
+    private static void writeVarLong(
+        final DataOutputStream out,
+        final long value) throws IOException
+    {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0L) {
+            out.writeByte((int) (rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        out.writeByte((int) rest);
+    }
+
+    private static long readVarLong(final DataInputStream in)
+        throws IOException
+    {
+        long value = 0L;
+        int shift = 0;
+        int next;
+        do {
+            next = in.readUnsignedByte();
+            value |= (long) (next & 0x7F) << shift;
+            shift += 7;
+        } while ((next & 0x80) != 0);
+        return value;
+    }
+
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * A compiled set of rules masking the volatile tokens of text lines, such
+ * as timestamps, UUIDs and hex ids, so that lines from different runs can
+ * be compared.
+ *
+ * <p>A normalizer is built by starting from {@link #identity()} and adding
+ * rules, each step returning a new, immutable normalizer:
+ *
+ * <pre>
+ *   LineNormalizer normalizer = LineNormalizer.identity()
+ *       .maskTimestamps()
+ *       .maskUuids()
+ *       .maskHexIds(8)
+ *       .maskAfter("pid=", "&lt;PID&gt;");
+ * </pre>
+ *
+ * <p>However many rules there are, a line is normalized in a single scan
+ * over its characters, with no regular expression. The rules are merged
+ * into a table of the characters each can start with, so no rule is
+ * tried at a character that none can start with, which is most of the
+ * characters of a line. Where some rule may start, each is tried, and
+ * the longest match is replaced by its mask,
+ * the earliest added rule winning a tie; scanning then goes on after the
+ * match. Timestamps, UUIDs and hex ids match only as whole words, not
+ * when a letter, digit or underscore adjoins them. A line with nothing
+ * to mask is returned as it is, and
+ * {@link #normalize(CharSequence, StringBuilder)} writes any other into a
+ * buffer the caller reuses, so normalizing need not allocate at all.
+ *
+ * <p>Lines may be any {@link CharSequence}; a {@link ByteLine} in UTF-8 or
+ * ASCII is masked correctly as its bytes, since every rule matches only
+ * ASCII, as long as the prefixes given to {@link #maskAfter} are ASCII.
+ *
+ * @author Corey Morgan
+ */
+public final class LineNormalizer implements UnaryOperator<String> {
+
+    /**
+     * Mask replacing a timestamp, {@value}.
+     */
+    public static final String TIMESTAMP_MASK = "<TIMESTAMP>";
+
+    /**
+     * Mask replacing a UUID, {@value}.
+     */
+    public static final String UUID_MASK = "<UUID>";
+
+    /**
+     * Mask replacing a hex id, {@value}.
+     */
+    public static final String HEX_MASK = "<HEX>";
+
+    private static final int TABLE_SIZE = 128;
+
+    private static final LineNormalizer IDENTITY =
+        new LineNormalizer(new Rule[0]);
+
+    private final Rule[] rules;
+    private final boolean[] mayStart = new boolean[TABLE_SIZE];
+    private boolean mayStartNonAscii;
+
+    private LineNormalizer(final Rule[] rules) {
+        this.rules = rules;
+        for (Rule rule : rules) {
+            for (int ch = 0; ch < TABLE_SIZE; ++ch) {
+                mayStart[ch] |= rule.mayStart((char) ch);
+            }
+            mayStartNonAscii |= rule.mayStartNonAscii();
+        }
+    }
+
+    /**
+     * The normalizer masking nothing, from which others are built.
+     * @return a normalizer with no rules.
+     */
+    public static LineNormalizer identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * A normalizer also masking ISO 8601 dates and date-times as
+     * {@value #TIMESTAMP_MASK}: a date {@code yyyy-MM-dd}, then optionally
+     * a {@code 'T'} or space and a time {@code HH:mm}, with optional
+     * seconds, fraction of a second after a point or comma, and zone
+     * {@code 'Z'} or offset {@code +HH:mm} or {@code +HHmm}.
+     * @return a new normalizer.
+     */
+    public LineNormalizer maskTimestamps() {
+        return with(new TimestampRule());
+    }
+
+    /**
+     * A normalizer also masking UUIDs, 32 hex digits in groups of 8, 4, 4,
+     * 4 and 12 joined by hyphens, as {@value #UUID_MASK}.
+     * @return a new normalizer.
+     */
+    public LineNormalizer maskUuids() {
+        return with(new UuidRule());
+    }
+
+    /**
+     * A normalizer also masking hex ids as {@value #HEX_MASK}: at least
+     * {@code minLength} hex digits after a {@code 0x} or {@code 0X}, or
+     * without that prefix, at least {@code minLength} hex digits among
+     * which are both a decimal digit and a letter, so that neither a
+     * decimal number nor a word is taken for an id.
+     * @param minLength fewest hex digits in an id, at least one.
+     * @return a new normalizer.
+     */
+    public LineNormalizer maskHexIds(final int minLength) {
+        if (minLength < 1) {
+            throw new IllegalArgumentException("minLength " + minLength);
+        }
+        return with(new HexRule(minLength));
+    }
+
+    /**
+     * A normalizer also masking the non-blank run of characters right
+     * after {@code prefix}, keeping the prefix, such as the value of a
+     * {@code "pid="} field.
+     * @param prefix non-empty text that the masked value follows.
+     * @param mask text replacing the value.
+     * @return a new normalizer.
+     */
+    public LineNormalizer maskAfter(final String prefix, final String mask) {
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("empty prefix");
+        }
+        return with(new PrefixRule(prefix, mask));
+    }
+
+    /**
+     * Normalizes a String line.
+     * @param line the line, without a line terminator.
+     * @return the normalized line, or {@code line} itself if nothing in it
+     *         is masked.
+     */
+    @Override
+    public String apply(final String line) {
+        final CharSequence normalized = normalize(line, new StringBuilder());
+        return normalized == line ? line : normalized.toString();
+    }
+
+    /**
+     * Normalizes a line of any kind of character sequence into a reused
+     * buffer.
+     * @param line the line, without a line terminator.
+     * @param out buffer to hold the normalized line, cleared first if
+     *            anything is masked.
+     * @return {@code line} itself if nothing in it is masked, otherwise
+     *         {@code out}.
+     */
+    public CharSequence normalize(
+        final CharSequence line,
+        final StringBuilder out)
+    {
+        final int len = line.length();
+        int copied = 0;
+        boolean masked = false;
+        int idx = 0;
+        while (idx < len) {
+            final char ch = line.charAt(idx);
+            final boolean candidate = ch < TABLE_SIZE
+                ? mayStart[ch]
+                : mayStartNonAscii;
+            if (!candidate) {
+                ++idx;
+                continue;
+            }
+            Rule best = null;
+            int bestLength = 0;
+            for (Rule rule : rules) {
+                final int length = rule.match(line, idx, len);
+                if (length > bestLength) {
+                    best = rule;
+                    bestLength = length;
+                }
+            }
+            if (best == null) {
+                ++idx;
+                continue;
+            }
+            if (!masked) {
+                out.setLength(0);
+                masked = true;
+            }
+            out.append(line, copied, idx + best.kept());
+            out.append(best.mask);
+            idx += bestLength;
+            copied = idx;
+        }
+        if (!masked) {
+            return line;
+        }
+        out.append(line, copied, len);
+        return out;
+    }
+
+    private LineNormalizer with(final Rule rule) {
+        final Rule[] more = Arrays.copyOf(rules, rules.length + 1);
+        more[rules.length] = rule;
+        return new LineNormalizer(more);
+    }
+
+    private static boolean isDigit(final char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isHex(final char ch) {
+        return isDigit(ch) || ch >= 'a' && ch <= 'f' || ch >= 'A' && ch <= 'F';
+    }
+
+    private static boolean isWord(final char ch) {
+        return isDigit(ch) || ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z'
+            || ch == '_';
+    }
+
+    /**
+     * {@code true} if no word character adjoins {@code line} between
+     * {@code start} and {@code end}.
+     */
+    private static boolean isWholeWord(
+        final CharSequence line,
+        final int start,
+        final int end,
+        final int len)
+    {
+        return (start == 0 || !isWord(line.charAt(start - 1)))
+            && (end == len || !isWord(line.charAt(end)));
+    }
+
+    /**
+     * Number of characters from {@code at} matching {@code count} decimal
+     * digits, or -1.
+     */
+    private static int digits(
+        final CharSequence line,
+        final int at,
+        final int count,
+        final int len)
+    {
+        if (at + count > len) {
+            return -1;
+        }
+        for (int i = at; i < at + count; ++i) {
+            if (!isDigit(line.charAt(i))) {
+                return -1;
+            }
+        }
+        return count;
+    }
+
+    private static boolean charAt(
+        final CharSequence line,
+        final int at,
+        final char ch,
+        final int len)
+    {
+        return at < len && line.charAt(at) == ch;
+    }
+
+    /**
+     * One masking rule.
+     */
+    private abstract static class Rule {
+
+        private final String mask;
+
+        Rule(final String mask) {
+            this.mask = mask;
+        }
+
+        /**
+         * {@code true} if a match may start with {@code ch}.
+         */
+        abstract boolean mayStart(char ch);
+
+        /**
+         * {@code true} if a match may start with a non-ASCII character.
+         */
+        boolean mayStartNonAscii() {
+            return false;
+        }
+
+        /**
+         * Length of the match starting at {@code at}, or zero.
+         */
+        abstract int match(CharSequence line, int at, int len);
+
+        /**
+         * Number of leading characters of a match kept before the mask.
+         */
+        int kept() {
+            return 0;
+        }
+    }
+
+    /**
+     * Masks ISO 8601 dates and date-times.
+     */
+    private static final class TimestampRule extends Rule {
+
+        TimestampRule() {
+            super(TIMESTAMP_MASK);
+        }
+
+        @Override
+        boolean mayStart(final char ch) {
+            return isDigit(ch);
+        }
+
+        @Override
+        int match(final CharSequence line, final int at, final int len) {
+            if (digits(line, at, 4, len) < 0 || !charAt(line, at + 4, '-', len)
+                || digits(line, at + 5, 2, len) < 0
+                || !charAt(line, at + 7, '-', len)
+                || digits(line, at + 8, 2, len) < 0) {
+                return 0;
+            }
+            int end = at + 10;
+            if ((charAt(line, end, 'T', len) || charAt(line, end, ' ', len))
+                && digits(line, end + 1, 2, len) > 0
+                && charAt(line, end + 3, ':', len)
+                && digits(line, end + 4, 2, len) > 0) {
+                end += 6;
+                if (charAt(line, end, ':', len)
+                    && digits(line, end + 1, 2, len) > 0) {
+                    end += 3;
+                    if ((charAt(line, end, '.', len)
+                        || charAt(line, end, ',', len))
+                        && digits(line, end + 1, 1, len) > 0) {
+                        end += 2;
+                        while (end < len && isDigit(line.charAt(end))) {
+                            ++end;
+                        }
+                    }
+                }
+                end = zone(line, end, len);
+            }
+            return isWholeWord(line, at, end, len) ? end - at : 0;
+        }
+
+        private static int zone(
+            final CharSequence line,
+            final int at,
+            final int len)
+        {
+            if (charAt(line, at, 'Z', len)) {
+                return at + 1;
+            }
+            if ((charAt(line, at, '+', len) || charAt(line, at, '-', len))
+                && digits(line, at + 1, 2, len) > 0) {
+                final int minutes = charAt(line, at + 3, ':', len)
+                    ? at + 4
+                    : at + 3;
+                if (digits(line, minutes, 2, len) > 0) {
+                    return minutes + 2;
+                }
+            }
+            return at;
+        }
+    }
+
+    /**
+     * Masks UUIDs.
+     */
+    private static final class UuidRule extends Rule {
+
+        private static final int[] GROUPS = { 8, 4, 4, 4, 12 };
+        private static final int LENGTH = 36;
+
+        UuidRule() {
+            super(UUID_MASK);
+        }
+
+        @Override
+        boolean mayStart(final char ch) {
+            return isHex(ch);
+        }
+
+        @Override
+        int match(final CharSequence line, final int at, final int len) {
+            if (at + LENGTH > len) {
+                return 0;
+            }
+            int idx = at;
+            for (int group = 0; group < GROUPS.length; ++group) {
+                if (group > 0 && line.charAt(idx++) != '-') {
+                    return 0;
+                }
+                for (int i = 0; i < GROUPS[group]; ++i) {
+                    if (!isHex(line.charAt(idx++))) {
+                        return 0;
+                    }
+                }
+            }
+            return isWholeWord(line, at, idx, len) ? LENGTH : 0;
+        }
+    }
+
+    /**
+     * Masks hex ids.
+     */
+    private static final class HexRule extends Rule {
+
+        private final int minLength;
+
+        HexRule(final int minLength) {
+            super(HEX_MASK);
+            this.minLength = minLength;
+        }
+
+        @Override
+        boolean mayStart(final char ch) {
+            return isHex(ch);
+        }
+
+        @Override
+        int match(final CharSequence line, final int at, final int len) {
+            final boolean prefixed = charAt(line, at, '0', len)
+                && (charAt(line, at + 1, 'x', len)
+                    || charAt(line, at + 1, 'X', len));
+            int idx = prefixed ? at + 2 : at;
+            boolean digit = false;
+            boolean letter = false;
+            while (idx < len && isHex(line.charAt(idx))) {
+                if (isDigit(line.charAt(idx))) {
+                    digit = true;
+                } else {
+                    letter = true;
+                }
+                ++idx;
+            }
+            final int count = idx - (prefixed ? at + 2 : at);
+            if (count < minLength || !prefixed && !(digit && letter)
+                || !isWholeWord(line, at, idx, len)) {
+                return 0;
+            }
+            return idx - at;
+        }
+    }
+
+    /**
+     * Masks the value following a prefix.
+     */
+    private static final class PrefixRule extends Rule {
+
+        private final String prefix;
+
+        PrefixRule(final String prefix, final String mask) {
+            super(mask);
+            this.prefix = prefix;
+        }
+
+        @Override
+        boolean mayStart(final char ch) {
+            return prefix.charAt(0) == ch;
+        }
+
+        @Override
+        boolean mayStartNonAscii() {
+            return prefix.charAt(0) >= TABLE_SIZE;
+        }
+
+        @Override
+        int match(final CharSequence line, final int at, final int len) {
+            final int plen = prefix.length();
+            if (at + plen >= len) {
+                return 0;
+            }
+            for (int i = 0; i < plen; ++i) {
+                if (line.charAt(at + i) != prefix.charAt(i)) {
+                    return 0;
+                }
+            }
+            int idx = at + plen;
+            while (idx < len && !LineFilter.isSpace(line.charAt(idx))) {
+                ++idx;
+            }
+            return idx > at + plen ? idx - at : 0;
+        }
+
+        @Override
+        int kept() {
+            return prefix.length();
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@code TextSource} over a range of the lines of a file, found through
+ * the file's {@link LineIndex} so that only the lines from the nearest
+ * indexed line before the range to the nearest one after it are mapped
+ * and scanned, however far into the file the range lies.
+ *
+ * @author Corey Morgan
+ */
+public class LineRangeTextSource extends MappedTextSource {
+
+    private final long firstLine;
+    private final long lineCount;
+    private final long skipped;
+
+    /**
+     * Creates a {@link TextSource} over a range of the lines of a file.
+     * @param path location of the text file.
+     * @param charset character set used when decoding lines to Strings.
+     * @param index line index of the file.
+     * @param firstLine number of the first line of the range, counting
+     *                  from 1 as {@code CompareTestData}'s failure
+     *                  messages do.
+     * @param lineCount most lines in the range.
+     */
+    protected LineRangeTextSource(
+        final Path path,
+        final Charset charset,
+        final LineIndex index,
+        final long firstLine,
+        final long lineCount)
+    {
+        super(path, charset, MAX_REGION_SIZE,
+            index.offsetAtOrBefore(checked(firstLine, lineCount) - 1),
+            index.offsetAtOrAfter(endLine(firstLine, lineCount)));
+        this.firstLine = firstLine;
+        this.lineCount = lineCount;
+        this.skipped = (firstLine - 1) % index.getInterval();
+    }
+
+    /**
+     * Number of the first line of the range, counting from 1.
+     * @return the first line number.
+     */
+    public long getFirstLine() {
+        return firstLine;
+    }
+
+    /**
+     * Most lines in the range, fewer if the file ends first.
+     * @return the number of lines asked for.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Checks the range before the superclass constructor uses it.
+     */
+    private static long checked(final long firstLine, final long lineCount) {
+        if (firstLine < 1 || lineCount < 0) {
+            throw new IllegalArgumentException(
+                "firstLine " + firstLine + ", lineCount " + lineCount);
+        }
+        return firstLine;
+    }
+
+    /**
+     * The zero-based index of the line after the range, saturating at
+     * {@link Long#MAX_VALUE} so that a count such as that reads to the
+     * end of the file.
+     */
+    private static long endLine(final long firstLine, final long lineCount) {
+        return lineCount > Long.MAX_VALUE - (firstLine - 1)
+            ? Long.MAX_VALUE
+            : firstLine - 1 + lineCount;
+    }
+
+    /**
+     * The mapped bytes, trimmed to exactly the lines of the range, so that
+     * lines and numbers alike are read only from the range.
+     * @return the buffers in line order.
+     */
+    @Override
+    protected List<ByteBuffer> regions() {
+        final List<ByteBuffer> trimmed = new ArrayList<>();
+        long toSkip = skipped;
+        long toKeep = lineCount;
+        for (ByteBuffer region : super.regions()) {
+            final int limit = region.limit();
+            int pos = 0;
+            for (; toSkip > 0L && pos < limit; --toSkip) {
+                pos = LineSpliterator.nextLine(region,
+                    LineSpliterator.lineEnd(region, pos, limit), limit);
+            }
+            final int start = pos;
+            for (; toKeep > 0L && pos < limit; --toKeep) {
+                pos = LineSpliterator.nextLine(region,
+                    LineSpliterator.lineEnd(region, pos, limit), limit);
+            }
+            if (pos > start) {
+                final ByteBuffer range = region.duplicate();
+                range.limit(pos);
+                range.position(start);
+                trimmed.add(range.slice());
+            }
+            if (toKeep == 0L) {
+                break;
+            }
+        }
+        return trimmed;
+    }
+
+}
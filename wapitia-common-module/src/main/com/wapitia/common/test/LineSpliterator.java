@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the lines held in a sequence of byte buffers,
+ * each of which holds only whole lines, splitting at line boundaries so the
+ * lines can be streamed in parallel.
+ *
+ * <p>A split first divides the buffers between the two halves, and once
+ * only one buffer remains it cuts the buffer at the first line end after
+ * its middle byte. Both halves therefore cover whole lines, and the
+ * encounter order is the order of the lines in the buffers. The exact byte
+ * extent is always known, but the number of lines is not without scanning
+ * every byte, so {@link #estimateSize()} is an estimate from the average
+ * length of the first few lines, and this is neither {@link #SIZED} nor
+ * {@link #SUBSIZED}.
+ *
+ * @author Corey Morgan
+ */
+final class LineSpliterator implements Spliterator<ByteLine> {
+
+    /**
+     * A buffer range shorter than this is not split further, {@value}
+     * bytes.
+     */
+    static final int MIN_SPLIT_SIZE = 1 << 13;
+
+    private static final int SAMPLE_LINES = 64;
+
+    private final ByteBuffer[] regions;
+    private final Charset charset;
+    private final int lastRegion;
+    private final int end;
+    private final double bytesPerLine;
+    private int region;
+    private int pos;
+
+    /**
+     * Creates a spliterator over all the lines of {@code regions}, each
+     * read between position zero and its limit.
+     * @param regions buffers in line order, each holding only whole lines.
+     * @param charset character set for decoding the lines.
+     */
+    LineSpliterator(final List<ByteBuffer> regions, final Charset charset) {
+        this(regions.toArray(new ByteBuffer[regions.size()]), charset,
+            0, 0, regions.size() - 1,
+            regions.isEmpty() ? 0 : regions.get(regions.size() - 1).limit(),
+            sampleBytesPerLine(regions));
+    }
+
+    private LineSpliterator(
+        final ByteBuffer[] regions,
+        final Charset charset,
+        final int region,
+        final int pos,
+        final int lastRegion,
+        final int end,
+        final double bytesPerLine)
+    {
+        this.regions = regions;
+        this.charset = charset;
+        this.region = region;
+        this.pos = pos;
+        this.lastRegion = lastRegion;
+        this.end = end;
+        this.bytesPerLine = bytesPerLine;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super ByteLine> action) {
+        while (region <= lastRegion) {
+            final ByteBuffer buf = regions[region];
+            final int limit = region == lastRegion ? end : buf.limit();
+            if (pos < limit) {
+                final int start = pos;
+                final int lineEnd = lineEnd(buf, start, limit);
+                pos = nextLine(buf, lineEnd, limit);
+                action.accept(
+                    new ByteLine(buf, start, lineEnd - start, charset));
+                return true;
+            }
+            ++region;
+            pos = 0;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<ByteLine> trySplit() {
+        if (region < lastRegion) {
+            final int mid = (region + lastRegion + 1) >>> 1;
+            final LineSpliterator prefix = new LineSpliterator(regions,
+                charset, region, pos, mid - 1, regions[mid - 1].limit(),
+                bytesPerLine);
+            region = mid;
+            pos = 0;
+            return prefix;
+        }
+        if (region > lastRegion || end - pos < 2 * MIN_SPLIT_SIZE) {
+            return null;
+        }
+        final ByteBuffer buf = regions[region];
+        final int cut = nextLine(buf,
+            lineEnd(buf, pos + (end - pos) / 2, end), end);
+        if (cut >= end) {
+            return null;
+        }
+        final LineSpliterator prefix = new LineSpliterator(regions, charset,
+            region, pos, region, cut, bytesPerLine);
+        pos = cut;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        long bytes = 0L;
+        for (int r = region; r <= lastRegion; ++r) {
+            final int limit = r == lastRegion ? end : regions[r].limit();
+            bytes += limit - (r == region ? pos : 0);
+        }
+        return bytes <= 0L ? 0L : Math.max(1L, (long) (bytes / bytesPerLine));
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Finds the end of the line starting at or containing {@code from}.
+     * @param buf bytes to scan.
+     * @param from index to start scanning from.
+     * @param limit index to stop scanning at.
+     * @return the index of the line's terminator, or {@code limit} if it
+     *         has none.
+     */
+    static int lineEnd(final ByteBuffer buf, final int from, final int limit) {
+        int idx = from;
+        while (idx < limit) {
+            final byte b = buf.get(idx);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            ++idx;
+        }
+        return idx;
+    }
+
+    /**
+     * Steps past the line terminator at {@code lineEnd}, treating a carriage
+     * return followed by a line feed as one terminator.
+     * @param buf bytes being scanned.
+     * @param lineEnd index of a line terminator, or {@code limit}.
+     * @param limit index where the bytes end.
+     * @return the index of the start of the next line.
+     */
+    static int nextLine(final ByteBuffer buf, final int lineEnd,
+        final int limit)
+    {
+        int next = lineEnd + 1;
+        if (lineEnd < limit && buf.get(lineEnd) == '\r'
+            && next < limit && buf.get(next) == '\n') {
+            ++next;
+        }
+        return Math.min(next, limit);
+    }
+
+    private static double sampleBytesPerLine(final List<ByteBuffer> regions) {
+        if (regions.isEmpty()) {
+            return 1.0;
+        }
+        final ByteBuffer buf = regions.get(0);
+        final int limit = buf.limit();
+        int pos = 0;
+        int lines = 0;
+        while (pos < limit && lines < SAMPLE_LINES) {
+            pos = nextLine(buf, lineEnd(buf, pos, limit), limit);
+            ++lines;
+        }
+        return lines == 0 ? 1.0 : (double) pos / lines;
+    }
+
+}
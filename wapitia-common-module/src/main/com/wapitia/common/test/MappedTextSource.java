@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@code TextSource} reading the lines of a file through a memory
+ * mapping, without a {@link java.io.Reader} and without copying.
+ *
+ * <p>The file is mapped with {@link FileChannel#map} in read-only regions
+ * of up to 2GB, each cut at a line boundary, and lines are found by
+ * scanning the mapped bytes for line terminators. The lines from
+ * {@link #toCharSequenceStream()} are {@link ByteLine} views over the
+ * mapping, so even a file of many gigabytes costs one small object per
+ * line. {@link #toStream()} decodes each view to a {@code String} for use
+ * where real Strings are needed.
+ *
+ * @author Corey Morgan
+ */
+public class MappedTextSource extends ByteTextSource {
+
+    /**
+     * Largest region of a file mapped as one buffer, {@value} bytes.
+     */
+    static final int MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final int regionSize;
+    private final long startOffset;
+    private final long endOffset;
+
+    /**
+     * Creates a {@link TextSource} over the lines of the file at some path.
+     * @param path location of the text file.
+     * @param charset character set used when decoding lines to Strings.
+     */
+    protected MappedTextSource(final Path path, final Charset charset) {
+        this(path, charset, MAX_REGION_SIZE);
+    }
+
+    /**
+     * Creates a {@link TextSource} over the lines of the file at some path,
+     * mapping it in regions no larger than {@code regionSize}.
+     * @param path location of the text file.
+     * @param charset character set used when decoding lines to Strings.
+     * @param regionSize largest number of bytes mapped as one buffer.
+     */
+    protected MappedTextSource(
+        final Path path,
+        final Charset charset,
+        final int regionSize)
+    {
+        this(path, charset, regionSize, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a {@link TextSource} over the lines within a range of bytes
+     * of the file at some path, mapping it in regions no larger than
+     * {@code regionSize}.
+     * @param path location of the text file.
+     * @param charset character set used when decoding lines to Strings.
+     * @param regionSize largest number of bytes mapped as one buffer.
+     * @param startOffset offset of the first byte of the first line.
+     * @param endOffset offset just after the last line's terminator, or
+     *                  beyond the end of the file for all the lines from
+     *                  {@code startOffset} on.
+     */
+    protected MappedTextSource(
+        final Path path,
+        final Charset charset,
+        final int regionSize,
+        final long startOffset,
+        final long endOffset)
+    {
+        super(charset);
+        this.path = path;
+        this.regionSize = regionSize;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Path of the file providing this source's lines.
+     * @return the file path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Maps the file, or its range of bytes, as a list of read-only
+     * buffers, each holding only whole lines.
+     * @return the mapped regions in file order.
+     * @throws UncheckedIOException if the file cannot be mapped.
+     */
+    @Override
+    protected List<ByteBuffer> regions() {
+        try (FileChannel channel =
+                FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = Math.min(endOffset, channel.size());
+            final List<ByteBuffer> regions = new ArrayList<>();
+            long start = startOffset;
+            while (start < size) {
+                final int span = (int) Math.min(regionSize, size - start);
+                final MappedByteBuffer region = channel.map(
+                    FileChannel.MapMode.READ_ONLY, start, span);
+                final int end = start + span == size
+                    ? span
+                    : lastLineEnd(region, span);
+                if (end == 0) {
+                    throw new IOException(String.format(
+                        "%s has a line longer than %d bytes at offset %d",
+                        path, regionSize, start));
+                }
+                region.limit(end);
+                regions.add(region);
+                start += end;
+            }
+            return regions;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Finds the end of the last complete line in the first {@code span}
+     * bytes of {@code region}. A carriage return in the last byte is not
+     * taken as a line end, as a line feed may follow it in the next region.
+     * @param region mapped bytes.
+     * @param span number of bytes of the region to search.
+     * @return the index just after the last complete line's terminator,
+     *         or zero if the region holds no complete line.
+     */
+    private static int lastLineEnd(final ByteBuffer region, final int span) {
+        for (int i = span - 1; i >= 0; --i) {
+            final byte b = region.get(i);
+            if (b == '\n' || b == '\r' && i < span - 1) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+}
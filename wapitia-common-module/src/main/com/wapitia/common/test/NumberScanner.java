@@ -0,0 +1,273 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads the numbers written as text in a sequence of byte buffers straight
+ * into primitives, with no String, boxed number or other object made for
+ * each number.
+ *
+ * <p>Numbers are separated by whitespace or commas, and any number of them
+ * may be on a line. A line whose first non-blank character is {@code '#'}
+ * is a comment, and is skipped. Integers are decimal, with an optional
+ * sign. A decimal floating point number is converted exactly by
+ * {@link DecimalParser} when it is simple enough, as most numbers written
+ * by programs are; any other, such as {@code NaN} or
+ * {@code 6.02214076e23}, is passed to {@link Double#parseDouble(String)},
+ * which does make a String.
+ * A token that is not a number fails with a {@link NumberFormatException}
+ * naming its line.
+ *
+ * <p>Each buffer is read from position zero to its limit, and must hold
+ * only whole lines, so that no number is split between buffers.
+ *
+ * @author Corey Morgan
+ */
+final class NumberScanner {
+
+    private static final int CHARACTERISTICS =
+        Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    private final ByteBuffer[] regions;
+    private final Token token = new Token();
+    private int region;
+    private int pos;
+    private long line = 1L;
+    private int tokenStart;
+    private int tokenEnd;
+
+    /**
+     * Creates a scanner over all the numbers in {@code regions}.
+     * @param regions buffers in line order, each holding only whole lines.
+     */
+    NumberScanner(final List<ByteBuffer> regions) {
+        this.regions = regions.toArray(new ByteBuffer[regions.size()]);
+    }
+
+    /**
+     * A spliterator of the numbers as ints.
+     * @return a sequential spliterator.
+     */
+    Spliterator.OfInt ints() {
+        return new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE,
+            CHARACTERISTICS) {
+            @Override
+            public boolean tryAdvance(final IntConsumer action) {
+                if (!advance()) {
+                    return false;
+                }
+                final long value = parseLong("an int");
+                if (value != (int) value) {
+                    throw notANumber("an int");
+                }
+                action.accept((int) value);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * A spliterator of the numbers as longs.
+     * @return a sequential spliterator.
+     */
+    Spliterator.OfLong longs() {
+        return new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE,
+            CHARACTERISTICS) {
+            @Override
+            public boolean tryAdvance(final LongConsumer action) {
+                if (!advance()) {
+                    return false;
+                }
+                action.accept(parseLong("a long"));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * A spliterator of the numbers as doubles.
+     * @return a sequential spliterator.
+     */
+    Spliterator.OfDouble doubles() {
+        return new Spliterators.AbstractDoubleSpliterator(Long.MAX_VALUE,
+            CHARACTERISTICS) {
+            @Override
+            public boolean tryAdvance(final DoubleConsumer action) {
+                if (!advance()) {
+                    return false;
+                }
+                action.accept(parseDouble());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Skips separators and comments to the next token, and finds its end.
+     * @return {@code true} if there is another token.
+     */
+    private boolean advance() {
+        boolean lineStart = region < regions.length
+            && (pos == 0 || isLineEnd(regions[region].get(pos - 1)));
+        while (region < regions.length) {
+            final ByteBuffer buf = regions[region];
+            final int limit = buf.limit();
+            while (pos < limit) {
+                final byte b = buf.get(pos);
+                if (b == '\n' || b == '\r') {
+                    if (b == '\n' || pos + 1 == limit
+                        || buf.get(pos + 1) != '\n') {
+                        ++line;
+                    }
+                    lineStart = true;
+                    ++pos;
+                } else if (b == ' ' || b == '\t' || b == ',') {
+                    ++pos;
+                } else if (b == '#' && lineStart) {
+                    pos = LineSpliterator.lineEnd(buf, pos, limit);
+                } else {
+                    tokenStart = pos;
+                    while (pos < limit && !isSeparator(buf.get(pos))) {
+                        ++pos;
+                    }
+                    tokenEnd = pos;
+                    return true;
+                }
+            }
+            ++region;
+            pos = 0;
+            lineStart = true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses the current token as a decimal long.
+     * @param type what the number is to be, for a failure message.
+     */
+    private long parseLong(final String type) {
+        final ByteBuffer buf = regions[region];
+        int idx = tokenStart;
+        final boolean negative = buf.get(idx) == '-';
+        if (negative || buf.get(idx) == '+') {
+            ++idx;
+        }
+        if (idx == tokenEnd) {
+            throw notANumber(type);
+        }
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0L;
+        while (idx < tokenEnd) {
+            final int digit = buf.get(idx++) - '0';
+            if (digit < 0 || digit > 9
+                || result < limit / 10
+                || result * 10 < limit + digit) {
+                throw notANumber(type);
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses the current token as a double, exactly by
+     * {@link DecimalParser#parseExact(CharSequence)} when it can and
+     * otherwise by {@link Double#parseDouble(String)}.
+     */
+    private double parseDouble() {
+        final double exact = DecimalParser.parseExact(token);
+        return Double.isNaN(exact) ? slowDouble() : exact;
+    }
+
+    private double slowDouble() {
+        try {
+            return Double.parseDouble(token.toString());
+        } catch (NumberFormatException ex) {
+            throw notANumber("a double");
+        }
+    }
+
+    private NumberFormatException notANumber(final String type) {
+        return new NumberFormatException(
+            "Not " + type + " at line " + line + ": \"" + token + "\"");
+    }
+
+    private static boolean isLineEnd(final byte ch) {
+        return ch == '\n' || ch == '\r';
+    }
+
+    private static boolean isSeparator(final byte ch) {
+        return ch == ' ' || ch == '\t' || ch == ',' || isLineEnd(ch);
+    }
+
+    /**
+     * The current token, each byte read as a char, as a view that follows
+     * the scanner from token to token.
+     */
+    private final class Token implements CharSequence {
+
+        @Override
+        public int length() {
+            return tokenEnd - tokenStart;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) (regions[region].get(tokenStart + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            final byte[] bytes = new byte[length()];
+            for (int i = 0; i < bytes.length; ++i) {
+                bytes[i] = regions[region].get(tokenStart + i);
+            }
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
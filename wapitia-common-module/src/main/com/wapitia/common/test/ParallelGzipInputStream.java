@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses gzip made of many members, inflating several members at
+ * once on the common fork-join pool while returning their bytes in order.
+ *
+ * <p>A gzip member does not say where it ends, so members can be split
+ * apart before inflating them only when each records its own size, as
+ * those of blocked gzip do: {@code bgzip} writes members of at most 64KB,
+ * each with a {@code BC} extra field holding its size. Once a member
+ * without that field is met, it and all that follow are decompressed one
+ * after another by a {@link GZIPInputStream}, so ordinary gzip reads
+ * correctly, only not in parallel.
+ *
+ * @author Corey Morgan
+ */
+final class ParallelGzipInputStream extends InputStream {
+
+    private static final int HEADER = 12;
+    private static final int TRAILER = 8;
+    private static final int FEXTRA = 4;
+    private static final int WINDOW =
+        2 * Runtime.getRuntime().availableProcessors();
+
+    private final InputStream raw;
+    private final ArrayDeque<CompletableFuture<byte[]>> pending =
+        new ArrayDeque<>();
+    private byte[] current = new byte[0];
+    private int pos;
+    private boolean exhausted;
+    private InputStream tail;
+
+    /**
+     * Decompresses a gzip stream.
+     * @param raw the compressed stream.
+     */
+    ParallelGzipInputStream(final InputStream raw) {
+        this.raw = raw;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buf, final int off, final int len)
+        throws IOException
+    {
+        if (len == 0) {
+            return 0;
+        }
+        while (pos == current.length) {
+            fill();
+            final CompletableFuture<byte[]> next = pending.poll();
+            if (next == null) {
+                return tail == null ? -1 : tail.read(buf, off, len);
+            }
+            current = await(next);
+            pos = 0;
+        }
+        final int count = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, buf, off, count);
+        pos += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending.forEach(member -> member.cancel(false));
+        pending.clear();
+        exhausted = true;
+        if (tail != null) {
+            tail.close();
+        }
+        raw.close();
+    }
+
+    /**
+     * Starts inflating members until the window is full or no member is
+     * left that records its size.
+     */
+    private void fill() throws IOException {
+        while (!exhausted && tail == null && pending.size() < WINDOW) {
+            byte[] member = new byte[HEADER];
+            final int got = readFully(member, 0, HEADER);
+            if (got == 0) {
+                exhausted = true;
+                return;
+            }
+            if (got < HEADER || !isGzip(member)) {
+                throw new ZipException("Not in GZIP format");
+            }
+            int size = -1;
+            if (member[3] == FEXTRA) {
+                final int xlen = u16(member, 10);
+                member = Arrays.copyOf(member, HEADER + xlen);
+                if (readFully(member, HEADER, xlen) < xlen) {
+                    throw new EOFException("Truncated gzip member header");
+                }
+                size = blockSize(member);
+            }
+            if (size < member.length + TRAILER) {
+                tail = new GZIPInputStream(new SequenceInputStream(
+                    new ByteArrayInputStream(member), raw), 1 << 16);
+                return;
+            }
+            final int known = member.length;
+            final byte[] whole = Arrays.copyOf(member, size);
+            if (readFully(whole, known, size - known) < size - known) {
+                throw new EOFException("Truncated gzip member");
+            }
+            pending.add(CompletableFuture.supplyAsync(() -> inflate(whole)));
+        }
+    }
+
+    private static boolean isGzip(final byte[] header) {
+        return (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B
+            && header[2] == 8;
+    }
+
+    /**
+     * Size of a blocked gzip member from the {@code BC} subfield of its
+     * extra field, or {@code -1} if it has none.
+     */
+    private static int blockSize(final byte[] header) {
+        int at = HEADER;
+        while (at + 4 <= header.length) {
+            final int length = u16(header, at + 2);
+            if (header[at] == 'B' && header[at + 1] == 'C' && length == 2
+                && at + 6 <= header.length) {
+                return u16(header, at + 4) + 1;
+            }
+            at += 4 + length;
+        }
+        return -1;
+    }
+
+    private static int u16(final byte[] buf, final int at) {
+        return buf[at] & 0xFF | (buf[at + 1] & 0xFF) << 8;
+    }
+
+    private static long u32(final byte[] buf, final int at) {
+        return (u16(buf, at) | (long) u16(buf, at + 2) << 16) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Inflates one whole member and checks it against its trailer.
+     */
+    private static byte[] inflate(final byte[] member) {
+        final int extra = HEADER + u16(member, 10);
+        final int end = member.length - TRAILER;
+        final byte[] out = new byte[(int) u32(member, end + 4)];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, extra, end - extra);
+            int size = 0;
+            while (!inflater.finished() && size < out.length) {
+                size += inflater.inflate(out, size, out.length - size);
+                if (inflater.needsInput() || inflater.needsDictionary()) {
+                    break;
+                }
+            }
+            final CRC32 crc = new CRC32();
+            crc.update(out, 0, size);
+            if (size != out.length || crc.getValue() != u32(member, end)) {
+                throw new UncheckedIOException(
+                    new ZipException("Corrupt GZIP member"));
+            }
+            return out;
+        } catch (DataFormatException ex) {
+            throw new UncheckedIOException(new ZipException(ex.getMessage()));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] await(final CompletableFuture<byte[]> member)
+        throws IOException
+    {
+        try {
+            return member.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private int readFully(final byte[] buf, final int off, final int len)
+        throws IOException
+    {
+        int total = 0;
+        while (total < len) {
+            final int count = raw.read(buf, off + total, len - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+}
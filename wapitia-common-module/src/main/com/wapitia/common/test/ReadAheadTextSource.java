@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code TextSource} decorator reading the lines of another source ahead
+ * of its consumer, on a background thread, so that reading and decoding
+ * the lines overlaps with whatever the consumer does with them, such as
+ * comparing them.
+ *
+ * <p>Lines are handed over in batches through a bounded ring of batches.
+ * When the ring is full the reading thread waits for the consumer, so no
+ * more than {@code batches} batches of lines are ever held in memory.
+ * Closing the stream stops the reading thread and closes the decorated
+ * source's stream, even if its lines were not all read. An exception
+ * thrown reading the decorated source is thrown again to the consumer
+ * once it has taken every line read before it.
+ *
+ * @author Corey Morgan
+ */
+public class ReadAheadTextSource implements TextSource {
+
+    /**
+     * Default number of lines in a batch, {@value}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * Default number of batches read ahead, {@value}.
+     */
+    public static final int DEFAULT_BATCHES = 4;
+
+    private final TextSource source;
+    private final int batchSize;
+    private final int batches;
+
+    /**
+     * Creates a {@link TextSource} reading another source ahead.
+     * @param source the source to read ahead.
+     * @param batchSize number of lines in a batch.
+     * @param batches most batches read ahead of the consumer.
+     */
+    protected ReadAheadTextSource(
+        final TextSource source,
+        final int batchSize,
+        final int batches)
+    {
+        if (batchSize < 1 || batches < 1) {
+            throw new IllegalArgumentException(
+                "batchSize " + batchSize + ", batches " + batches);
+        }
+        this.source = source;
+        this.batchSize = batchSize;
+        this.batches = batches;
+    }
+
+    /**
+     * Starts reading the decorated source on a background thread, and
+     * produces a stream of its lines, which should be closed if not read
+     * to the end.
+     * @return a non-null {@code Stream} of {@code String}s.
+     */
+    @Override
+    public Stream<String> toStream() {
+        final ReadAhead readAhead = new ReadAhead();
+        final Thread thread = new Thread(readAhead, "wapitia-read-ahead");
+        thread.setDaemon(true);
+        readAhead.reader = thread;
+        thread.start();
+        return StreamSupport.stream(readAhead, false)
+            .onClose(readAhead::close);
+    }
+
+    /**
+     * Closes the decorated source.
+     */
+    @Override
+    public void close() {
+        source.close();
+    }
+
+    /**
+     * Reads the decorated source on its thread, and hands its lines to the
+     * consumer's stream.
+     */
+    private final class ReadAhead implements Spliterator<String>, Runnable {
+
+        /** Batch marking the end of the lines. */
+        private final String[] end = new String[0];
+        private final BlockingQueue<String[]> ring =
+            new ArrayBlockingQueue<>(batches);
+        private volatile boolean closed;
+        private volatile Throwable failure;
+        private Thread reader;
+        private String[] batch;
+        private int next;
+
+        @Override
+        public void run() {
+            String[] filling = new String[batchSize];
+            int count = 0;
+            try {
+                try (Stream<String> lines = source.toStream()) {
+                    final Iterator<String> it = lines.iterator();
+                    while (!closed && it.hasNext()) {
+                        filling[count++] = it.next();
+                        if (count == batchSize) {
+                            ring.put(filling);
+                            filling = new String[batchSize];
+                            count = 0;
+                        }
+                    }
+                } catch (RuntimeException | Error ex) {
+                    failure = ex;
+                }
+                if (count > 0) {
+                    ring.put(Arrays.copyOf(filling, count));
+                }
+                ring.put(end);
+            } catch (InterruptedException ex) {
+                // closed by the consumer, no one is waiting for more lines
+                return;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super String> action) {
+            if (batch == end) {
+                return false;
+            }
+            if (batch == null || next == batch.length) {
+                batch = take();
+                next = 0;
+                if (batch == end) {
+                    rethrow();
+                    return false;
+                }
+            }
+            action.accept(batch[next++]);
+            return true;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        /**
+         * Stops the reading thread, freeing it if it is waiting on a full
+         * ring.
+         */
+        void close() {
+            closed = true;
+            reader.interrupt();
+            ring.clear();
+        }
+
+        private String[] take() {
+            try {
+                return ring.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                    "Interrupted waiting for lines read ahead", ex);
+            }
+        }
+
+        private void rethrow() {
+            final Throwable thrown = failure;
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            }
+            if (thrown instanceof Error) {
+                throw (Error) thrown;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of the byte and char buffers a {@link StreamTextSource}
+ * reads and decodes its lines through, shared by all the sources in the
+ * process, so that a long suite opening one source after another reuses a
+ * few buffers rather than allocating new ones for each source.
+ *
+ * <p>A source takes its buffers when it starts reading and gives them back
+ * when it is closed. When the pool is empty new buffers are made, and when
+ * it is full buffers given back are dropped, so the pool never holds more
+ * than its capacity however many sources are open at once. The
+ * {@link #shared()} pool holds up to {@value #DEFAULT_CAPACITY} pairs of
+ * buffers, unless the {@value #CAPACITY_PROPERTY} system property says
+ * otherwise.
+ *
+ * @author Corey Morgan
+ */
+final class ReadBufferPool {
+
+    /**
+     * System property setting the capacity of the shared pool, {@value}.
+     */
+    static final String CAPACITY_PROPERTY = "wapitia.read.buffers";
+
+    /**
+     * Default capacity of the shared pool, {@value} pairs of buffers.
+     */
+    static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Size of each buffer, {@value} bytes or chars.
+     */
+    static final int BUFFER_SIZE = 1 << 13;
+
+    private static final ReadBufferPool SHARED = new ReadBufferPool(
+        Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+
+    private final BlockingQueue<Buffers> pool;
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * Creates an empty pool.
+     * @param capacity most pairs of buffers held.
+     */
+    ReadBufferPool(final int capacity) {
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * The process-wide pool.
+     * @return the shared pool.
+     */
+    static ReadBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Takes a pair of buffers from the pool, or makes one if it is empty.
+     * @return cleared buffers, with no bytes to decode and no chars to
+     *         read.
+     */
+    Buffers take() {
+        Buffers buffers = pool.poll();
+        if (buffers == null) {
+            allocations.incrementAndGet();
+            buffers = new Buffers();
+        }
+        buffers.bytes.clear();
+        buffers.chars.clear().flip();
+        return buffers;
+    }
+
+    /**
+     * Gives a pair of buffers back to the pool, unless it is full.
+     * @param buffers buffers no longer used.
+     */
+    void give(final Buffers buffers) {
+        pool.offer(buffers);
+    }
+
+    /**
+     * Number of pairs of buffers made because the pool was empty.
+     * @return the allocation count.
+     */
+    long getAllocationCount() {
+        return allocations.get();
+    }
+
+    /**
+     * A byte buffer to read into and a char buffer to decode into.
+     */
+    static final class Buffers {
+
+        final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    }
+
+}
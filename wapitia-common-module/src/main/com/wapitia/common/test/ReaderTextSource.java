@@ -33,6 +33,8 @@
 package com.wapitia.common.test;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.stream.Stream;
 
 /**
@@ -53,13 +55,26 @@ public class ReaderTextSource implements TextSource {
     /**
      * Produce a stream of test data strings.
      * Once this method is called, it is exhausted and cannot be called
-     * again.
+     * again. Closing the stream closes the reader.
      * @return a non-null {@code Stream} of {@code String}s.
      * @see BufferedReader#lines()
      */
     @Override
     public Stream<String> toStream() {
-        return reader.lines();
+        return TestDataMetrics.countChars(reader.lines()).onClose(this::close);
+    }
+
+    /**
+     * Closes the reader.
+     * @throws UncheckedIOException if the reader fails to close.
+     */
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records which resources are opened through
+ * {@link TextSource#fromResource(String, Class)} and
+ * {@link TextSource#loadResource(String, Class, java.nio.charset.Charset)}
+ * while some code runs, so that a test's golden data can be told from the
+ * rest and fingerprinted along with it.
+ *
+ * <p>A resource opened on any thread is recorded by every recording under
+ * way, so a test that reads its golden data from other threads is still
+ * covered, at the cost of tests running side by side each being charged
+ * with the others' resources. When nothing is being recorded opening a
+ * resource costs one check.
+ *
+ * @author Corey Morgan
+ */
+public final class ResourceRecorder {
+
+    private static final List<Set<String>> RECORDINGS =
+        new CopyOnWriteArrayList<>();
+
+    /**
+     * Runs some code, recording the resources it opens.
+     * @param body the code to run.
+     * @return the URLs of the resources opened, as
+     *         {@link URL#toExternalForm()} gives them, in order.
+     */
+    public static Set<String> recording(final Runnable body) {
+        final Set<String> opened = ConcurrentHashMap.newKeySet();
+        RECORDINGS.add(opened);
+        try {
+            body.run();
+        } finally {
+            RECORDINGS.removeIf(recording -> recording == opened);
+        }
+        return Collections.unmodifiableSet(new TreeSet<>(opened));
+    }
+
+    /**
+     * Records the opening of a resource with every recording under way,
+     * for readers of golden data that do not go through
+     * {@code TextSource}.
+     * @param resourceName the name of a resource, suitable for passing
+     *                     to {@link Class#getResource(String)}.
+     * @param clss {@code Class} used to load the resource.
+     */
+    public static void opened(final String resourceName, final Class<?> clss) {
+        if (RECORDINGS.isEmpty()) {
+            return;
+        }
+        final URL url = clss.getResource(resourceName);
+        if (url != null) {
+            final String opened = url.toExternalForm();
+            for (Set<String> recording : RECORDINGS) {
+                recording.add(opened);
+            }
+        }
+    }
+
+    /**
+     * Constructor is private as this is a utility class.
+     */
+    private ResourceRecorder() {
+    }
+
+}
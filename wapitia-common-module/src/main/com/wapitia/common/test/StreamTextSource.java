@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import com.wapitia.common.test.ReadBufferPool.Buffers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code TextSource} streaming the lines of an {@link InputStream}, read
+ * and decoded through buffers from a {@link ReadBufferPool} shared by every
+ * such source, rather than through buffers of its own.
+ *
+ * <p>Lines end as {@link java.io.BufferedReader#readLine()} ends them, at
+ * a line feed, a carriage return, or both, and malformed input is
+ * replaced, as {@link java.io.InputStreamReader} replaces it. The input
+ * stream is closed, and the buffers given back to the pool, once the lines
+ * are read to the end, or when the source or its stream is closed, which
+ * should be done if the lines are not all read.
+ *
+ * @author Corey Morgan
+ */
+public class StreamTextSource implements TextSource {
+
+    private final InputStream input;
+    private final CharsetDecoder decoder;
+    private Buffers buffers;
+    private boolean eof;
+    private boolean flushed;
+    private boolean skipLineFeed;
+    private boolean closed;
+
+    /**
+     * Creates a {@link TextSource} over the lines of an input stream.
+     * @param input the stream of encoded lines, which the source closes.
+     * @param charset character set for decoding the lines.
+     */
+    protected StreamTextSource(final InputStream input, final Charset charset) {
+        this.input = input;
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Produce a stream of test data strings.
+     * Once this method is called, it is exhausted and cannot be called
+     * again. Closing the stream closes the source.
+     * @return a non-null {@code Stream} of {@code String}s.
+     */
+    @Override
+    public Stream<String> toStream() {
+        final Stream<String> lines = StreamSupport.stream(new Lines(), false);
+        return TestDataMetrics.countChars(lines).onClose(this::close);
+    }
+
+    /**
+     * Closes the input stream and gives the buffers back to the pool.
+     * @throws UncheckedIOException if the input stream fails to close.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (buffers != null) {
+            ReadBufferPool.shared().give(buffers);
+            buffers = null;
+        }
+        try {
+            input.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * The next line, or {@code null} at the end of the input, when the
+     * source is closed.
+     */
+    private synchronized String nextLine() {
+        if (closed) {
+            return null;
+        }
+        if (buffers == null) {
+            buffers = ReadBufferPool.shared().take();
+        }
+        final CharBuffer chars = buffers.chars;
+        StringBuilder partial = null;
+        try {
+            do {
+                final char[] array = chars.array();
+                int start = chars.position();
+                final int limit = chars.limit();
+                if (skipLineFeed && start < limit) {
+                    skipLineFeed = false;
+                    if (array[start] == '\n') {
+                        ++start;
+                    }
+                }
+                for (int i = start; i < limit; ++i) {
+                    final char ch = array[i];
+                    if (ch == '\n' || ch == '\r') {
+                        chars.position(i + 1);
+                        skipLineFeed = ch == '\r';
+                        return partial == null
+                            ? new String(array, start, i - start)
+                            : partial.append(array, start, i - start)
+                                .toString();
+                    }
+                }
+                if (start < limit) {
+                    if (partial == null) {
+                        partial = new StringBuilder(2 * (limit - start));
+                    }
+                    partial.append(array, start, limit - start);
+                }
+                chars.position(limit);
+            } while (fill(buffers.bytes, chars));
+        } catch (IOException ex) {
+            close();
+            throw new UncheckedIOException(ex);
+        }
+        close();
+        return partial == null ? null : partial.toString();
+    }
+
+    /**
+     * Reads and decodes more chars into the emptied char buffer.
+     * @return {@code false} if there are no more.
+     */
+    private boolean fill(final ByteBuffer bytes, final CharBuffer chars)
+        throws IOException
+    {
+        chars.clear();
+        while (chars.position() == 0 && !flushed) {
+            if (!eof) {
+                final int read = input.read(bytes.array(),
+                    bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    bytes.position(bytes.position() + read);
+                }
+            }
+            bytes.flip();
+            final boolean underflow =
+                decoder.decode(bytes, chars, eof).isUnderflow();
+            bytes.compact();
+            if (eof && underflow) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    /**
+     * The lines of the source, read one at a time.
+     */
+    private final class Lines extends Spliterators.AbstractSpliterator<String> {
+
+        Lines() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super String> action) {
+            final String line = nextLine();
+            if (line == null) {
+                return false;
+            }
+            action.accept(line);
+            return true;
+        }
+    }
+
+}
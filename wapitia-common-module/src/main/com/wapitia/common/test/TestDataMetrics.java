@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counts and times of reading and comparing test data: lines
+ * and bytes read by text sources, lines dropped by line filters, time
+ * spent comparing and to the first mismatch, and time loading each
+ * resource.
+ *
+ * <p>Metrics are kept only when the {@value #ENABLED_PROPERTY} system
+ * property is {@code true} at startup, in which case they are also
+ * registered with the platform MBean server as {@value #OBJECT_NAME}, to
+ * be read by JConsole, VisualVM or any other JMX client during a suite
+ * run. The property is read once into a constant, so when it is off the
+ * checks on the hot paths are compiled away and nothing is counted.
+ * Counters are {@link LongAdder}s, so threads comparing in parallel do not
+ * contend on them.
+ *
+ * @author Corey Morgan
+ */
+public final class TestDataMetrics implements TestDataMetricsBean {
+
+    /**
+     * System property turning metrics on, {@value}.
+     */
+    public static final String ENABLED_PROPERTY = "wapitia.metrics";
+
+    /**
+     * Name the metrics are registered under, {@value}.
+     */
+    public static final String OBJECT_NAME =
+        "com.wapitia.common.test:type=TestDataMetrics";
+
+    private static final boolean ENABLED =
+        Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final TestDataMetrics SHARED = new TestDataMetrics();
+
+    static {
+        if (ENABLED) {
+            register(ManagementFactory.getPlatformMBeanServer());
+        }
+    }
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder charsRead = new LongAdder();
+    private final LongAdder linesFiltered = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder comparisonNanos = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder mismatchNanos = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final Map<String, LongAdder> loadNanosByName =
+        new ConcurrentHashMap<>();
+
+    private TestDataMetrics() {
+    }
+
+    /**
+     * The process-wide metrics.
+     * @return the shared metrics.
+     */
+    public static TestDataMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * {@code true} if metrics are being kept.
+     * @return the value of the {@value #ENABLED_PROPERTY} property at
+     *         startup.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Registers the shared metrics with an MBean server, if they are not
+     * already registered there.
+     * @param server the MBean server.
+     */
+    public static void register(final MBeanServer server) {
+        try {
+            server.registerMBean(SHARED, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ex) {
+            // registered already
+        } catch (JMException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Counts a line dropped by a line filter, if metrics are kept.
+     */
+    public static void lineFiltered() {
+        if (ENABLED) {
+            SHARED.linesFiltered.increment();
+        }
+    }
+
+    /**
+     * Records a finished comparison, if metrics are kept.
+     * @param nanos time the comparison ran.
+     * @param mismatched {@code true} if it failed.
+     */
+    public static void comparison(final long nanos, final boolean mismatched) {
+        if (ENABLED) {
+            SHARED.comparisons.increment();
+            SHARED.comparisonNanos.add(nanos);
+            if (mismatched) {
+                SHARED.mismatches.increment();
+                SHARED.mismatchNanos.add(nanos);
+            }
+        }
+    }
+
+    /**
+     * Counts the lines and characters of a stream of lines read from a
+     * reader, if metrics are kept.
+     * @param lines the lines.
+     * @return the same lines, counted as they are read.
+     */
+    static Stream<String> countChars(final Stream<String> lines) {
+        if (!ENABLED) {
+            return lines;
+        }
+        return lines.peek(line -> {
+            SHARED.linesRead.increment();
+            SHARED.charsRead.add(line.length());
+        });
+    }
+
+    /**
+     * Counts the lines and bytes of byte lines as they are read, if
+     * metrics are kept. Splitting the lines splits the counting with them.
+     * @param lines the lines.
+     * @return the same lines, counted as they are read.
+     */
+    static Spliterator<ByteLine> countBytes(final Spliterator<ByteLine> lines) {
+        return ENABLED ? new ByteCounter(lines) : lines;
+    }
+
+    /**
+     * The time now, for timing a load, or zero if metrics are not kept.
+     */
+    static long loadStarted() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the loading of a resource, if metrics are kept.
+     * @param name name of the resource.
+     * @param started time the load started, from {@link #loadStarted()}.
+     */
+    static void loaded(final String name, final long started) {
+        if (ENABLED) {
+            final long nanos = System.nanoTime() - started;
+            SHARED.loads.increment();
+            SHARED.loadNanos.add(nanos);
+            SHARED.loadNanosByName
+                .computeIfAbsent(name, key -> new LongAdder()).add(nanos);
+        }
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getCharsRead() {
+        return charsRead.sum();
+    }
+
+    @Override
+    public long getLinesFiltered() {
+        return linesFiltered.sum();
+    }
+
+    @Override
+    public long getComparisonCount() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getComparisonNanos() {
+        return comparisonNanos.sum();
+    }
+
+    @Override
+    public long getMismatchCount() {
+        return mismatches.sum();
+    }
+
+    @Override
+    public long getMismatchNanos() {
+        return mismatchNanos.sum();
+    }
+
+    @Override
+    public long getResourceLoadCount() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getResourceLoadNanos() {
+        return loadNanos.sum();
+    }
+
+    @Override
+    public Map<String, Long> getResourceLoadNanosByName() {
+        final Map<String, Long> byName = new TreeMap<>();
+        loadNanosByName.forEach((name, nanos) -> byName.put(name, nanos.sum()));
+        return byName;
+    }
+
+    @Override
+    public void reset() {
+        linesRead.reset();
+        bytesRead.reset();
+        charsRead.reset();
+        linesFiltered.reset();
+        comparisons.reset();
+        comparisonNanos.reset();
+        mismatches.reset();
+        mismatchNanos.reset();
+        loads.reset();
+        loadNanos.reset();
+        loadNanosByName.clear();
+    }
+
+    /**
+     * Counts the lines and bytes passing through a spliterator of byte
+     * lines.
+     */
+    private static final class ByteCounter implements Spliterator<ByteLine> {
+
+        private final Spliterator<ByteLine> lines;
+
+        ByteCounter(final Spliterator<ByteLine> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super ByteLine> action) {
+            return lines.tryAdvance(line -> {
+                count(line);
+                action.accept(line);
+            });
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super ByteLine> action) {
+            lines.forEachRemaining(line -> {
+                count(line);
+                action.accept(line);
+            });
+        }
+
+        @Override
+        public Spliterator<ByteLine> trySplit() {
+            final Spliterator<ByteLine> prefix = lines.trySplit();
+            return prefix == null ? null : new ByteCounter(prefix);
+        }
+
+        @Override
+        public long estimateSize() {
+            return lines.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return lines.characteristics();
+        }
+
+        private static void count(final ByteLine line) {
+            SHARED.linesRead.increment();
+            SHARED.bytesRead.add(line.length());
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test;
+
+import java.util.Map;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface of {@link TestDataMetrics}, as seen through
+ * JMX by tools such as JConsole or VisualVM. It is an {@link MXBean}, so
+ * its attributes need only the open types any client knows.
+ *
+ * @author Corey Morgan
+ */
+@MXBean
+public interface TestDataMetricsBean {
+
+    /**
+     * Number of lines read from text sources.
+     * @return the line count.
+     */
+    long getLinesRead();
+
+    /**
+     * Number of encoded bytes of lines read from byte-backed sources, such
+     * as memory-mapped files and loaded resources, not counting line
+     * terminators.
+     * @return the byte count.
+     */
+    long getBytesRead();
+
+    /**
+     * Number of characters of lines read from reader-backed sources, such
+     * as streamed resources, not counting line terminators.
+     * @return the character count.
+     */
+    long getCharsRead();
+
+    /**
+     * Number of lines dropped by the line filters of comparisons.
+     * @return the dropped line count.
+     */
+    long getLinesFiltered();
+
+    /**
+     * Number of comparisons run, whether they passed or failed.
+     * @return the comparison count.
+     */
+    long getComparisonCount();
+
+    /**
+     * Total time spent in comparisons, in nanoseconds, including reading
+     * their lines.
+     * @return the comparison time.
+     */
+    long getComparisonNanos();
+
+    /**
+     * Number of comparisons that failed.
+     * @return the mismatch count.
+     */
+    long getMismatchCount();
+
+    /**
+     * Total time failed comparisons ran before finding their first
+     * mismatch, in nanoseconds.
+     * @return the time to first mismatch.
+     */
+    long getMismatchNanos();
+
+    /**
+     * Number of resources loaded into memory.
+     * @return the load count.
+     */
+    long getResourceLoadCount();
+
+    /**
+     * Total time spent loading resources into memory, in nanoseconds.
+     * @return the load time.
+     */
+    long getResourceLoadNanos();
+
+    /**
+     * Time spent loading each resource into memory, in nanoseconds, by
+     * resource name.
+     * @return the load times.
+     */
+    Map<String, Long> getResourceLoadNanosByName();
+
+    /**
+     * Sets every count and time back to zero.
+     */
+    void reset();
+}
@@ -32,9 +32,13 @@
 
 package com.wapitia.common.test;
 
-import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.stream.Stream;
 
 /**
@@ -43,11 +47,16 @@ import java.util.stream.Stream;
  * <p>The {@link #toStream()} supplies the {@link FunctionalInterface} to this
  * class, and once it is called, the stream of data is usually exhausted,
  * and calling this method again will produce unpredictable results.
+ *
+ * <p>A source reading from a stream or file holds it open until it is
+ * {@link #close() closed}, which closing the stream from
+ * {@link #toStream()} also does, so reading the lines in a
+ * try-with-resources block releases everything the source holds.
  * @author Corey Morgan
  *
  */
 @FunctionalInterface
-public interface TextSource {
+public interface TextSource extends AutoCloseable {
 
     /**
      * Produce a stream of test data strings.
@@ -58,6 +67,17 @@ public interface TextSource {
      */
     Stream<String> toStream();
 
+    /**
+     * Releases whatever the source holds open, such as an input stream
+     * and its read buffers. Sources held in memory hold nothing, and
+     * closing them does nothing. Closing a source twice does nothing more.
+     *
+     * @throws UncheckedIOException if the source fails to close.
+     */
+    @Override
+    default void close() {
+    }
+
     /**
      * Builds and returns a {@code TextSource} instance given some
      * text stream resource name.
@@ -85,19 +105,238 @@ public interface TextSource {
      * {@link java.lang.ClassLoader ClassLoader} to use to load the
      * resource.
      *
+     * <p>A resource small enough for the {@link GoldenCache#shared()
+     * shared golden cache} is loaded once and shared, and its source may be
+     * streamed again; a larger one is streamed from the resource, through
+     * a {@link StreamTextSource} that closes the resource when its lines
+     * are read to the end or its stream is closed.
+     *
+     * <p>A resource compressed by gzip or zlib deflate, known by its name
+     * ending in {@code .gz}, {@code .zz} or {@code .deflate} or else by its
+     * first bytes, is decompressed as it is read. Blocked gzip, as written
+     * by {@code bgzip}, is decompressed in parallel when the
+     * {@code wapitia.gzip.parallel} system property is {@code true}.
+     *
      * @param resourceName the name of a resource, suitable for passing
      *                     to {@link Class#getResourceAsStream(String)}
      * @param clss {@code Class} to use to load the text resource.
      *
-     * @return A newly build TextSource structure,
-     *         built from the resource stream.
+     * @return A TextSource built from the resource stream.
+     *
+     * @throws java.io.UncheckedIOException if the resource is missing or
+     *         cannot be read.
      */
     public static TextSource fromResource(
           String resourceName, Class<?> clss)
     {
+        ResourceRecorder.opened(resourceName, clss);
+        CompactTextSource cached = GoldenCache.shared()
+            .get(resourceName, clss, Charset.defaultCharset());
+        if (cached != null) {
+            return cached;
+        }
         InputStream istream = clss.getResourceAsStream(resourceName);
-        BufferedReader rdr = new BufferedReader(new InputStreamReader(istream));
-        TextSource result = new ReaderTextSource(rdr);
+        if (istream == null) {
+            throw new UncheckedIOException(
+                new FileNotFoundException(resourceName));
+        }
+        try {
+            istream = Decompression.decompress(istream, resourceName);
+        } catch (IOException ex) {
+            try {
+                istream.close();
+            } catch (IOException suppressed) {
+                ex.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException(ex);
+        }
+        TextSource result = fromStream(istream, Charset.defaultCharset());
+        return result;
+    }
+
+    /**
+     * Loads a text stream resource into memory in a compact, immutable
+     * {@code TextSource}, decoding lines with the platform's default
+     * charset.
+     *
+     * @param resourceName the name of a resource, resolved to an i/o
+     *                     stream from a call to
+     *                     {@link Class#getResourceAsStream(String)}
+     *
+     * @return A newly built CompactTextSource holding the resource.
+     *
+     * @see #loadResource(String, Class, Charset)
+     */
+    public static CompactTextSource loadResource(String resourceName) {
+        CompactTextSource result = loadResource(resourceName,
+            TextSource.class, Charset.defaultCharset());
+        return result;
+    }
+
+    /**
+     * Loads a text stream resource into memory in a compact, immutable
+     * {@code TextSource}, which unlike one from
+     * {@link #fromResource(String, Class)} may be streamed any number of
+     * times, and from any number of threads at once. A compressed resource
+     * is decompressed as {@code fromResource} would.
+     *
+     * @param resourceName the name of a resource, suitable for passing
+     *                     to {@link Class#getResourceAsStream(String)}
+     * @param clss {@code Class} to use to load the text resource.
+     * @param charset character set used when decoding lines to Strings.
+     *
+     * @return A newly built CompactTextSource holding the resource.
+     *
+     * @throws java.io.UncheckedIOException if the resource is missing or
+     *         cannot be read.
+     */
+    public static CompactTextSource loadResource(
+          String resourceName, Class<?> clss, Charset charset)
+    {
+        ResourceRecorder.opened(resourceName, clss);
+        InputStream istream = clss.getResourceAsStream(resourceName);
+        if (istream == null) {
+            throw new UncheckedIOException(
+                new FileNotFoundException(resourceName));
+        }
+        CompactTextSource result;
+        long started = TestDataMetrics.loadStarted();
+        try {
+            result = CompactTextSource.read(
+                Decompression.decompress(istream, resourceName), charset);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        TestDataMetrics.loaded(resourceName, started);
+        return result;
+    }
+
+    /**
+     * Builds a memory-mapped {@code TextSource} over the lines of some
+     * file, decoding lines with the platform's default charset.
+     *
+     * @param path location of the text file.
+     *
+     * @return A newly built MappedTextSource over the file.
+     *
+     * @see #fromPath(Path, Charset)
+     */
+    public static MappedTextSource fromPath(Path path) {
+        MappedTextSource result = fromPath(path, Charset.defaultCharset());
+        return result;
+    }
+
+    /**
+     * Builds a memory-mapped {@code TextSource} over the lines of some
+     * file. The file is not opened until the source is streamed, and
+     * its lines are available as zero-copy views through
+     * {@link MappedTextSource#toCharSequenceStream()}.
+     *
+     * @param path location of the text file.
+     * @param charset character set used when decoding lines to Strings.
+     *
+     * @return A newly built MappedTextSource over the file.
+     */
+    public static MappedTextSource fromPath(Path path, Charset charset) {
+        MappedTextSource result = new MappedTextSource(path, charset);
+        return result;
+    }
+
+    /**
+     * Builds a memory-mapped {@code TextSource} over a range of the lines
+     * of some file, seeking straight to the range through the file's
+     * {@link LineIndex}, which is built and saved next to the file on
+     * first use. However far into the file the range lies, only the lines
+     * of the range and up to an index interval of lines around it are
+     * read.
+     *
+     * @param path location of the text file.
+     * @param charset character set used when decoding lines to Strings.
+     * @param firstLine number of the first line, counting from 1.
+     * @param lineCount most lines to read.
+     *
+     * @return A newly built LineRangeTextSource over the lines.
+     *
+     * @see LineIndex#forPath(Path)
+     */
+    public static LineRangeTextSource fromPath(
+          Path path, Charset charset, long firstLine, long lineCount)
+    {
+        LineRangeTextSource result = new LineRangeTextSource(path, charset,
+            LineIndex.forPath(path), firstLine, lineCount);
+        return result;
+    }
+
+    /**
+     * Builds a {@code TextSource} over the lines of encoded text held in
+     * a byte array, without decoding them until a String is needed.
+     *
+     * @param bytes the encoded text, which must not change while the
+     *              source is in use.
+     * @param charset character set used when decoding lines to Strings.
+     *
+     * @return A newly built BufferTextSource over the bytes.
+     */
+    public static BufferTextSource fromBytes(byte[] bytes, Charset charset) {
+        BufferTextSource result =
+            new BufferTextSource(ByteBuffer.wrap(bytes), charset);
+        return result;
+    }
+
+    /**
+     * Builds a {@code TextSource} streaming the lines of an input stream,
+     * which it closes once the lines are read to the end or the source
+     * or its stream is closed.
+     *
+     * @param istream the stream of encoded lines.
+     * @param charset character set used when decoding lines to Strings.
+     *
+     * @return A newly built StreamTextSource over the input stream.
+     */
+    public static StreamTextSource fromStream(
+          InputStream istream, Charset charset)
+    {
+        StreamTextSource result = new StreamTextSource(istream, charset);
+        return result;
+    }
+
+    /**
+     * Builds a {@code TextSource} reading the lines of another source
+     * ahead of its consumer on a background thread, in batches of
+     * {@value ReadAheadTextSource#DEFAULT_BATCH_SIZE} lines, with up to
+     * {@value ReadAheadTextSource#DEFAULT_BATCHES} batches read ahead.
+     *
+     * @param source the source to read ahead.
+     *
+     * @return A newly built ReadAheadTextSource over the source.
+     *
+     * @see #readAhead(TextSource, int, int)
+     */
+    public static ReadAheadTextSource readAhead(TextSource source) {
+        ReadAheadTextSource result = readAhead(source,
+            ReadAheadTextSource.DEFAULT_BATCH_SIZE,
+            ReadAheadTextSource.DEFAULT_BATCHES);
+        return result;
+    }
+
+    /**
+     * Builds a {@code TextSource} reading the lines of another source
+     * ahead of its consumer on a background thread, so that reading and
+     * decoding them overlaps with their comparison. The stream of the
+     * new source should be closed if it is not read to the end, to stop
+     * the background thread.
+     *
+     * @param source the source to read ahead.
+     * @param batchSize number of lines handed over at a time.
+     * @param batches most batches of lines read ahead of the consumer.
+     *
+     * @return A newly built ReadAheadTextSource over the source.
+     */
+    public static ReadAheadTextSource readAhead(
+          TextSource source, int batchSize, int batches)
+    {
+        ReadAheadTextSource result =
+            new ReadAheadTextSource(source, batchSize, batches);
         return result;
     }
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import static java.lang.String.format;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Compares an expected and an actual sequence of lines in aligned chunks on
+ * a {@link ForkJoinPool}, finding the same first mismatch as the sequential
+ * comparison in {@link CompareTestData}.
+ *
+ * <p>The calling thread reads both sequences in chunks of raw lines, and
+ * each chunk is filtered by a pool task. Filtered lines are then paired up
+ * by position into ranges, and each range is compared by another pool task.
+ * A mismatch is recorded against its line number and only the lowest is
+ * kept. Reading stops, and compare tasks give up, once a mismatch is known
+ * at an earlier line than the one they would look at, so all the lines
+ * before the reported mismatch are always compared while little work is
+ * wasted beyond it. At most a few chunks per pool thread are held in
+ * memory at any time.
+ *
+ * @param <T> type of the lines being compared.
+ *
+ * @author Corey Morgan
+ */
+final class ChunkedComparison<T> {
+
+    /**
+     * Default number of raw lines read as one chunk, {@value}.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 12;
+
+    private static final Object[] NO_LINES = new Object[0];
+
+    private final ForkJoinPool pool;
+    private final Comparator<T> comp;
+    private final Predicate<String> lineFilter;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final AtomicLong firstMismatch = new AtomicLong(Long.MAX_VALUE);
+    private String failure;
+
+    /**
+     * Creates a comparison running on some pool.
+     * @param pool pool to run the filter and compare tasks.
+     * @param comp Comparator for equality.
+     * @param lineFilter filter applied to both sequences to ignore
+     *                   particular line types, such as comments.
+     * @param chunkSize number of raw lines read as one chunk.
+     */
+    ChunkedComparison(
+        final ForkJoinPool pool,
+        final Comparator<T> comp,
+        final Predicate<String> lineFilter,
+        final int chunkSize)
+    {
+        this.pool = pool;
+        this.comp = comp;
+        this.lineFilter = lineFilter;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = 4 * pool.getParallelism();
+    }
+
+    /**
+     * Compares the two sequences.
+     * @param expected Expected lines.
+     * @param actuals Actual lines.
+     * @param mustBeSameLength {@code true} if the actuals may not have
+     *                         lines beyond those expected.
+     * @return the failure message for the first mismatch, or {@code null}
+     *         if the sequences match.
+     */
+    String compare(
+        final Iterator<T> expected,
+        final Iterator<T> actuals,
+        final boolean mustBeSameLength)
+    {
+        final ChunkReader exp = new ChunkReader(expected);
+        final ChunkReader act = new ChunkReader(actuals);
+        final Deque<ForkJoinTask<?>> compares = new ArrayDeque<>();
+        long line = 0L;
+        Object[] echunk = exp.next();
+        Object[] achunk = act.next();
+        int epos = 0;
+        int apos = 0;
+        while (echunk != null && firstMismatch.get() > line) {
+            if (achunk == null) {
+                record(line + 1,
+                    format(CompareTestData.CAME_UP_SHORT_STR, line + 1,
+                        echunk[epos]));
+                break;
+            }
+            final int count =
+                Math.min(echunk.length - epos, achunk.length - apos);
+            compares.add(pool.submit(
+                new CompareRange(echunk, epos, achunk, apos, count, line)));
+            line += count;
+            epos += count;
+            apos += count;
+            if (epos == echunk.length) {
+                echunk = exp.next();
+                epos = 0;
+            }
+            if (apos == achunk.length) {
+                achunk = act.next();
+                apos = 0;
+            }
+            while (compares.size() > maxInFlight) {
+                compares.poll().join();
+            }
+        }
+        if (echunk == null && achunk != null && mustBeSameLength) {
+            record(line + 1,
+                format(CompareTestData.TOO_LONG_STR, line, achunk[apos]));
+        }
+        for (ForkJoinTask<?> task : compares) {
+            task.join();
+        }
+        exp.cancel();
+        act.cancel();
+        return failure;
+    }
+
+    /**
+     * Keeps {@code message} as the failure if {@code line} is the lowest
+     * mismatched line seen so far.
+     * @param line line number of the mismatch.
+     * @param message failure message for the mismatch.
+     */
+    private synchronized void record(final long line, final String message) {
+        if (line < firstMismatch.get()) {
+            firstMismatch.set(line);
+            failure = message;
+        }
+    }
+
+    /**
+     * Reads raw chunks of lines from an iterator and filters them on the
+     * pool, keeping a few chunks ahead of the one being consumed.
+     */
+    private final class ChunkReader {
+
+        private final Iterator<T> lines;
+        private final Deque<ForkJoinTask<Object[]>> ahead =
+            new ArrayDeque<>();
+
+        ChunkReader(final Iterator<T> lines) {
+            this.lines = lines;
+        }
+
+        /**
+         * The next non-empty chunk of filtered lines.
+         * @return filtered lines, or {@code null} at the end of the lines.
+         */
+        Object[] next() {
+            Object[] chunk = NO_LINES;
+            while (chunk.length == 0) {
+                while (ahead.size() < maxInFlight && lines.hasNext()) {
+                    ahead.add(pool.submit(new FilterChunk(readChunk())));
+                }
+                if (ahead.isEmpty()) {
+                    return null;
+                }
+                chunk = ahead.poll().join();
+            }
+            return chunk;
+        }
+
+        void cancel() {
+            for (ForkJoinTask<Object[]> task : ahead) {
+                task.cancel(false);
+            }
+            ahead.clear();
+        }
+
+        private Object[] readChunk() {
+            final Object[] chunk = new Object[chunkSize];
+            int count = 0;
+            while (count < chunkSize && lines.hasNext()) {
+                chunk[count++] = lines.next();
+            }
+            return count == chunkSize ? chunk : Arrays.copyOf(chunk, count);
+        }
+    }
+
+    /**
+     * Task filtering one raw chunk of lines.
+     */
+    private final class FilterChunk implements Callable<Object[]> {
+
+        private final Object[] chunk;
+
+        FilterChunk(final Object[] chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public Object[] call() {
+            if (lineFilter == CompareTestData.noFilter) {
+                return chunk;
+            }
+            int kept = 0;
+            for (Object item : chunk) {
+                if (CompareTestData.accepts(lineFilter, item)) {
+                    chunk[kept++] = item;
+                }
+            }
+            return kept == chunk.length ? chunk : Arrays.copyOf(chunk, kept);
+        }
+    }
+
+    /**
+     * Task comparing one aligned range of expected and actual lines.
+     */
+    private final class CompareRange implements Runnable {
+
+        private final Object[] expected;
+        private final int epos;
+        private final Object[] actuals;
+        private final int apos;
+        private final int count;
+        private final long firstLine;
+
+        CompareRange(
+            final Object[] expected,
+            final int epos,
+            final Object[] actuals,
+            final int apos,
+            final int count,
+            final long linesBefore)
+        {
+            this.expected = expected;
+            this.epos = epos;
+            this.actuals = actuals;
+            this.apos = apos;
+            this.count = count;
+            this.firstLine = linesBefore + 1;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            for (int i = 0; i < count; ++i) {
+                final long line = firstLine + i;
+                if (firstMismatch.get() <= line) {
+                    return;
+                }
+                final T s1 = (T) expected[epos + i];
+                final T s2 = (T) actuals[apos + i];
+                if (comp.compare(s1, s2) != 0) {
+                    record(line, format(CompareTestData.ITEM_MISMATCH_STR,
+                        line, s1, s2));
+                    return;
+                }
+            }
+        }
+    }
+
+}
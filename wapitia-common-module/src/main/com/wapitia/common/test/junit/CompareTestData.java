@@ -35,12 +35,28 @@ package com.wapitia.common.test.junit;
 import static java.lang.String.format;
 import static org.junit.Assert.fail;
 
+import com.wapitia.common.test.ByteLine;
+import com.wapitia.common.test.CompactTextSource;
+import com.wapitia.common.test.LineDigest;
+import com.wapitia.common.test.LineFilter;
+import com.wapitia.common.test.LineNormalizer;
+import com.wapitia.common.test.ResourceRecorder;
+import com.wapitia.common.test.TestDataMetrics;
 import com.wapitia.common.test.TextSource;
 
+import java.io.IOException;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
@@ -54,19 +70,37 @@ import java.util.stream.Stream;
  */
 public class CompareTestData {
 
-    private static final String TOO_LONG_STR =
+    static final String TOO_LONG_STR =
         "Expected end of actual data at line %d, but got \"%s\"";
-    private static final String CAME_UP_SHORT_STR =
+    static final String CAME_UP_SHORT_STR =
         "Came up short at line %d, expected \"%s\"";
-    private static final String ITEM_MISMATCH_STR =
+    static final String ITEM_MISMATCH_STR =
         "Item mismatch at line %d, expected \"%s\", but got \"%s\"";
 
+    /**
+     * Default lines of each side read ahead by
+     * {@link #assertEqualDiff(Stream, Stream, Predicate)}, {@value}.
+     */
+    public static final int DEFAULT_DIFF_WINDOW = 1000;
+
+    /**
+     * Default hunks reported by
+     * {@link #assertEqualDiff(Stream, Stream, Predicate)}, {@value}.
+     */
+    public static final int DEFAULT_DIFF_HUNKS = 10;
+
+    /**
+     * Default lines of context around each hunk reported by
+     * {@link #assertEqualDiff(Stream, Stream, Predicate)}, {@value}.
+     */
+    public static final int DEFAULT_DIFF_CONTEXT = 3;
+
     /**
      * Regular Expression matching a hash-code comment line.
      * A hash-code comment line is one that starts with a hash character '#'
      * preceded by optional whitespace, and continuing to the end of the
      * string.
-     * @see Pattern#compile(String)
+     * @see java.util.regex.Pattern#compile(String)
      */
     public static final String HASH_COMMENT_REGEX = "^\\s*#.*$";
 
@@ -75,13 +109,16 @@ public class CompareTestData {
      * not a {@link #HASH_COMMENT_REGEX comment}. This is used to
      * filter out comment strings.
      *
+     * <p>The predicate is a compiled {@link LineFilter}, which tests each
+     * line with a single scan and no regular expression, so it also
+     * tests any {@code CharSequence} line through
+     * {@link LineFilter#accepts(CharSequence)} without first making a
+     * String of it.
+     *
      * @return a new Predicate that will filter out hash comment lines.
      */
     public static Predicate<String> noHashComments() {
-        final Pattern commentPattern = Pattern.compile(HASH_COMMENT_REGEX);
-        final Predicate<String> noComments =
-            ts -> ! commentPattern.matcher(ts).matches();
-        return noComments;
+        return LineFilter.keepAll().dropHashComments();
     }
 
     /**
@@ -90,9 +127,116 @@ public class CompareTestData {
      */
     public static Predicate<String> noFilter = ts -> true;
 
+    /**
+     * Predicate tests {@code true} when the UTF-8 or ASCII encoded line is
+     * not a {@link #HASH_COMMENT_REGEX comment}, deciding so from the bytes
+     * alone with just the meaning the regular expression has for the
+     * decoded line. This is used to filter out comment lines when
+     * {@link #assertEqualBytes comparing bytes}.
+     *
+     * @return a Predicate that will filter out hash comment lines.
+     * @see LineFilter#dropHashComments()
+     */
+    public static Predicate<ByteLine> noHashCommentBytes() {
+        final LineFilter filter = LineFilter.keepAll().dropHashComments();
+        return filter::accepts;
+    }
+
+    /**
+     * Compares two character sequences character by character, in the
+     * manner of {@link String#compareTo(String)}. Used as a
+     * {@link Comparator} when comparing streams of lines that are not all
+     * Strings, such as the views from
+     * {@link com.wapitia.common.test.MappedTextSource#toCharSequenceStream()
+     * MappedTextSource}.
+     *
+     * <p>A {@link ByteLine} is compared by its bytes with another line in
+     * the same encoding, and otherwise by its decoded text, unless it is
+     * all ASCII and so reads as its text already.
+     *
+     * @param cs1 first sequence, not null.
+     * @param cs2 second sequence, not null.
+     * @return zero when both hold the same characters, otherwise a negative
+     *         or positive number as {@code cs1} orders before or after
+     *         {@code cs2}.
+     */
+    public static int compareContent(
+        final CharSequence cs1,
+        final CharSequence cs2)
+    {
+        final CharSequence text1 = asText(cs1, cs2);
+        final CharSequence text2 = asText(cs2, cs1);
+        final int len1 = text1.length();
+        final int len2 = text2.length();
+        final int len = Math.min(len1, len2);
+        for (int i = 0; i < len; ++i) {
+            final char c1 = text1.charAt(i);
+            final char c2 = text2.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len1 - len2;
+    }
+
+    /**
+     * Compares two character sequences as {@link #compareContent} does,
+     * but as though neither had any trailing whitespace, without making
+     * trimmed copies of them. Whitespace is as in {@link LineFilter}.
+     *
+     * @param cs1 first sequence, not null.
+     * @param cs2 second sequence, not null.
+     * @return zero when both hold the same characters before any trailing
+     *         whitespace, otherwise a negative or positive number as
+     *         {@code cs1} orders before or after {@code cs2}.
+     */
+    public static int compareIgnoringTrailingWhitespace(
+        final CharSequence cs1,
+        final CharSequence cs2)
+    {
+        final CharSequence text1 = asText(cs1, cs2);
+        final CharSequence text2 = asText(cs2, cs1);
+        final int len1 = trimmedLength(text1);
+        final int len2 = trimmedLength(text2);
+        final int len = Math.min(len1, len2);
+        for (int i = 0; i < len; ++i) {
+            final char c1 = text1.charAt(i);
+            final char c2 = text2.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len1 - len2;
+    }
+
+    /**
+     * A sequence whose chars can be compared with those of another: a
+     * {@link ByteLine} holding non-ASCII bytes is decoded, unless the other
+     * is a {@code ByteLine} in the same encoding, since its bytes then read
+     * as chars that are not its text.
+     */
+    private static CharSequence asText(
+        final CharSequence seq,
+        final CharSequence other)
+    {
+        if (!(seq instanceof ByteLine)) {
+            return seq;
+        }
+        final ByteLine line = (ByteLine) seq;
+        if (other instanceof ByteLine
+            && ((ByteLine) other).getCharset().equals(line.getCharset())
+            || line.isAscii()) {
+            return line;
+        }
+        return line.toString();
+    }
+
     /**
      * Compare expected and actual lines of text.
      * Comment lines (those that begin with '#') are ignored.
+     * The expected lines come from the shared golden cache when they
+     * fit, or are otherwise read ahead on another thread while the lines
+     * already read are compared.
      *
      * @param expectedsResourceName Expected lines of test data,
      *                              as a resource to load.
@@ -100,14 +244,21 @@ public class CompareTestData {
      *
      * @see #assertEqual(Stream, Stream,
      *          Comparator, Predicate, boolean)
+     * @see TextSource#fromResource(String)
+     * @see TextSource#readAhead(TextSource)
      */
     public static void assertEqual(
         final String expectedsResourceName,
         final Stream<String> actuals)
     {
-        final TextSource ts =
+        final TextSource resource =
             TextSource.fromResource(expectedsResourceName);
-        assertEqual(ts.toStream(), actuals, noHashComments());
+        final TextSource ts = resource instanceof CompactTextSource
+            ? resource
+            : TextSource.readAhead(resource);
+        try (Stream<String> expected = ts.toStream()) {
+            assertEqual(expected, actuals, noHashComments());
+        }
     }
 
     /**
@@ -160,8 +311,773 @@ public class CompareTestData {
         final Predicate<String> lineFilter,
         final boolean mustBeSameLength)
     {
-        final Iterator<T> it1 = expectedStr.iterator();
-        final Iterator<T> it2 = actualStr.iterator();
+        measured(() -> compareLines(expectedStr, actualStr, comp,
+            lineFilter, mustBeSameLength));
+    }
+
+    /**
+     * Compare an expected series of ints to some actual series, element by
+     * element, without boxing either.
+     * If the series mismatch then this will
+     * {@link org.junit.Assert#fail fail} with the same messages as
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)},
+     * numbering the elements as it does lines.
+     *
+     * <p>A golden file of numbers may be read straight into such a series
+     * by {@link com.wapitia.common.test.ByteTextSource#toIntStream()}.
+     *
+     * @param expected Expected series.
+     * @param actuals Actual series, must be at least as long as expected.
+     * @param mustBeSameLength {@code true} if the expected series must have
+     *                         no extra elements beyond what the actuals
+     *                         provide.
+     */
+    public static void assertEqual(
+        final IntStream expected,
+        final IntStream actuals,
+        final boolean mustBeSameLength)
+    {
+        measured(() -> {
+            final PrimitiveIterator.OfInt it1 = expected.iterator();
+            final PrimitiveIterator.OfInt it2 = actuals.iterator();
+            long line = 0L;
+            while (it1.hasNext()) {
+                ++line;
+                final int n1 = it1.nextInt();
+                if (!it2.hasNext()) {
+                    fail(format(CAME_UP_SHORT_STR, line, n1));
+                }
+                final int n2 = it2.nextInt();
+                if (n1 != n2) {
+                    fail(format(ITEM_MISMATCH_STR, line, n1, n2));
+                }
+            }
+            if (it2.hasNext() && mustBeSameLength) {
+                fail(format(TOO_LONG_STR, line, it2.nextInt()));
+            }
+        });
+    }
+
+    /**
+     * Compare an expected series of longs to some actual series, element by
+     * element, without boxing either, as
+     * {@link #assertEqual(IntStream, IntStream, boolean)} does ints.
+     *
+     * @param expected Expected series.
+     * @param actuals Actual series, must be at least as long as expected.
+     * @param mustBeSameLength {@code true} if the expected series must have
+     *                         no extra elements beyond what the actuals
+     *                         provide.
+     */
+    public static void assertEqual(
+        final LongStream expected,
+        final LongStream actuals,
+        final boolean mustBeSameLength)
+    {
+        measured(() -> {
+            final PrimitiveIterator.OfLong it1 = expected.iterator();
+            final PrimitiveIterator.OfLong it2 = actuals.iterator();
+            long line = 0L;
+            while (it1.hasNext()) {
+                ++line;
+                final long n1 = it1.nextLong();
+                if (!it2.hasNext()) {
+                    fail(format(CAME_UP_SHORT_STR, line, n1));
+                }
+                final long n2 = it2.nextLong();
+                if (n1 != n2) {
+                    fail(format(ITEM_MISMATCH_STR, line, n1, n2));
+                }
+            }
+            if (it2.hasNext() && mustBeSameLength) {
+                fail(format(TOO_LONG_STR, line, it2.nextLong()));
+            }
+        });
+    }
+
+    /**
+     * Compare an expected series of doubles to some actual series, element
+     * by element and within a tolerance, without boxing either, as
+     * {@link #assertEqual(IntStream, IntStream, boolean)} does ints.
+     *
+     * <p>Two elements match when they differ by no more than
+     * {@code absTolerance}, or by no more than {@code relTolerance} times
+     * the larger of their magnitudes; with both tolerances zero they must
+     * be equal. {@code NaN} matches only {@code NaN}, and an infinity only
+     * the same infinity.
+     *
+     * @param expected Expected series.
+     * @param actuals Actual series, must be at least as long as expected.
+     * @param absTolerance largest absolute difference allowed, zero or more.
+     * @param relTolerance largest difference allowed relative to the larger
+     *                     magnitude, zero or more.
+     * @param mustBeSameLength {@code true} if the expected series must have
+     *                         no extra elements beyond what the actuals
+     *                         provide.
+     */
+    public static void assertEqual(
+        final DoubleStream expected,
+        final DoubleStream actuals,
+        final double absTolerance,
+        final double relTolerance,
+        final boolean mustBeSameLength)
+    {
+        if (!(absTolerance >= 0.0 && relTolerance >= 0.0)) {
+            throw new IllegalArgumentException("absTolerance " + absTolerance
+                + ", relTolerance " + relTolerance);
+        }
+        measured(() -> {
+            final PrimitiveIterator.OfDouble it1 = expected.iterator();
+            final PrimitiveIterator.OfDouble it2 = actuals.iterator();
+            long line = 0L;
+            while (it1.hasNext()) {
+                ++line;
+                final double n1 = it1.nextDouble();
+                if (!it2.hasNext()) {
+                    fail(format(CAME_UP_SHORT_STR, line, n1));
+                }
+                final double n2 = it2.nextDouble();
+                if (!within(n1, n2, absTolerance, relTolerance)) {
+                    fail(format(ITEM_MISMATCH_STR, line, n1, n2));
+                }
+            }
+            if (it2.hasNext() && mustBeSameLength) {
+                fail(format(TOO_LONG_STR, line, it2.nextDouble()));
+            }
+        });
+    }
+
+    /**
+     * Compare expected lines of text with actual lines published
+     * asynchronously, checking each as it arrives rather than collecting
+     * them first.
+     * If the lines mismatch then this will
+     * {@link org.junit.Assert#fail fail} with the same message as
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)},
+     * as it will if the publisher fails or does not complete in time.
+     *
+     * <p>The publisher is attached by {@code subscribe}, which hands it a
+     * {@link LineSubscriber}, typically through an adapter to a
+     * {@code Flow.Publisher} or Reactive Streams publisher. Lines are
+     * requested {@value LineSubscriber#DEFAULT_DEMAND} at a time, as the
+     * expected lines are read, and the subscription is cancelled at the
+     * first mismatch or on timing out.
+     *
+     * @param expected Expected lines of test data.
+     * @param subscribe attaches the publisher of actual lines to the
+     *                  subscriber it is given.
+     * @param lineFilter filter applied to both sides to ignore particular
+     *                   line types, such as comments.
+     * @param mustBeSameLength {@code true} if the expected lines must have
+     *                         no extra lines beyond what the actuals
+     *                         provide.
+     * @param timeout longest time to wait for the publisher to complete.
+     * @param unit unit of {@code timeout}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static void assertEqual(
+        final TextSource expected,
+        final Consumer<? super LineSubscriber> subscribe,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength,
+        final long timeout,
+        final TimeUnit unit) throws InterruptedException
+    {
+        try (Stream<String> lines = expected.toStream()) {
+            final LineSubscriber subscriber = new LineSubscriber(
+                lines.iterator(), lineFilter, mustBeSameLength,
+                LineSubscriber.DEFAULT_DEMAND);
+            subscribe.accept(subscriber);
+            subscriber.await(timeout, unit);
+        }
+    }
+
+    /**
+     * Compare expected and actual lines of encoded text byte by byte,
+     * without decoding them.
+     * If the lines mismatch then this will
+     * {@link org.junit.Assert#fail fail} with the same message as
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)},
+     * and only the mismatched lines are ever decoded to Strings, to build
+     * that message.
+     *
+     * <p>The lines are typically the views of some
+     * {@link com.wapitia.common.test.ByteTextSource ByteTextSource}, such
+     * as a memory-mapped golden file and a buffer of actual output, both in
+     * the same encoding.
+     *
+     * @param expected Expected lines of test data.
+     * @param actuals Actual lines of test data.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as
+     *                   {@link #noHashCommentBytes() comments}.
+     * @param mustBeSameLength {@code true} if the expected stream must have
+     *                         no extra lines beyond what the actuals provide.
+     */
+    public static void assertEqualBytes(
+        final Stream<ByteLine> expected,
+        final Stream<ByteLine> actuals,
+        final Predicate<ByteLine> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        assertEqual(expected.filter(lineFilter), actuals.filter(lineFilter),
+            ByteLine::compareTo, noFilter, mustBeSameLength);
+    }
+
+    /**
+     * Compare expected and actual lines of text after masking their
+     * volatile tokens, such as timestamps and ids, with the same
+     * normalizer on both sides.
+     * Comment lines (those that begin with '#') are ignored.
+     *
+     * @param expectedsResourceName Expected lines of test data,
+     *                              as a resource to load.
+     * @param actuals Actual lines of test data.
+     * @param normalizer rules masking volatile tokens.
+     *
+     * @see #assertEqualNormalized(Stream, Stream, LineNormalizer,
+     *          Predicate, boolean)
+     */
+    public static void assertEqualNormalized(
+        final String expectedsResourceName,
+        final Stream<String> actuals,
+        final LineNormalizer normalizer)
+    {
+        final TextSource ts = TextSource.fromResource(expectedsResourceName);
+        try (Stream<String> expected = ts.toStream()) {
+            assertEqualNormalized(expected, actuals, normalizer,
+                noHashComments(), false);
+        }
+    }
+
+    /**
+     * Compare expected and actual lines of text after masking their
+     * volatile tokens with the same normalizer on both sides.
+     * If the normalized lines mismatch then this will
+     * {@link org.junit.Assert#fail fail} with the same message as
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)},
+     * showing the normalized lines.
+     *
+     * <p>Each line is filtered first, then normalized in one pass into a
+     * buffer reused for every line of its side, and compared from there by
+     * {@link #compareContent}, so a line is made into a String only to
+     * build a failure message. The lines may be any kind of
+     * {@code CharSequence}, such as the views of a
+     * {@link com.wapitia.common.test.ByteTextSource ByteTextSource}.
+     *
+     * @param expected Expected lines of test data.
+     * @param actuals Actual lines of test data.
+     * @param normalizer rules masking volatile tokens.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param mustBeSameLength {@code true} if the expected stream must have
+     *                         no extra lines beyond what the actuals provide.
+     */
+    public static void assertEqualNormalized(
+        final Stream<? extends CharSequence> expected,
+        final Stream<? extends CharSequence> actuals,
+        final LineNormalizer normalizer,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        measured(() -> {
+            final Iterator<? extends CharSequence> it1 =
+                filtered(expected, lineFilter).iterator();
+            final Iterator<? extends CharSequence> it2 =
+                filtered(actuals, lineFilter).iterator();
+            final StringBuilder buf1 = new StringBuilder();
+            final StringBuilder buf2 = new StringBuilder();
+            long line = 0L;
+            while (it1.hasNext()) {
+                ++line;
+                final CharSequence s1 =
+                    normalizer.normalize(it1.next(), buf1);
+                if (!it2.hasNext()) {
+                    fail(format(CAME_UP_SHORT_STR, line, s1));
+                }
+                final CharSequence s2 =
+                    normalizer.normalize(it2.next(), buf2);
+                if (compareContent(s1, s2) != 0) {
+                    fail(format(ITEM_MISMATCH_STR, line, s1, s2));
+                }
+            }
+            if (it2.hasNext() && mustBeSameLength) {
+                fail(format(TOO_LONG_STR, line,
+                    normalizer.normalize(it2.next(), buf2)));
+            }
+        });
+    }
+
+    /**
+     * Compare expected and actual delimited records, such as CSV lines,
+     * field by field.
+     * Comment lines (those that begin with '#') are ignored.
+     *
+     * @param expectedsResourceName Expected records of test data,
+     *                              as a resource to load.
+     * @param actuals Actual records of test data.
+     * @param recordFormat layout of the records and comparators of the
+     *                     columns.
+     *
+     * @see #assertEqualRecords(Stream, Stream, RecordFormat, Predicate,
+     *          boolean)
+     */
+    public static void assertEqualRecords(
+        final String expectedsResourceName,
+        final Stream<String> actuals,
+        final RecordFormat recordFormat)
+    {
+        final TextSource ts = TextSource.fromResource(expectedsResourceName);
+        try (Stream<String> expected = ts.toStream()) {
+            assertEqualRecords(expected, actuals, recordFormat,
+                noHashComments(),
+                false);
+        }
+    }
+
+    /**
+     * Compare expected and actual delimited records, such as CSV lines,
+     * field by field, each column by the comparator the format gives it,
+     * so that columns may be ignored or compared as numbers within a
+     * tolerance.
+     * If the records mismatch then this will
+     * {@link org.junit.Assert#fail fail}, reporting each differing field
+     * of the first mismatched line, or the numbers of fields if those
+     * differ. Running out of lines fails as in
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)}.
+     *
+     * <p>The fields are views over the lines rather than copies, so no
+     * field is allocated unless it is reported. The lines may be any kind
+     * of {@code CharSequence}, such as the views of a
+     * {@link com.wapitia.common.test.ByteTextSource ByteTextSource}.
+     *
+     * @param expected Expected records of test data.
+     * @param actuals Actual records of test data.
+     * @param recordFormat layout of the records and comparators of the
+     *                     columns.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param mustBeSameLength {@code true} if the expected stream must have
+     *                         no extra lines beyond what the actuals provide.
+     */
+    public static void assertEqualRecords(
+        final Stream<? extends CharSequence> expected,
+        final Stream<? extends CharSequence> actuals,
+        final RecordFormat recordFormat,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        measured(() -> {
+            final Iterator<? extends CharSequence> it1 =
+                filtered(expected, lineFilter).iterator();
+            final Iterator<? extends CharSequence> it2 =
+                filtered(actuals, lineFilter).iterator();
+            final RecordComparison comparison =
+                new RecordComparison(recordFormat);
+            long line = 0L;
+            while (it1.hasNext()) {
+                ++line;
+                final CharSequence s1 = it1.next();
+                if (!it2.hasNext()) {
+                    fail(format(CAME_UP_SHORT_STR, line, s1));
+                }
+                final String failure =
+                    comparison.compare(line, s1, it2.next());
+                if (failure != null) {
+                    fail(failure);
+                }
+            }
+            if (it2.hasNext() && mustBeSameLength) {
+                fail(format(TOO_LONG_STR, line, it2.next()));
+            }
+        });
+    }
+
+    /**
+     * Compare expected and actual lines of text, first by digest and only
+     * line by line if the digests differ.
+     * Comment lines (those that begin with '#') are ignored.
+     *
+     * <p>The digest of the expected resource's lines is cached in a
+     * sidecar file next to the resource, named as the resource with a
+     * {@code .digest} suffix, so that once the sidecar is written a
+     * passing comparison reads only the actual lines, and reads them only
+     * once. The sidecar is written automatically where the resource is a
+     * plain file, and is ignored once the resource's length or
+     * modification time changes.
+     *
+     * @param expectedsResourceName Expected lines of test data,
+     *                              as a resource to load.
+     * @param actuals Supplies the actual lines of test data, called a
+     *                second time only if the digests differ.
+     *
+     * @see #assertEqualDigest(Supplier, Supplier, Predicate, boolean)
+     */
+    public static void assertEqualDigest(
+        final String expectedsResourceName,
+        final Supplier<Stream<String>> actuals)
+    {
+        measured(() -> {
+            final Supplier<Stream<String>> expected = () ->
+                TextSource.fromResource(expectedsResourceName).toStream();
+            final Predicate<String> lineFilter = noHashComments();
+            final long actualDigest = digestOf(actuals, lineFilter);
+            final DigestSidecar sidecar = sidecarOf(expectedsResourceName);
+            final OptionalLong cached = sidecar == null
+                ? OptionalLong.empty()
+                : sidecar.read();
+            if (cached.isPresent() && cached.getAsLong() == actualDigest) {
+                return;
+            }
+            final long expectedDigest = digestOf(expected, lineFilter);
+            final boolean stale = !cached.isPresent()
+                || cached.getAsLong() != expectedDigest;
+            if (sidecar != null && stale) {
+                sidecar.write(expectedDigest);
+            }
+            if (expectedDigest != actualDigest) {
+                compareSupplied(expected, actuals, lineFilter, false);
+            }
+        });
+    }
+
+    /**
+     * Compare expected and actual lines of text, first by digest and only
+     * line by line if the digests differ.
+     *
+     * <p>Both sides are first reduced to a 64-bit {@link LineDigest} of
+     * their filtered lines. When the digests agree, as they do whenever
+     * the test passes, the comparison is over without ever comparing a
+     * line or building a message. Otherwise both suppliers are called
+     * again for the usual
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)
+     * line-by-line comparison}, which finds and reports the mismatch.
+     * Lines are compared as Strings, exactly.
+     *
+     * @param expected Supplies the expected lines of test data.
+     * @param actuals Supplies the actual lines of test data.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param mustBeSameLength {@code true} if the expected stream must have
+     *                         no extra lines beyond what the actuals provide.
+     */
+    public static void assertEqualDigest(
+        final Supplier<Stream<String>> expected,
+        final Supplier<Stream<String>> actuals,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        measured(() -> {
+            if (digestOf(expected, lineFilter)
+                != digestOf(actuals, lineFilter)) {
+                compareSupplied(expected, actuals, lineFilter,
+                    mustBeSameLength);
+            }
+        });
+    }
+
+    /**
+     * The digest of the filtered lines of a supplied stream, which is
+     * closed once digested.
+     */
+    private static long digestOf(
+        final Supplier<Stream<String>> lines,
+        final Predicate<String> lineFilter)
+    {
+        try (Stream<String> stream = lines.get()) {
+            return LineDigest.of(filtered(stream, lineFilter));
+        }
+    }
+
+    /**
+     * Compares the lines of freshly supplied streams, closing them after.
+     */
+    private static void compareSupplied(
+        final Supplier<Stream<String>> expected,
+        final Supplier<Stream<String>> actuals,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        try (Stream<String> expStream = expected.get();
+            Stream<String> actStream = actuals.get()) {
+            compareLines(expStream, actStream, String::compareTo, lineFilter,
+                mustBeSameLength);
+        }
+    }
+
+    /**
+     * Compare expected Stream of Strings to some actual stream, as with
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)},
+     * filtering and comparing chunks of lines in parallel on the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param <T> any comparable type.
+     *
+     * @param expectedStr  Expected strings, marks the lower
+     *                     baseline of results
+     * @param actualStr Actual Strings, must be at least as long as expected.
+     * @param comp Comparator for equality.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param mustBeSameLength {@code true} if the expected stream must have
+     *                         no extra lines beyond what the actuals provide.
+     *
+     * @see #assertEqualParallel(Stream, Stream, Comparator, Predicate,
+     *          boolean, ForkJoinPool)
+     */
+    public static <T> void assertEqualParallel(
+        final Stream<T> expectedStr,
+        final Stream<T> actualStr,
+        final Comparator<T> comp,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        assertEqualParallel(expectedStr, actualStr, comp, lineFilter,
+            mustBeSameLength, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compare expected Stream of Strings to some actual stream, as with
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)},
+     * filtering and comparing chunks of lines in parallel on some
+     * {@link ForkJoinPool}.
+     *
+     * <p>Both streams are still read in order on the calling thread, but
+     * the filtering and comparing of the lines is shared among the pool's
+     * threads, in chunks aligned by line number. The failure reported is
+     * the one for the lowest-numbered mismatched line, with the same message
+     * as the sequential comparison would give, and the remaining work is
+     * abandoned as soon as such a mismatch is known. The comparator and
+     * filter must be safe to call from several threads at once.
+     *
+     * @param <T> any comparable type.
+     *
+     * @param expectedStr  Expected strings, marks the lower
+     *                     baseline of results
+     * @param actualStr Actual Strings, must be at least as long as expected.
+     * @param comp Comparator for equality.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param mustBeSameLength {@code true} if the expected stream must have
+     *                         no extra lines beyond what the actuals provide.
+     * @param pool fork-join pool to run the comparison.
+     */
+    public static <T> void assertEqualParallel(
+        final Stream<T> expectedStr,
+        final Stream<T> actualStr,
+        final Comparator<T> comp,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength,
+        final ForkJoinPool pool)
+    {
+        measured(() -> {
+            final ChunkedComparison<T> comparison = new ChunkedComparison<>(
+                pool, comp, lineFilter, ChunkedComparison.DEFAULT_CHUNK_SIZE);
+            final String failure = comparison.compare(expectedStr.iterator(),
+                actualStr.iterator(), mustBeSameLength);
+            if (failure != null) {
+                fail(failure);
+            }
+        });
+    }
+
+    /**
+     * Compare expected and actual lines of text, and on a mismatch
+     * {@link org.junit.Assert#fail fail} with a diff of the first hunks
+     * that differ rather than just the first mismatched line, so that a
+     * line inserted or deleted early in a long output still gives a
+     * useful message.
+     * Up to {@value #DEFAULT_DIFF_WINDOW} lines of each side are read ahead
+     * to resynchronize after a difference, and the first
+     * {@value #DEFAULT_DIFF_HUNKS} hunks are reported with
+     * {@value #DEFAULT_DIFF_CONTEXT} lines of context.
+     *
+     * @param expected Expected lines of test data.
+     * @param actuals Actual lines of test data.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     *
+     * @see #assertEqualDiff(Stream, Stream, Predicate, int, int, int)
+     */
+    public static void assertEqualDiff(
+        final Stream<String> expected,
+        final Stream<String> actuals,
+        final Predicate<String> lineFilter)
+    {
+        assertEqualDiff(expected, actuals, lineFilter, DEFAULT_DIFF_WINDOW,
+            DEFAULT_DIFF_HUNKS, DEFAULT_DIFF_CONTEXT);
+    }
+
+    /**
+     * Compare expected and actual lines of text, and on a mismatch
+     * {@link org.junit.Assert#fail fail} with a diff of the first hunks
+     * that differ, in the manner of a unified diff.
+     *
+     * <p>The diff is made in one pass over both streams, holding at most
+     * {@code window} lines of each in memory besides the report. After a
+     * difference, the lines read ahead are matched up by hash to find the
+     * nearest point where several lines in a row agree again, and those
+     * skipped on either side are reported as deleted from the expected or
+     * inserted in the actuals; differences that do not resynchronize within
+     * the window are reported line for line. Reading stops once
+     * {@code maxHunks} hunks are found, so even very large failing
+     * comparisons finish in bounded time and space. Lines are numbered as
+     * the filtered lines, and extra actual lines are a difference, as with
+     * {@code mustBeSameLength}.
+     *
+     * @param expected Expected lines of test data.
+     * @param actuals Actual lines of test data.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param window most lines of each stream read ahead to resynchronize.
+     * @param maxHunks most hunks to report.
+     * @param context equal lines shown before and after each hunk.
+     */
+    public static void assertEqualDiff(
+        final Stream<String> expected,
+        final Stream<String> actuals,
+        final Predicate<String> lineFilter,
+        final int window,
+        final int maxHunks,
+        final int context)
+    {
+        measured(() -> {
+            final String failure = new StreamingDiff(
+                filtered(expected, lineFilter).iterator(),
+                filtered(actuals, lineFilter).iterator(),
+                window, maxHunks, context).diff();
+            if (failure != null) {
+                fail(failure);
+            }
+        });
+    }
+
+    /**
+     * Compare expected and actual lines of text as multisets, ignoring
+     * their order, for output whose line order is not stable, such as that
+     * of a parallel pipeline.
+     * If some line is not in both streams the same number of times then
+     * this will {@link org.junit.Assert#fail fail}, reporting how many
+     * lines were missing and how many unexpected, and listing the first few
+     * of each in String order with their counts.
+     *
+     * <p>Lines are counted on the
+     * {@link ForkJoinPool#commonPool() common pool}, holding up to a
+     * quarter of the maximum heap before spilling to temp files.
+     *
+     * @param expected Expected lines of test data.
+     * @param actuals Actual lines of test data.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     *
+     * @see #assertEqualUnordered(Stream, Stream, Predicate, long,
+     *          ForkJoinPool)
+     */
+    public static void assertEqualUnordered(
+        final Stream<String> expected,
+        final Stream<String> actuals,
+        final Predicate<String> lineFilter)
+    {
+        assertEqualUnordered(expected, actuals, lineFilter,
+            Runtime.getRuntime().maxMemory() / 4, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compare expected and actual lines of text as multisets, ignoring
+     * their order, as with
+     * {@link #assertEqualUnordered(Stream, Stream, Predicate)}, but within
+     * a given memory limit and on some {@link ForkJoinPool}.
+     *
+     * <p>Nothing is sorted. Both streams are read in chunks on the calling
+     * thread, and each line is counted in a table sharded into hash
+     * partitions by the pool's threads, up for the expected lines and down
+     * for the actual ones, so that lines found on both sides cancel out.
+     * Once the table holds roughly {@code memoryLimit} bytes, its largest
+     * partitions are spilled to temp files, each read back on its own at
+     * the end, so the streams may be far larger than the heap. The temp
+     * files are deleted before this returns. The filter must be safe to
+     * call from several threads at once.
+     *
+     * @param expected Expected lines of test data.
+     * @param actuals Actual lines of test data.
+     * @param lineFilter filter applied to both streams to ignore
+     *                   particular line types, such as comments.
+     * @param memoryLimit rough number of bytes of lines to hold in memory.
+     * @param pool fork-join pool to run the counting.
+     * @throws java.io.UncheckedIOException if a temp file cannot be written
+     *         or read.
+     */
+    public static void assertEqualUnordered(
+        final Stream<String> expected,
+        final Stream<String> actuals,
+        final Predicate<String> lineFilter,
+        final long memoryLimit,
+        final ForkJoinPool pool)
+    {
+        measured(() -> {
+            final MultisetComparison comparison = new MultisetComparison(
+                pool, lineFilter, memoryLimit,
+                MultisetComparison.DEFAULT_CHUNK_SIZE);
+            final String failure = comparison.compare(expected.iterator(),
+                actuals.iterator());
+            if (failure != null) {
+                fail(failure);
+            }
+        });
+    }
+
+    /**
+     * The digest sidecar of a golden resource filtered by
+     * {@link #noHashComments()}. The resource is recorded as opened, as
+     * its lines may never be read when the sidecar's digest matches.
+     * @param resourceName name of the golden resource.
+     * @return the sidecar, or {@code null} if the resource cannot be found.
+     */
+    private static DigestSidecar sidecarOf(final String resourceName) {
+        ResourceRecorder.opened(resourceName, TextSource.class);
+        try {
+            return new DigestSidecar(resourceName, TextSource.class,
+                HASH_COMMENT_REGEX);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs a comparison, recording its time and whether it failed in the
+     * {@link TestDataMetrics} when those are kept.
+     * @param comparison the comparison, failing by an
+     *                   {@link AssertionError}.
+     */
+    private static void measured(final Runnable comparison) {
+        if (!TestDataMetrics.isEnabled()) {
+            comparison.run();
+            return;
+        }
+        final long started = System.nanoTime();
+        try {
+            comparison.run();
+        } catch (AssertionError err) {
+            TestDataMetrics.comparison(System.nanoTime() - started, true);
+            throw err;
+        }
+        TestDataMetrics.comparison(System.nanoTime() - started, false);
+    }
+
+    /**
+     * Compares two streams as
+     * {@link #assertEqual(Stream, Stream, Comparator, Predicate, boolean)}
+     * does, without measuring the comparison.
+     */
+    private static <T> void compareLines(
+        final Stream<T> expectedStr,
+        final Stream<T> actualStr,
+        final Comparator<T> comp,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength)
+    {
+        final Iterator<T> it1 = filtered(expectedStr, lineFilter).iterator();
+        final Iterator<T> it2 = filtered(actualStr, lineFilter).iterator();
         long line = 0L;
         while (it1.hasNext()) {
             ++line;
@@ -184,6 +1100,69 @@ public class CompareTestData {
         }
     }
 
+    static boolean within(
+        final double expected,
+        final double actual,
+        final double absTolerance,
+        final double relTolerance)
+    {
+        if (Double.compare(expected, actual) == 0) {
+            return true;
+        }
+        final double diff = Math.abs(expected - actual);
+        if (Double.isNaN(diff) || Double.isInfinite(diff)) {
+            return false;
+        }
+        return diff <= absTolerance || diff <= relTolerance
+            * Math.max(Math.abs(expected), Math.abs(actual));
+    }
+
+    private static int trimmedLength(final CharSequence cs) {
+        int len = cs.length();
+        while (len > 0 && LineFilter.isSpace(cs.charAt(len - 1))) {
+            --len;
+        }
+        return len;
+    }
+
+    /**
+     * Applies a line filter to a stream of lines, leaving the stream
+     * unchanged when the filter is {@link #noFilter}.
+     * @param lines lines to filter.
+     * @param lineFilter filter applied to each line's String form.
+     * @return the filtered lines.
+     */
+    private static <T> Stream<T> filtered(
+        final Stream<T> lines,
+        final Predicate<String> lineFilter)
+    {
+        return lineFilter == noFilter
+            ? lines
+            : lines.filter(line -> accepts(lineFilter, line));
+    }
+
+    /**
+     * Tests a line of any type with a String line filter, letting a
+     * {@link LineFilter} test a {@code CharSequence} line as it is rather
+     * than as a new String.
+     * @param lineFilter filter to apply.
+     * @param line line to test.
+     * @return {@code true} if the line is to be kept.
+     */
+    static boolean accepts(
+        final Predicate<String> lineFilter,
+        final Object line)
+    {
+        final boolean keep =
+            lineFilter instanceof LineFilter && line instanceof CharSequence
+                ? ((LineFilter) lineFilter).accepts((CharSequence) line)
+                : lineFilter.test(line.toString());
+        if (!keep) {
+            TestDataMetrics.lineFiltered();
+        }
+        return keep;
+    }
+
     /**
      * Constructor is private as this is a utility class.
      */
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.Suite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the test classes of a {@link Suite.SuiteClasses} suite, or each of
+ * their test methods, as separate JUnit runs on some
+ * {@link ExecutorService}, and merges their results into one
+ * {@link Result}.
+ *
+ * <p>The merged result is built only once every run has finished, taking
+ * the runs in the order the suite lists its classes and each class lists
+ * its methods, so its failures, and anything logged from them, are in the
+ * same order however the runs were scheduled.
+ *
+ * @author Corey Morgan
+ */
+final class ConcurrentSuiteRunner {
+
+    private final ExecutorService executor;
+    private final boolean byMethod;
+
+    /**
+     * Creates a runner scheduling its runs on some executor.
+     * @param executor executor running each test class or method.
+     * @param byMethod {@code true} to run each test method separately,
+     *                 {@code false} to run each test class.
+     */
+    ConcurrentSuiteRunner(
+        final ExecutorService executor,
+        final boolean byMethod)
+    {
+        this.executor = executor;
+        this.byMethod = byMethod;
+    }
+
+    /**
+     * The classes listed by a suite's {@link Suite.SuiteClasses}
+     * annotation, or the class itself if it has none.
+     * @param suite suite class.
+     * @return the test classes in the order listed.
+     */
+    static List<Class<?>> suiteClasses(final Class<?> suite) {
+        final Suite.SuiteClasses classes =
+            suite.getAnnotation(Suite.SuiteClasses.class);
+        return classes == null
+            ? Collections.<Class<?>>singletonList(suite)
+            : Arrays.<Class<?>>asList(classes.value());
+    }
+
+    /**
+     * Runs the tests of a suite, waiting for them all to finish.
+     * @param suite suite class listing the test classes.
+     * @return the merged result of all the runs.
+     */
+    Result run(final Class<?> suite) {
+        final Result merged = new Result();
+        final RunListener listener = merged.createListener();
+        final List<Future<Result>> runs = new ArrayList<>();
+        try {
+            listener.testRunStarted(Description.createSuiteDescription(suite));
+            for (Request request : requests(suite)) {
+                runs.add(executor.submit(() -> new JUnitCore().run(request)));
+            }
+            for (Future<Result> run : runs) {
+                replay(run.get(), listener);
+            }
+            listener.testRunFinished(merged);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted running " + suite, ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Failed running " + suite,
+                ex.getCause());
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            for (Future<Result> run : runs) {
+                run.cancel(true);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * One request per test class, or per test method of each class.
+     * @param suite suite class listing the test classes.
+     * @return requests in suite order.
+     */
+    private List<Request> requests(final Class<?> suite) {
+        final List<Request> requests = new ArrayList<>();
+        for (Class<?> clss : suiteClasses(suite)) {
+            if (!byMethod) {
+                requests.add(Request.aClass(clss));
+                continue;
+            }
+            final Description description =
+                Request.aClass(clss).getRunner().getDescription();
+            for (Description child : description.getChildren()) {
+                requests.add(Request.aClass(clss).filterWith(child));
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Feeds the outcome of one finished run into the merged result's
+     * listener.
+     * @param result result of one run.
+     * @param listener listener of the merged result.
+     * @throws Exception as declared by {@link RunListener}.
+     */
+    static void replay(final Result result, final RunListener listener)
+        throws Exception
+    {
+        final Description description = Description.EMPTY;
+        for (int i = 0; i < result.getRunCount(); ++i) {
+            listener.testFinished(description);
+        }
+        for (int i = 0; i < result.getIgnoreCount(); ++i) {
+            listener.testIgnored(description);
+        }
+        for (Failure failure : result.getFailures()) {
+            listener.testFailure(failure);
+        }
+    }
+
+}
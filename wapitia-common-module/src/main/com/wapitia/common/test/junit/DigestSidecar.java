@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.OptionalLong;
+import java.util.Properties;
+
+/**
+ * The cached digest of a golden resource's filtered lines, kept in a
+ * properties file next to the resource, named as the resource with a
+ * {@value #SUFFIX} suffix.
+ *
+ * <p>The sidecar records the resource's length and modification time as
+ * its {@link URLConnection} reports them, for file and jar resources
+ * alike, and is used only while both still match, so an edited golden
+ * file is digested again. A sidecar is written only where the resource is
+ * a plain file; inside a jar it must be packaged along with the resource.
+ * A stale or missing sidecar never causes a false failure, as a digest
+ * mismatch only leads on to the full line-by-line comparison.
+ *
+ * @author Corey Morgan
+ */
+final class DigestSidecar {
+
+    /**
+     * Suffix added to a resource name to name its sidecar, {@value}.
+     */
+    static final String SUFFIX = ".digest";
+
+    private static final String DIGEST = "digest";
+    private static final String FILTER = "filter";
+    private static final String LENGTH = "length";
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private final URL resource;
+    private final URL sidecar;
+    private final String filterName;
+    private final long length;
+    private final long lastModified;
+
+    /**
+     * Creates the sidecar for some resource.
+     * @param resourceName name of the golden resource.
+     * @param clss {@code Class} used to load the resource.
+     * @param filterName name of the line filter applied before digesting.
+     * @throws IOException if the resource cannot be found or examined.
+     */
+    DigestSidecar(
+        final String resourceName,
+        final Class<?> clss,
+        final String filterName) throws IOException
+    {
+        this.resource = clss.getResource(resourceName);
+        if (resource == null) {
+            throw new IOException("No resource " + resourceName);
+        }
+        this.sidecar = clss.getResource(resourceName + SUFFIX);
+        this.filterName = filterName;
+        final URLConnection conn = resource.openConnection();
+        this.length = conn.getContentLengthLong();
+        this.lastModified = conn.getLastModified();
+        conn.getInputStream().close();
+    }
+
+    /**
+     * The cached digest, if the sidecar exists and still describes the
+     * resource.
+     * @return the digest, or empty if it must be computed.
+     */
+    OptionalLong read() {
+        if (sidecar == null) {
+            return OptionalLong.empty();
+        }
+        final Properties props = new Properties();
+        try (InputStream in = sidecar.openStream()) {
+            props.load(in);
+            if (filterName.equals(props.getProperty(FILTER))
+                && Long.toString(length).equals(props.getProperty(LENGTH))
+                && Long.toString(lastModified)
+                    .equals(props.getProperty(LAST_MODIFIED))) {
+                return OptionalLong.of(
+                    Long.parseUnsignedLong(props.getProperty(DIGEST), 16));
+            }
+        } catch (IOException | RuntimeException ex) {
+            // an unreadable sidecar is ignored and later rewritten
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Saves the digest next to the resource, when the resource is a file.
+     * The sidecar is written to a temporary file first and moved into
+     * place, so that a test reading it meanwhile, or a run killed while
+     * writing it, never leaves a partial sidecar to read. Failure to write
+     * is ignored, since the sidecar is only a cache.
+     * @param digest digest of the resource's filtered lines.
+     */
+    void write(final long digest) {
+        if (!"file".equals(resource.getProtocol())) {
+            return;
+        }
+        final Properties props = new Properties();
+        props.setProperty(DIGEST, Long.toHexString(digest));
+        props.setProperty(FILTER, filterName);
+        props.setProperty(LENGTH, Long.toString(length));
+        props.setProperty(LAST_MODIFIED, Long.toString(lastModified));
+        Path tmp = null;
+        try {
+            final Path file = Paths.get(resource.toURI());
+            final Path path = file.resolveSibling(file.getFileName() + SUFFIX);
+            tmp = Files.createTempFile(path.getParent(),
+                path.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "Digest of " + file.getFileName());
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException | URISyntaxException ex) {
+            // the sidecar is only a cache
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+}
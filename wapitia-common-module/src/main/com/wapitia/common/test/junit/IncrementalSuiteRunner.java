@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import com.wapitia.common.test.ResourceRecorder;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Runs the test classes of a {@link org.junit.runners.Suite.SuiteClasses}
+ * suite one after another, skipping any class that passed last time and
+ * has not changed since.
+ *
+ * <p>A class's fingerprint is a SHA-256 digest of its bytecode: its own
+ * class file, those of its nested and anonymous classes, and those of its
+ * superclasses from the same class loader. Each resource the class opened
+ * through {@link com.wapitia.common.test.TextSource#fromResource(String,
+ * Class) TextSource} while it ran is fingerprinted by its content. A class
+ * is skipped when it passed, its fingerprint is the same and every
+ * resource it opened still has the same content; its tests are then
+ * counted as ignored. The code the tests exercise is not fingerprinted, so
+ * a state file kept across changes to it must be deleted to run them all.
+ *
+ * <p>The state is kept in a properties file, with a line per class giving
+ * its outcome, its number of tests and its fingerprint, and a line per
+ * resource it opened, keyed on the class name and the resource URL.
+ *
+ * @author Corey Morgan
+ */
+final class IncrementalSuiteRunner {
+
+    static final String UNCHANGED_STR = "%s unchanged since it passed,"
+        + " %d tests not run";
+
+    private static final String PASSED = "passed";
+    private static final String FAILED = "failed";
+    private static final String MISSING = "missing";
+    private static final char RESOURCE_SEPARATOR = '|';
+
+    private final Properties previous = new Properties();
+    private final Properties state = new Properties();
+    private final Consumer<String> log;
+
+    /**
+     * Creates a runner over the state of an earlier run.
+     * @param stateFile state written by an earlier run, read if it exists.
+     * @param log Consumer of the names of the classes skipped.
+     * @throws UncheckedIOException if the state file cannot be read.
+     */
+    IncrementalSuiteRunner(final Path stateFile, final Consumer<String> log) {
+        this.log = log;
+        if (Files.isRegularFile(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                previous.load(in);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Runs the tests of a suite that have changed or did not pass.
+     * @param suite suite class listing the test classes.
+     * @return the merged result of the classes run, with the tests of the
+     *         classes skipped counted as ignored.
+     */
+    Result run(final Class<?> suite) {
+        final Result merged = new Result();
+        final RunListener listener = merged.createListener();
+        try {
+            listener.testRunStarted(Description.createSuiteDescription(suite));
+            for (Class<?> clss : ConcurrentSuiteRunner.suiteClasses(suite)) {
+                runClass(clss, listener);
+            }
+            listener.testRunFinished(merged);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return merged;
+    }
+
+    /**
+     * Writes the state of this run, for the next run to skip by.
+     * @param stateFile file to write.
+     * @throws UncheckedIOException if the state file cannot be written.
+     */
+    void write(final Path stateFile) {
+        try (OutputStream out = Files.newOutputStream(stateFile)) {
+            state.store(out, "Fingerprints of test classes and resources");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Runs one class, or skips it if it is unchanged since it passed.
+     */
+    private void runClass(final Class<?> clss, final RunListener listener)
+        throws Exception
+    {
+        final String name = clss.getName();
+        final String fingerprint = classFingerprint(clss);
+        final String[] last = previous.getProperty(name, "").split(" ");
+        if (last.length == 3 && PASSED.equals(last[0])
+            && fingerprint.equals(last[2]) && resourcesUnchanged(name)) {
+            final int tests = Integer.parseInt(last[1]);
+            for (int i = 0; i < tests; ++i) {
+                listener.testIgnored(Description.EMPTY);
+            }
+            log.accept(String.format(UNCHANGED_STR, name, tests));
+            copyState(name);
+            return;
+        }
+        final Result[] result = new Result[1];
+        final Set<String> opened = ResourceRecorder.recording(
+            () -> result[0] = new JUnitCore().run(clss));
+        ConcurrentSuiteRunner.replay(result[0], listener);
+        state.setProperty(name, String.join(" ",
+            result[0].wasSuccessful() ? PASSED : FAILED,
+            Integer.toString(result[0].getRunCount()), fingerprint));
+        for (String url : opened) {
+            state.setProperty(name + RESOURCE_SEPARATOR + url,
+                resourceFingerprint(url));
+        }
+    }
+
+    /**
+     * {@code true} if every resource a class opened last time still has
+     * the content it had.
+     */
+    private boolean resourcesUnchanged(final String className) {
+        final String prefix = className + RESOURCE_SEPARATOR;
+        for (String key : previous.stringPropertyNames()) {
+            if (key.startsWith(prefix) && !previous.getProperty(key).equals(
+                resourceFingerprint(key.substring(prefix.length())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Carries the state of a skipped class over from the last run.
+     */
+    private void copyState(final String className) {
+        final String prefix = className + RESOURCE_SEPARATOR;
+        for (String key : previous.stringPropertyNames()) {
+            if (key.equals(className) || key.startsWith(prefix)) {
+                state.setProperty(key, previous.getProperty(key));
+            }
+        }
+    }
+
+    /**
+     * The digest of a class's bytecode and that of its nested and
+     * anonymous classes and its superclasses from the same class loader.
+     */
+    private static String classFingerprint(final Class<?> clss) {
+        final MessageDigest digest = sha256();
+        final ClassLoader loader = clss.getClassLoader() == null
+            ? ClassLoader.getSystemClassLoader()
+            : clss.getClassLoader();
+        for (Class<?> base = clss;
+            base != null && base.getClassLoader() == clss.getClassLoader();
+            base = base.getSuperclass()) {
+            digestClass(digest, loader, base);
+        }
+        return hex(digest.digest());
+    }
+
+    private static void digestClass(
+        final MessageDigest digest,
+        final ClassLoader loader,
+        final Class<?> clss)
+    {
+        digestClassFile(digest, loader, clss.getName());
+        int anonymous = 1;
+        while (digestClassFile(digest, loader,
+            clss.getName() + '$' + anonymous)) {
+            ++anonymous;
+        }
+        for (Class<?> member : clss.getDeclaredClasses()) {
+            digestClass(digest, loader, member);
+        }
+    }
+
+    /**
+     * Adds a class file to a digest.
+     * @return {@code false} if there is no such class file.
+     */
+    private static boolean digestClassFile(
+        final MessageDigest digest,
+        final ClassLoader loader,
+        final String className)
+    {
+        final URL url = loader.getResource(
+            className.replace('.', '/') + ".class");
+        if (url == null) {
+            return false;
+        }
+        try {
+            digest(digest, url);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return true;
+    }
+
+    /**
+     * The digest of a resource's content, or {@value #MISSING} if it can
+     * no longer be read.
+     */
+    private static String resourceFingerprint(final String url) {
+        final MessageDigest digest = sha256();
+        try {
+            digest(digest, new URL(url));
+        } catch (IOException ex) {
+            return MISSING;
+        }
+        return hex(digest.digest());
+    }
+
+    private static void digest(final MessageDigest digest, final URL url)
+        throws IOException
+    {
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = url.openStream()) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+}
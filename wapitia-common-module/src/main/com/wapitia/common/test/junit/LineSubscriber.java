@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import static java.lang.String.format;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A subscriber to an asynchronous publisher of actual lines, comparing each
+ * line with the next expected one as it arrives, so the actual lines are
+ * never collected.
+ *
+ * <p>Its methods are those of a Reactive Streams subscriber, and of
+ * {@code java.util.concurrent.Flow.Subscriber} on Java 9 and later, and
+ * are to be called by the publisher under the same rules: once
+ * {@link #onSubscribe(Subscription)}, then {@link #onNext(String)} no more
+ * often than requested, one call at a time, then at most one of
+ * {@link #onError(Throwable)} or {@link #onComplete()}. A publisher of
+ * either kind is attached by an adapter forwarding those four methods, and
+ * passing in a {@link Subscription} forwarding {@code request} and
+ * {@code cancel}.
+ *
+ * <p>Demand follows the rate the expected lines are read: a batch of lines
+ * is requested at first, and more only as the lines already requested are
+ * compared, so a publisher faster than the comparison is held back rather
+ * than buffered. At the first mismatch the subscription is cancelled, so
+ * the publisher can stop producing lines that would only be thrown away.
+ *
+ * @author Corey Morgan
+ */
+public final class LineSubscriber {
+
+    /**
+     * Default number of lines requested at a time, {@value}.
+     */
+    public static final int DEFAULT_DEMAND = 256;
+
+    static final String TIMEOUT_STR =
+        "Timed out after %d %s at line %d, expecting more lines";
+
+    private final Iterator<String> expected;
+    private final Predicate<String> lineFilter;
+    private final boolean mustBeSameLength;
+    private final int demand;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Subscription subscription;
+    private volatile long line;
+    private long outstanding;
+    private boolean finished;
+    private String failure;
+    private Throwable error;
+
+    /**
+     * The handle a publisher gives its subscriber to signal demand and to
+     * cancel, with the methods of a Reactive Streams subscription.
+     */
+    public interface Subscription {
+
+        /**
+         * Asks for up to {@code count} more lines.
+         * @param count number of lines, more than zero.
+         */
+        void request(long count);
+
+        /**
+         * Asks the publisher to stop sending lines.
+         */
+        void cancel();
+    }
+
+    /**
+     * Creates a subscriber checking lines against some expected lines.
+     * @param expected Expected lines of test data.
+     * @param lineFilter filter applied to both sides to ignore particular
+     *                   line types, such as comments.
+     * @param mustBeSameLength {@code true} if the actuals may not have
+     *                         lines beyond those expected.
+     * @param demand number of lines requested at a time.
+     */
+    public LineSubscriber(
+        final Iterator<String> expected,
+        final Predicate<String> lineFilter,
+        final boolean mustBeSameLength,
+        final int demand)
+    {
+        if (demand < 1) {
+            throw new IllegalArgumentException("demand " + demand);
+        }
+        this.expected = expected;
+        this.lineFilter = lineFilter;
+        this.mustBeSameLength = mustBeSameLength;
+        this.demand = demand;
+    }
+
+    /**
+     * Receives the subscription, and requests the first lines.
+     * @param sub the publisher's subscription.
+     */
+    public void onSubscribe(final Subscription sub) {
+        if (subscription != null) {
+            sub.cancel();
+            return;
+        }
+        subscription = sub;
+        outstanding = demand;
+        sub.request(demand);
+    }
+
+    /**
+     * Compares the next actual line, and requests more once half the
+     * lines requested have arrived.
+     * @param item the next actual line.
+     */
+    public void onNext(final String item) {
+        if (finished) {
+            return;
+        }
+        if (CompareTestData.accepts(lineFilter, item)) {
+            final String next = nextExpected();
+            if (next == null) {
+                if (mustBeSameLength) {
+                    finish(format(CompareTestData.TOO_LONG_STR, line, item));
+                    return;
+                }
+            } else {
+                line = line + 1;
+                if (!next.equals(item)) {
+                    finish(format(CompareTestData.ITEM_MISMATCH_STR, line,
+                        next, item));
+                    return;
+                }
+            }
+        }
+        if (--outstanding <= demand / 2) {
+            outstanding += demand;
+            subscription.request(demand);
+        }
+    }
+
+    /**
+     * Records the publisher's failure.
+     * @param throwable the failure.
+     */
+    public void onError(final Throwable throwable) {
+        if (!finished) {
+            error = throwable;
+            finished = true;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Checks that no expected lines are left.
+     */
+    public void onComplete() {
+        if (finished) {
+            return;
+        }
+        final String next = nextExpected();
+        if (next != null) {
+            finish(format(CompareTestData.CAME_UP_SHORT_STR, line + 1, next));
+        } else {
+            finished = true;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Waits for the comparison to end, and
+     * {@link org.junit.Assert#fail fails} if it found a mismatch, if the
+     * publisher failed, or if it did not end in time, in which case the
+     * subscription is cancelled.
+     * @param timeout longest time to wait.
+     * @param unit unit of {@code timeout}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void await(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        if (!done.await(timeout, unit)) {
+            final Subscription sub = subscription;
+            if (sub != null) {
+                sub.cancel();
+            }
+            throw new AssertionError(format(TIMEOUT_STR, timeout,
+                unit.toString().toLowerCase(Locale.ROOT), line));
+        }
+        if (error != null) {
+            throw new AssertionError("Publisher failed at line " + line,
+                error);
+        }
+        if (failure != null) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    private String nextExpected() {
+        while (expected.hasNext()) {
+            final String next = expected.next();
+            if (CompareTestData.accepts(lineFilter, next)) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private void finish(final String message) {
+        failure = message;
+        finished = true;
+        subscription.cancel();
+        done.countDown();
+    }
+
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Compares an expected and an actual sequence of lines as multisets,
+ * ignoring their order, by counting each distinct line in a table sharded
+ * into hash partitions, and spilling partitions to temp files once the
+ * table outgrows a memory limit.
+ *
+ * <p>The calling thread reads the two sequences alternately in chunks of
+ * raw lines, and each chunk is filtered and counted by a pool task, which
+ * adds one for each expected line and takes one away for each actual line.
+ * A line's count that comes back to zero is dropped, so while the two
+ * sequences hold much the same lines in much the same order the table
+ * stays small. Each partition is locked only while a task merges its part
+ * of a chunk into it.
+ *
+ * <p>Once the lines held reach the memory limit, counting stops while the
+ * largest partitions write their counts to temp files and empty, until
+ * half the limit is free. At the end each spilled partition is read back
+ * and totalled on its own, so only one partition's lines need fit in
+ * memory at once. Lines left with a positive count were missing from the
+ * actuals and those with a negative count were unexpected; the failure
+ * reports how many of each, and the first few in String order with their
+ * counts.
+ *
+ * @author Corey Morgan
+ */
+final class MultisetComparison {
+
+    /**
+     * Number of hash partitions of the table, {@value}.
+     */
+    static final int PARTITIONS = 64;
+
+    /**
+     * Default number of raw lines read as one chunk, {@value}.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 12;
+
+    /**
+     * Most missing, and most unexpected, lines listed in a failure,
+     * {@value}.
+     */
+    static final int MAX_REPORTED = 20;
+
+    static final String UNORDERED_MISMATCH_STR =
+        "Unordered mismatch: %d lines missing, %d lines unexpected";
+    static final String MISSING_STR = "%n  missing %dx \"%s\"";
+    static final String UNEXPECTED_STR = "%n  unexpected %dx \"%s\"";
+    static final String MORE_STR = "%n  ... and %d more distinct lines %s";
+
+    /** Rough bytes held by a table entry besides its line's chars. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final ForkJoinPool pool;
+    private final Predicate<String> lineFilter;
+    private final long memoryLimit;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+    private final ReadWriteLock spillLock = new ReentrantReadWriteLock();
+    private final AtomicLong held = new AtomicLong();
+    private Path spillDir;
+
+    /**
+     * Creates a comparison running on some pool.
+     * @param pool pool to run the counting tasks.
+     * @param lineFilter filter applied to both sequences to ignore
+     *                   particular line types, such as comments.
+     * @param memoryLimit rough bytes of lines to hold before spilling.
+     * @param chunkSize number of raw lines read as one chunk.
+     */
+    MultisetComparison(
+        final ForkJoinPool pool,
+        final Predicate<String> lineFilter,
+        final long memoryLimit,
+        final int chunkSize)
+    {
+        this.pool = pool;
+        this.lineFilter = lineFilter;
+        this.memoryLimit = memoryLimit;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = 4 * pool.getParallelism();
+        for (int i = 0; i < PARTITIONS; ++i) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Compares the two sequences, deleting any temp files before it
+     * returns.
+     * @param expected Expected lines.
+     * @param actuals Actual lines.
+     * @return the failure message, or {@code null} if both sequences hold
+     *         the same lines the same number of times.
+     * @throws UncheckedIOException if a temp file cannot be written or
+     *         read.
+     */
+    String compare(
+        final Iterator<String> expected,
+        final Iterator<String> actuals)
+    {
+        try {
+            count(expected, actuals);
+            return report();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            deleteSpills();
+        }
+    }
+
+    /**
+     * Reads both sequences alternately, counting each chunk on the pool
+     * with a bounded number of chunks in flight.
+     */
+    private void count(
+        final Iterator<String> expected,
+        final Iterator<String> actuals)
+    {
+        final Deque<ForkJoinTask<?>> inFlight = new ArrayDeque<>();
+        boolean expectedDone = false;
+        boolean actualsDone = false;
+        while (!expectedDone || !actualsDone) {
+            if (!expectedDone) {
+                expectedDone = submit(expected, 1, inFlight);
+            }
+            if (!actualsDone) {
+                actualsDone = submit(actuals, -1, inFlight);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            inFlight.poll().join();
+        }
+    }
+
+    /**
+     * Reads a chunk and submits it to be counted.
+     * @return {@code true} once the lines are used up.
+     */
+    private boolean submit(
+        final Iterator<String> lines,
+        final int sign,
+        final Deque<ForkJoinTask<?>> inFlight)
+    {
+        final String[] chunk = new String[chunkSize];
+        int size = 0;
+        while (size < chunkSize && lines.hasNext()) {
+            chunk[size++] = lines.next();
+        }
+        if (size > 0) {
+            if (inFlight.size() >= maxInFlight) {
+                inFlight.poll().join();
+            }
+            final int count = size;
+            inFlight.add(pool.submit(() -> merge(chunk, count, sign)));
+        }
+        return size < chunkSize;
+    }
+
+    /**
+     * Filters a chunk, groups its lines by partition and merges each group
+     * into its partition, then spills if the table is over the limit.
+     */
+    private void merge(final String[] chunk, final int size, final int sign) {
+        final int[] partitionOf = new int[size];
+        final int[] groupSize = new int[PARTITIONS];
+        for (int i = 0; i < size; ++i) {
+            if (CompareTestData.accepts(lineFilter, chunk[i])) {
+                partitionOf[i] = partitionOf(chunk[i]);
+                ++groupSize[partitionOf[i]];
+            } else {
+                partitionOf[i] = -1;
+            }
+        }
+        final String[][] groups = new String[PARTITIONS][];
+        for (int p = 0; p < PARTITIONS; ++p) {
+            groups[p] = new String[groupSize[p]];
+            groupSize[p] = 0;
+        }
+        for (int i = 0; i < size; ++i) {
+            final int p = partitionOf[i];
+            if (p >= 0) {
+                groups[p][groupSize[p]++] = chunk[i];
+            }
+        }
+        spillLock.readLock().lock();
+        try {
+            for (int p = 0; p < PARTITIONS; ++p) {
+                if (groups[p].length > 0) {
+                    partitions[p].add(groups[p], sign);
+                }
+            }
+        } finally {
+            spillLock.readLock().unlock();
+        }
+        if (held.get() > memoryLimit) {
+            spill();
+        }
+    }
+
+    /**
+     * Spills the largest partitions until half the memory limit is free.
+     */
+    private void spill() {
+        spillLock.writeLock().lock();
+        try {
+            if (held.get() <= memoryLimit) {
+                return;
+            }
+            if (spillDir == null) {
+                spillDir = Files.createTempDirectory("wapitia-multiset");
+            }
+            final Partition[] bySize = partitions.clone();
+            Arrays.sort(bySize,
+                Comparator.comparingLong((Partition part) -> part.weight)
+                    .reversed());
+            for (int i = 0; i < bySize.length
+                && held.get() > memoryLimit / 2; ++i) {
+                bySize[i].spill();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            spillLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Totals every partition and describes the lines left over.
+     */
+    private String report() throws IOException {
+        final Tally missing = new Tally();
+        final Tally unexpected = new Tally();
+        for (Partition partition : partitions) {
+            for (Map.Entry<String, Count> entry
+                : partition.totals().entrySet()) {
+                final long count = entry.getValue().value;
+                if (count > 0L) {
+                    missing.add(entry.getKey(), count);
+                } else if (count < 0L) {
+                    unexpected.add(entry.getKey(), -count);
+                }
+            }
+        }
+        if (missing.lines == 0L && unexpected.lines == 0L) {
+            return null;
+        }
+        final StringBuilder failure = new StringBuilder(format(
+            UNORDERED_MISMATCH_STR, missing.lines, unexpected.lines));
+        missing.describe(failure, MISSING_STR, "missing");
+        unexpected.describe(failure, UNEXPECTED_STR, "unexpected");
+        return failure.toString();
+    }
+
+    private void deleteSpills() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+        if (spillDir != null) {
+            try {
+                for (Partition partition : partitions) {
+                    if (partition.file != null) {
+                        Files.deleteIfExists(partition.file);
+                    }
+                }
+                Files.deleteIfExists(spillDir);
+            } catch (IOException ex) {
+                // leave them for the temp directory's own cleanup
+            }
+        }
+    }
+
+    private static int partitionOf(final String line) {
+        final int hash = line.hashCode();
+        return (hash ^ hash >>> 16) & PARTITIONS - 1;
+    }
+
+    private static long weigh(final String line) {
+        return ENTRY_OVERHEAD + 2L * line.length();
+    }
+
+    /**
+     * A line's count, updated in place.
+     */
+    private static final class Count {
+        private long value;
+    }
+
+    /**
+     * One hash partition of the table, and its spill file if it has
+     * spilled.
+     */
+    private final class Partition {
+
+        private final Map<String, Count> counts = new HashMap<>();
+        private long weight;
+        private Path file;
+        private DataOutputStream out;
+
+        /**
+         * Adds {@code sign} to the count of each line.
+         */
+        synchronized void add(final String[] lines, final int sign) {
+            long change = 0L;
+            for (String line : lines) {
+                Count count = counts.get(line);
+                if (count == null) {
+                    count = new Count();
+                    counts.put(line, count);
+                    change += weigh(line);
+                }
+                count.value += sign;
+                if (count.value == 0L) {
+                    counts.remove(line);
+                    change -= weigh(line);
+                }
+            }
+            weight += change;
+            held.addAndGet(change);
+        }
+
+        /**
+         * Appends the counts to the spill file and empties the table.
+         */
+        synchronized void spill() throws IOException {
+            if (counts.isEmpty()) {
+                return;
+            }
+            if (out == null) {
+                file = Files.createTempFile(spillDir, "partition", ".bin");
+                out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)));
+            }
+            for (Map.Entry<String, Count> entry : counts.entrySet()) {
+                final byte[] bytes =
+                    entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeLong(entry.getValue().value);
+            }
+            counts.clear();
+            held.addAndGet(-weight);
+            weight = 0L;
+        }
+
+        /**
+         * The final count of each line, read back from the spill file if
+         * there is one.
+         */
+        synchronized Map<String, Count> totals() throws IOException {
+            if (out == null) {
+                return counts;
+            }
+            spill();
+            out.close();
+            out = null;
+            final Map<String, Count> totals = new HashMap<>();
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    final int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException ex) {
+                        break;
+                    }
+                    final byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    totals.computeIfAbsent(
+                        new String(bytes, StandardCharsets.UTF_8),
+                        line -> new Count()).value += in.readLong();
+                }
+            }
+            return totals;
+        }
+
+        synchronized void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    // the file is deleted anyway
+                }
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * Totals of the missing or unexpected lines, keeping the first few in
+     * String order to report.
+     */
+    private static final class Tally {
+
+        private final TreeMap<String, Long> first = new TreeMap<>();
+        private long lines;
+        private long distinct;
+
+        void add(final String line, final long count) {
+            lines += count;
+            ++distinct;
+            if (first.size() < MAX_REPORTED
+                || line.compareTo(first.lastKey()) < 0) {
+                first.put(line, count);
+                if (first.size() > MAX_REPORTED) {
+                    first.pollLastEntry();
+                }
+            }
+        }
+
+        void describe(
+            final StringBuilder failure,
+            final String entryFormat,
+            final String kind)
+        {
+            for (Map.Entry<String, Long> entry : first.entrySet()) {
+                failure.append(
+                    format(entryFormat, entry.getValue(), entry.getKey()));
+            }
+            if (distinct > first.size()) {
+                failure.append(
+                    format(MORE_STR, distinct - first.size(), kind));
+            }
+        }
+    }
+
+}
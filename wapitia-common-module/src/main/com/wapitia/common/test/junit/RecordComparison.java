@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import static java.lang.String.format;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compares expected and actual delimited records field by field, as laid
+ * out by a {@link RecordFormat}.
+ *
+ * <p>Each side keeps the bounds of the fields of its current line in a
+ * reused array, and a single reused {@link FieldView} over the line is
+ * moved from field to field to hand them to the column comparators, so
+ * once the arrays have grown to the widest record, comparing lines
+ * allocates nothing until a mismatch is reported.
+ *
+ * @author Corey Morgan
+ */
+final class RecordComparison {
+
+    static final String FIELD_MISMATCH_STR = "Field mismatch at line %d";
+    static final String FIELD_STR =
+        "%n  column %d expected \"%s\", but got \"%s\"";
+    static final String FIELD_COUNT_STR =
+        "Field count mismatch at line %d, expected %d fields, but got %d";
+
+    private final RecordFormat recordFormat;
+    private final Fields expected = new Fields();
+    private final Fields actual = new Fields();
+
+    /**
+     * Creates a comparison of records in some format.
+     * @param recordFormat layout of the records and comparators of the
+     *                     columns.
+     */
+    RecordComparison(final RecordFormat recordFormat) {
+        this.recordFormat = recordFormat;
+    }
+
+    /**
+     * Compares an expected and an actual record.
+     * @param line number of the line the records are on.
+     * @param exp the expected record.
+     * @param act the actual record.
+     * @return the report of the fields that differ, or {@code null} if the
+     *         records match.
+     */
+    String compare(
+        final long line,
+        final CharSequence exp,
+        final CharSequence act)
+    {
+        expected.split(exp);
+        actual.split(act);
+        if (expected.count != actual.count) {
+            return format(FIELD_COUNT_STR, line, expected.count,
+                actual.count);
+        }
+        StringBuilder report = null;
+        for (int i = 0; i < expected.count; ++i) {
+            final Comparator<? super CharSequence> comp =
+                recordFormat.comparator(i + 1);
+            if (comp == RecordFormat.IGNORED
+                || comp.compare(expected.field(i), actual.field(i)) == 0) {
+                continue;
+            }
+            if (report == null) {
+                report = new StringBuilder(format(FIELD_MISMATCH_STR, line));
+            }
+            report.append(format(FIELD_STR, i + 1, expected.field(i),
+                actual.field(i)));
+        }
+        return report == null ? null : report.toString();
+    }
+
+    /**
+     * The fields of one side's current line.
+     */
+    private final class Fields {
+
+        private final FieldView view = new FieldView();
+        private CharSequence line;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+
+        /**
+         * Finds the bounds of the fields of a line.
+         */
+        void split(final CharSequence cs) {
+            line = cs;
+            count = 0;
+            final char delimiter = recordFormat.delimiter();
+            final boolean quoted = recordFormat.quoted();
+            final int len = cs.length();
+            int idx = 0;
+            while (true) {
+                int start = idx;
+                int end;
+                if (quoted && idx < len && cs.charAt(idx) == '"') {
+                    start = ++idx;
+                    while (idx < len && !(cs.charAt(idx) == '"'
+                        && (idx + 1 == len || cs.charAt(idx + 1) != '"'))) {
+                        idx += cs.charAt(idx) == '"' ? 2 : 1;
+                    }
+                    end = idx;
+                    while (idx < len && cs.charAt(idx) != delimiter) {
+                        ++idx;
+                    }
+                } else {
+                    while (idx < len && cs.charAt(idx) != delimiter) {
+                        ++idx;
+                    }
+                    end = idx;
+                }
+                add(start, Math.min(end, len));
+                if (idx >= len) {
+                    break;
+                }
+                ++idx;
+            }
+        }
+
+        private void add(final int start, final int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            ++count;
+        }
+
+        /**
+         * The reused view, moved to a field.
+         */
+        FieldView field(final int index) {
+            view.set(line, starts[index], ends[index]);
+            return view;
+        }
+    }
+
+    /**
+     * A view of one field of a line, moved from field to field.
+     */
+    private static final class FieldView implements CharSequence {
+
+        private CharSequence line;
+        private int start;
+        private int length;
+
+        void set(final CharSequence cs, final int from, final int to) {
+            line = cs;
+            start = from;
+            length = to - from;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index);
+            }
+            return line.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException(
+                    "from " + from + ", to " + to);
+            }
+            return line.subSequence(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return line.subSequence(start, start + length).toString();
+        }
+    }
+
+}
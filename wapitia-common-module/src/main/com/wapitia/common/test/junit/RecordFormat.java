@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import com.wapitia.common.test.DecimalParser;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The layout of delimited records, such as CSV or TSV lines, and how each
+ * of their columns is compared, for
+ * {@link CompareTestData#assertEqualRecords(java.util.stream.Stream,
+ * java.util.stream.Stream, RecordFormat, java.util.function.Predicate,
+ * boolean) CompareTestData.assertEqualRecords}.
+ *
+ * <p>A format is built by starting from one of {@link #csv()},
+ * {@link #tsv()} or {@link #delimitedBy(char)} and choosing comparators
+ * for particular columns, each step returning a new, immutable format:
+ *
+ * <pre>
+ *   RecordFormat format = RecordFormat.csv()
+ *       .ignore(1)
+ *       .numeric(4, 1e-9, 0.0);
+ * </pre>
+ *
+ * <p>Columns are numbered from one, as in the failure messages, and any
+ * column without a comparator of its own is compared {@link #EXACT
+ * exactly}. A comparator is given each field as a {@code CharSequence}
+ * view over the line, without its delimiters or any enclosing quotes, and
+ * the same view object is reused for the next field, so a comparator must
+ * not keep it. A field is made into a String only to report it.
+ *
+ * @author Corey Morgan
+ */
+public final class RecordFormat {
+
+    /**
+     * Compares fields character by character.
+     */
+    public static final Comparator<CharSequence> EXACT =
+        CompareTestData::compareContent;
+
+    /**
+     * Finds every pair of fields equal, so the column is not compared.
+     */
+    public static final Comparator<CharSequence> IGNORED = (cs1, cs2) -> 0;
+
+    private final char delimiter;
+    private final boolean quoted;
+    private final Comparator<? super CharSequence>[] columns;
+
+    private RecordFormat(
+        final char delimiter,
+        final boolean quoted,
+        final Comparator<? super CharSequence>[] columns)
+    {
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+        this.columns = columns;
+    }
+
+    /**
+     * Records of comma-separated fields, any of which may be enclosed in
+     * double quotes to hold commas, with a double quote within written
+     * twice. A quoted field is compared as written between its quotes, so
+     * doubled quotes are not undone.
+     * @return a format comparing every column exactly.
+     */
+    public static RecordFormat csv() {
+        return new RecordFormat(',', true, comparators(0));
+    }
+
+    /**
+     * Records of tab-separated fields, without quoting.
+     * @return a format comparing every column exactly.
+     */
+    public static RecordFormat tsv() {
+        return delimitedBy('\t');
+    }
+
+    /**
+     * Records of fields separated by some character, without quoting.
+     * @param delimiter character between fields.
+     * @return a format comparing every column exactly.
+     */
+    public static RecordFormat delimitedBy(final char delimiter) {
+        return new RecordFormat(delimiter, false, comparators(0));
+    }
+
+    /**
+     * A comparator of fields as decimal numbers, finding two numbers equal
+     * when they differ by no more than {@code absTolerance}, or by no more
+     * than {@code relTolerance} times the larger of their magnitudes. A
+     * field that is not a number is compared exactly.
+     *
+     * <p>Numbers simple enough for
+     * {@link DecimalParser#parseExact(CharSequence)} are parsed straight
+     * from the field, exactly; any others are parsed by
+     * {@link Double#parseDouble(String)}.
+     *
+     * @param absTolerance largest absolute difference allowed, zero or more.
+     * @param relTolerance largest difference allowed relative to the larger
+     *                     magnitude, zero or more.
+     * @return the comparator.
+     */
+    public static Comparator<CharSequence> numericWithin(
+        final double absTolerance,
+        final double relTolerance)
+    {
+        if (!(absTolerance >= 0.0 && relTolerance >= 0.0)) {
+            throw new IllegalArgumentException("absTolerance " + absTolerance
+                + ", relTolerance " + relTolerance);
+        }
+        return (cs1, cs2) -> {
+            final double n1 = parseDouble(cs1);
+            final double n2 = parseDouble(cs2);
+            if (Double.isNaN(n1) || Double.isNaN(n2)) {
+                return CompareTestData.compareContent(cs1, cs2);
+            }
+            return CompareTestData.within(n1, n2, absTolerance, relTolerance)
+                ? 0
+                : Double.compare(n1, n2);
+        };
+    }
+
+    /**
+     * A format also comparing a column exactly.
+     * @param column column number, from one.
+     * @return a new format.
+     */
+    public RecordFormat exact(final int column) {
+        return column(column, EXACT);
+    }
+
+    /**
+     * A format also ignoring a column.
+     * @param column column number, from one.
+     * @return a new format.
+     */
+    public RecordFormat ignore(final int column) {
+        return column(column, IGNORED);
+    }
+
+    /**
+     * A format also comparing a column as numbers within a tolerance.
+     * @param column column number, from one.
+     * @param absTolerance largest absolute difference allowed, zero or more.
+     * @param relTolerance largest difference allowed relative to the larger
+     *                     magnitude, zero or more.
+     * @return a new format.
+     * @see #numericWithin(double, double)
+     */
+    public RecordFormat numeric(
+        final int column,
+        final double absTolerance,
+        final double relTolerance)
+    {
+        return column(column, numericWithin(absTolerance, relTolerance));
+    }
+
+    /**
+     * A format also comparing a column by some comparator, which finds the
+     * fields equal when it returns zero.
+     * @param column column number, from one.
+     * @param comparator comparator of the column's fields.
+     * @return a new format.
+     */
+    public RecordFormat column(
+        final int column,
+        final Comparator<? super CharSequence> comparator)
+    {
+        if (column < 1) {
+            throw new IllegalArgumentException("column " + column);
+        }
+        final Comparator<? super CharSequence>[] more =
+            Arrays.copyOf(columns, Math.max(columns.length, column));
+        more[column - 1] = comparator;
+        return new RecordFormat(delimiter, quoted, more);
+    }
+
+    /**
+     * The character between fields.
+     * @return the delimiter.
+     */
+    public char delimiter() {
+        return delimiter;
+    }
+
+    /**
+     * The comparator of a column.
+     * @param column column number, from one.
+     * @return the comparator, {@link #EXACT} unless another was chosen.
+     */
+    public Comparator<? super CharSequence> comparator(final int column) {
+        final Comparator<? super CharSequence> comp = column <= columns.length
+            ? columns[column - 1]
+            : null;
+        return comp == null ? EXACT : comp;
+    }
+
+    /**
+     * {@code true} if fields may be enclosed in double quotes.
+     */
+    boolean quoted() {
+        return quoted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<? super CharSequence>[] comparators(
+        final int count)
+    {
+        return (Comparator<? super CharSequence>[]) new Comparator<?>[count];
+    }
+
+    /**
+     * Parses a field as a double, exactly by
+     * {@link DecimalParser#parseExact(CharSequence)} when it can and
+     * otherwise by {@link Double#parseDouble(String)}.
+     * @return the number, or {@code NaN} if the field is not one.
+     */
+    static double parseDouble(final CharSequence cs) {
+        final double exact = DecimalParser.parseExact(cs);
+        return Double.isNaN(exact) ? slowDouble(cs) : exact;
+    }
+
+    private static double slowDouble(final CharSequence cs) {
+        try {
+            return Double.parseDouble(cs.toString());
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+}
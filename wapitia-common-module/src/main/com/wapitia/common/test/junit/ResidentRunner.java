@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs suites on request from a socket, in a JVM that stays up between
+ * runs, so that JUnit and the library are loaded, compiled and holding
+ * their cached golden data before a suite is even asked for.
+ *
+ * <p>A client connects, sends one line, {@code run} and the name of a
+ * suite class, and reads back each line the tests print and the failure
+ * results as {@link WapitiaTestMain#runSuite(String[], Class, Consumer)}
+ * would print them, ending with the suite's {@code success} or {@code fail}
+ * line. The line {@code stop} ends the runner. Runs take turns, since the
+ * tests' standard output is the client's for the length of a run.
+ *
+ * <p>Each run loads the test classes afresh in a class loader of its own,
+ * which looks for classes on the test class path before asking the
+ * runner's, so classes recompiled since the last run are the ones run
+ * even when stale copies are on the runner's own class path. Everything
+ * else, JUnit and the library included, is the runner's, and so stays
+ * warm. The class loader is closed after the run and its classes left to
+ * be collected.
+ *
+ * @author Corey Morgan
+ */
+final class ResidentRunner {
+
+    static final String RUN = "run";
+    static final String STOP = "stop";
+
+    static final String NOT_FOUND_STR = "No such suite: %s";
+    static final String UNKNOWN_STR = "Unknown request: %s";
+    static final String REQUEST_STR = "%s from %s";
+    static final String OUTCOME_STR = "%s ran %d, failed %d";
+
+    private final ServerSocket server;
+    private final URL[] testClassPath;
+    private final Consumer<String> log;
+
+    /**
+     * Creates a runner answering on a bound server socket.
+     * @param server socket to accept requests on; it is closed when the
+     *               runner stops.
+     * @param testClassPath where to load the test classes from on each run.
+     * @param log Consumer of the requests taken and the suites' outcomes.
+     */
+    ResidentRunner(
+        final ServerSocket server,
+        final List<URL> testClassPath,
+        final Consumer<String> log)
+    {
+        this.server = server;
+        this.testClassPath = testClassPath.toArray(new URL[0]);
+        this.log = log;
+    }
+
+    /**
+     * Sends a request to a runner on this host and passes the lines it
+     * answers with to a log.
+     * @param port port the runner listens on.
+     * @param request the request line.
+     * @param log Consumer of the lines of the answer.
+     * @return the last line of the answer, or {@code null} if there was
+     *         none.
+     * @throws UncheckedIOException if the runner cannot be reached.
+     */
+    static String request(
+        final int port,
+        final String request,
+        final Consumer<String> log)
+    {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8))) {
+            final PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.println(request);
+            out.flush();
+            String last = null;
+            for (String line = in.readLine(); line != null;
+                line = in.readLine()) {
+                log.accept(line);
+                last = line;
+            }
+            return last;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Answers requests one at a time until asked to stop, or until the
+     * server socket is closed.
+     */
+    void serve() {
+        try {
+            boolean serving = true;
+            while (serving) {
+                try (Socket socket = server.accept()) {
+                    serving = answer(socket);
+                } catch (IOException ex) {
+                    if (server.isClosed()) {
+                        return;
+                    }
+                    log.accept(ex.toString());
+                }
+            }
+        } finally {
+            try {
+                server.close();
+            } catch (IOException ex) {
+                // stopping anyway
+            }
+        }
+    }
+
+    /**
+     * Answers one request.
+     * @return {@code false} if it was to stop.
+     */
+    private boolean answer(final Socket socket) throws IOException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+        final PrintStream out = new PrintStream(
+            socket.getOutputStream(), true, StandardCharsets.UTF_8.name());
+        final String request = in.readLine();
+        if (request == null) {
+            return true;
+        }
+        log.accept(String.format(REQUEST_STR, request,
+            socket.getRemoteSocketAddress()));
+        final String trimmed = request.trim();
+        if (STOP.equals(trimmed)) {
+            return false;
+        }
+        if (trimmed.startsWith(RUN + ' ')) {
+            run(trimmed.substring(RUN.length() + 1).trim(), out);
+        } else {
+            out.println(String.format(UNKNOWN_STR, request));
+            out.println(WapitiaTestMain.FAIL);
+        }
+        out.flush();
+        return true;
+    }
+
+    /**
+     * Runs a suite loaded by a fresh class loader, with the tests'
+     * standard output and error going to the client.
+     */
+    private void run(final String suiteName, final PrintStream out)
+        throws IOException
+    {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader context = thread.getContextClassLoader();
+        final PrintStream stdout = System.out;
+        final PrintStream stderr = System.err;
+        try (URLClassLoader loader = new TestClassLoader(
+            testClassPath, ResidentRunner.class.getClassLoader())) {
+            final Class<?> suite;
+            try {
+                suite = Class.forName(suiteName, true, loader);
+            } catch (ClassNotFoundException | LinkageError ex) {
+                out.println(String.format(NOT_FOUND_STR, ex));
+                out.println(suiteName + " " + WapitiaTestMain.FAIL);
+                return;
+            }
+            thread.setContextClassLoader(loader);
+            System.setOut(out);
+            System.setErr(out);
+            final Result result;
+            try {
+                result = new JUnitCore().run(suite);
+            } finally {
+                System.setOut(stdout);
+                System.setErr(stderr);
+                thread.setContextClassLoader(context);
+            }
+            WapitiaTestMain.report(suite, result, out::println);
+            log.accept(String.format(OUTCOME_STR, suite.getSimpleName(),
+                result.getRunCount(), result.getFailureCount()));
+        }
+    }
+
+    /**
+     * Loads classes from the test class path ahead of its parent, so that
+     * the test classes are always loaded afresh, and all others from its
+     * parent.
+     */
+    private static final class TestClassLoader extends URLClassLoader {
+
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        TestClassLoader(final URL[] urls, final ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+            throws ClassNotFoundException
+        {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    try {
+                        loaded = findClass(name);
+                    } catch (ClassNotFoundException ex) {
+                        loaded = super.loadClass(name, false);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import com.wapitia.common.test.junit.TestTimings.MethodTiming;
+import com.wapitia.common.test.junit.TestTimings.Outcome;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Runs the test classes of a {@link org.junit.runners.Suite.SuiteClasses}
+ * suite in several child JVMs, so that tests which depend on static state,
+ * or need a heap of their own, can still run side by side, and merges
+ * their results into one {@link Result}.
+ *
+ * <p>The classes wait in one shared queue, longest first by the class
+ * times of an earlier run, with classes that have no recorded time ahead
+ * of them all, since they may be slow. Each child takes the next class
+ * whenever it finishes one, so a child given short classes simply takes
+ * more of them, and the shards balance themselves even when the recorded
+ * times are off. A child that dies fails the class it was running, and
+ * the other children take on the rest of the queue.
+ *
+ * <p>Each child is this class's {@link #main(String[])}, talking to its
+ * parent over its standard input and output: it asks for a class, runs it
+ * with a {@link TimingListener}, and sends back each line the tests print,
+ * each failure and each timing as it happens. The lines the tests print
+ * are passed to the log as they arrive, marked with the shard that printed
+ * them; the failures are merged in suite order once every child is done,
+ * so they read the same however the classes were scheduled.
+ *
+ * @author Corey Morgan
+ */
+final class ShardedSuiteRunner {
+
+    /**
+     * Start of every line of the protocol from a child, to tell it from
+     * anything else the child's JVM prints.
+     */
+    static final String PREFIX = "\u001ewapitia ";
+
+    static final String OUTPUT_STR = "[shard %d] %s";
+    static final String DIED_STR =
+        "Shard %d exited with status %d while running %s";
+    static final String NOT_RUN_STR = "Not run, every shard exited";
+    static final String START_FAILED_STR = "Could not start: %s";
+    static final String LOST_STR = "Lost the shard: %s";
+
+    private static final String READY = "ready";
+    private static final String OUT = "out";
+    private static final String FAILURE = "failure";
+    private static final String METHOD = "method";
+    private static final String SETUP = "setup";
+    private static final String DONE = "done";
+
+    private final int shards;
+    private final List<String> jvmArgs;
+    private final Map<String, Long> estimates;
+    private final Consumer<String> log;
+    private final Deque<String> queue = new ArrayDeque<>();
+    private final Map<String, ClassResult> results = new HashMap<>();
+    private final List<MethodTiming> methods = new ArrayList<>();
+    private final Map<String, Long> setups = new LinkedHashMap<>();
+
+    /**
+     * Creates a runner over some number of child JVMs.
+     * @param shards number of child JVMs, at least one.
+     * @param jvmArgs options for each child JVM, such as {@code -Xmx4g}.
+     * @param previous timings of an earlier run to balance the shards by,
+     *                 or {@code null} if there are none.
+     * @param log Consumer of the lines the tests print.
+     */
+    ShardedSuiteRunner(
+        final int shards,
+        final List<String> jvmArgs,
+        final TestTimings previous,
+        final Consumer<String> log)
+    {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards " + shards);
+        }
+        this.shards = shards;
+        this.jvmArgs = new ArrayList<>(jvmArgs);
+        this.estimates = previous == null
+            ? Collections.<String, Long>emptyMap()
+            : previous.getClassTotals();
+        this.log = log;
+    }
+
+    /**
+     * Runs the tests of a suite, waiting for every child to finish.
+     * @param suite suite class listing the test classes.
+     * @return the merged result of all the classes.
+     */
+    Result run(final Class<?> suite) {
+        final List<String> classes = new ArrayList<>();
+        for (Class<?> clss : ConcurrentSuiteRunner.suiteClasses(suite)) {
+            classes.add(clss.getName());
+        }
+        final List<String> longestFirst = new ArrayList<>(classes);
+        longestFirst.sort(Comparator.comparingLong(
+            (String name) -> estimates.getOrDefault(name, Long.MAX_VALUE))
+            .reversed());
+        queue.addAll(longestFirst);
+        final List<Thread> threads = new ArrayList<>();
+        for (int shard = 1; shard <= Math.min(shards, classes.size());
+            ++shard) {
+            final int number = shard;
+            final Thread thread = new Thread(() -> runShard(number),
+                "wapitia-shard-" + shard);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted running " + suite, ex);
+        }
+        return merge(suite, classes);
+    }
+
+    /**
+     * The timings of all the classes run, in the order they finished.
+     * @return the timings.
+     */
+    synchronized TestTimings getTimings() {
+        return new TestTimings(methods, setups);
+    }
+
+    /**
+     * Runs a child JVM taking classes from the queue until it is empty.
+     */
+    private void runShard(final int shard) {
+        final Process process;
+        try {
+            process = childProcess().start();
+        } catch (IOException ex) {
+            output(shard, String.format(START_FAILED_STR, ex));
+            return;
+        }
+        String current = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter toChild = new PrintWriter(new OutputStreamWriter(
+                process.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null;
+                line = in.readLine()) {
+                if (!line.startsWith(PREFIX)) {
+                    output(shard, line);
+                    continue;
+                }
+                final int space = line.indexOf(' ', PREFIX.length());
+                final String kind = space < 0
+                    ? line.substring(PREFIX.length())
+                    : line.substring(PREFIX.length(), space);
+                final String[] fields = space < 0
+                    ? new String[0]
+                    : line.substring(space + 1).split("\t", -1);
+                if (READY.equals(kind)) {
+                    current = next();
+                    toChild.println(current == null ? "" : current);
+                    toChild.flush();
+                } else {
+                    received(shard, current, kind, fields);
+                    if (DONE.equals(kind)) {
+                        current = null;
+                    }
+                }
+            }
+            final int status = process.waitFor();
+            if (current != null) {
+                result(current).failures.add(failure(current,
+                    String.format(DIED_STR, shard, status, current), ""));
+            }
+        } catch (IOException ex) {
+            output(shard, String.format(LOST_STR, ex));
+            if (current != null) {
+                result(current).failures.add(failure(current,
+                    String.format(LOST_STR, ex), ""));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private ProcessBuilder childProcess() {
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+            + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardedSuiteRunner.class.getName());
+        return new ProcessBuilder(command).redirectErrorStream(true);
+    }
+
+    /**
+     * Handles a message from a child about the class it is running.
+     */
+    private void received(
+        final int shard,
+        final String current,
+        final String kind,
+        final String[] fields)
+    {
+        if (OUT.equals(kind)) {
+            output(shard, unescape(fields[0]));
+        } else if (FAILURE.equals(kind)) {
+            result(current).failures.add(failure(unescape(fields[0]),
+                unescape(fields[1]), unescape(fields[2])));
+        } else if (METHOD.equals(kind)) {
+            synchronized (this) {
+                methods.add(new MethodTiming(fields[0], fields[1],
+                    Long.parseLong(fields[2]), Outcome.valueOf(fields[3])));
+            }
+        } else if (SETUP.equals(kind)) {
+            synchronized (this) {
+                setups.merge(fields[0], Long.parseLong(fields[1]), Long::sum);
+            }
+        } else if (DONE.equals(kind)) {
+            final ClassResult result = result(current);
+            result.run = Integer.parseInt(fields[0]);
+            result.ignored = Integer.parseInt(fields[1]);
+        }
+    }
+
+    private synchronized String next() {
+        return queue.poll();
+    }
+
+    private synchronized ClassResult result(final String className) {
+        return results.computeIfAbsent(className, name -> new ClassResult());
+    }
+
+    private void output(final int shard, final String line) {
+        synchronized (log) {
+            log.accept(String.format(OUTPUT_STR, shard, line));
+        }
+    }
+
+    /**
+     * The results of all the classes, in suite order.
+     */
+    private synchronized Result merge(
+        final Class<?> suite,
+        final List<String> classes)
+    {
+        final Result merged = new Result();
+        final RunListener listener = merged.createListener();
+        try {
+            listener.testRunStarted(Description.createSuiteDescription(suite));
+            for (String className : classes) {
+                final ClassResult result = results.get(className);
+                if (result == null) {
+                    listener.testFailure(
+                        failure(className, NOT_RUN_STR, ""));
+                    continue;
+                }
+                for (int i = 0; i < result.run; ++i) {
+                    listener.testFinished(Description.EMPTY);
+                }
+                for (int i = 0; i < result.ignored; ++i) {
+                    listener.testIgnored(Description.EMPTY);
+                }
+                for (Failure failure : result.failures) {
+                    listener.testFailure(failure);
+                }
+            }
+            listener.testRunFinished(merged);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return merged;
+    }
+
+    private static Failure failure(
+        final String header,
+        final String message,
+        final String trace)
+    {
+        return new Failure(Description.createSuiteDescription(header),
+            new ChildFailure(message, trace));
+    }
+
+    /**
+     * Runs test classes as one shard of a {@link ShardedSuiteRunner},
+     * reading their names from standard input, one a line, until an empty
+     * line or the end of input, and reporting on standard output.
+     * @param args not used.
+     * @throws IOException if standard input cannot be read.
+     */
+    public static void main(final String[] args) throws IOException {
+        final PrintStream protocol = new PrintStream(
+            new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        final PrintStream output =
+            new PrintStream(new LineForwarder(protocol), true);
+        System.setOut(output);
+        System.setErr(output);
+        final BufferedReader in = new BufferedReader(
+            new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        while (true) {
+            send(protocol, READY);
+            final String className = in.readLine();
+            if (className == null || className.isEmpty()) {
+                break;
+            }
+            runClass(className, protocol, output);
+        }
+        output.flush();
+        System.exit(0);
+    }
+
+    private static void runClass(
+        final String className,
+        final PrintStream protocol,
+        final PrintStream output)
+    {
+        final Class<?> clss;
+        try {
+            clss = Class.forName(className);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            send(protocol, FAILURE, escape(className), escape(ex.toString()),
+                "");
+            send(protocol, DONE, "0", "0");
+            return;
+        }
+        final TimingListener timing = new TimingListener();
+        final JUnitCore core = new JUnitCore();
+        core.addListener(timing);
+        final Result result = core.run(clss);
+        output.flush();
+        for (Failure failure : result.getFailures()) {
+            send(protocol, FAILURE, escape(failure.getTestHeader()),
+                escape(String.valueOf(failure.getMessage())),
+                escape(failure.getTrace()));
+        }
+        final TestTimings timings = timing.getTimings();
+        for (Map.Entry<String, Long> setup
+            : timings.getClassSetups().entrySet()) {
+            send(protocol, SETUP, setup.getKey(),
+                Long.toString(setup.getValue()));
+        }
+        for (MethodTiming method : timings.getMethods()) {
+            send(protocol, METHOD, method.getClassName(),
+                method.getMethodName(), Long.toString(method.getNanos()),
+                method.getOutcome().name());
+        }
+        send(protocol, DONE, Integer.toString(result.getRunCount()),
+            Integer.toString(result.getIgnoreCount()));
+    }
+
+    private static void send(
+        final PrintStream protocol,
+        final String kind,
+        final String... fields)
+    {
+        synchronized (protocol) {
+            protocol.println(PREFIX + kind
+                + (fields.length == 0 ? "" : " " + String.join("\t", fields)));
+        }
+    }
+
+    /**
+     * A string with backslashes, tabs and line breaks escaped, to fit in
+     * one field of a protocol line.
+     */
+    static String escape(final String text) {
+        final StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ++i) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(ch);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * The string {@link #escape(String)} was given.
+     */
+    static String unescape(final String field) {
+        final StringBuilder text = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); ++i) {
+            final char ch = field.charAt(i);
+            if (ch != '\\' || i + 1 == field.length()) {
+                text.append(ch);
+                continue;
+            }
+            final char next = field.charAt(++i);
+            text.append(next == 't' ? '\t'
+                : next == 'n' ? '\n'
+                : next == 'r' ? '\r'
+                : next);
+        }
+        return text.toString();
+    }
+
+    /**
+     * The tests and failures of one class.
+     */
+    private static final class ClassResult {
+        private final List<Failure> failures = new ArrayList<>();
+        private int run;
+        private int ignored;
+    }
+
+    /**
+     * A failure reported by a child, printing the child's stack trace as
+     * its own.
+     */
+    private static final class ChildFailure extends Throwable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String trace;
+
+        ChildFailure(final String message, final String trace) {
+            super(message, null, false, false);
+            this.trace = trace;
+        }
+
+        @Override
+        public void printStackTrace(final PrintWriter writer) {
+            writer.print(trace);
+        }
+
+        @Override
+        public void printStackTrace(final PrintStream stream) {
+            stream.print(trace);
+        }
+    }
+
+    /**
+     * Sends what the tests print to the parent a line at a time.
+     */
+    private static final class LineForwarder extends OutputStream {
+
+        private final PrintStream protocol;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineForwarder(final PrintStream protocol) {
+            this.protocol = protocol;
+        }
+
+        @Override
+        public synchronized void write(final int ch) {
+            if (ch == '\n') {
+                flushLine();
+            } else if (ch != '\r') {
+                line.write(ch);
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (line.size() > 0) {
+                flushLine();
+            }
+        }
+
+        private void flushLine() {
+            send(protocol, OUT, escape(new String(line.toByteArray(),
+                Charset.defaultCharset())));
+            line.reset();
+        }
+    }
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Diffs an expected and an actual sequence of lines in one streaming pass,
+ * holding no more than a lookahead window of each, and describes the first
+ * few differing hunks in the manner of a unified diff.
+ *
+ * <p>While the next lines of both sides are equal they are passed over,
+ * keeping only the last few as context. At a difference the next
+ * {@code window} lines of each side are read ahead, the actual lines are
+ * indexed by hash, and each expected line in turn is looked up to find
+ * where the two sides resume: the nearest pair of positions, counting
+ * lines skipped on both sides, at which {@value #ANCHOR} lines in a row are
+ * equal. The lines before that pair are reported as deleted and inserted.
+ * An anchor of several lines keeps a common line, such as a blank one,
+ * from resynchronizing the sides too early. Where no anchor is found
+ * within the window, one line of each side is reported as changed and the
+ * search goes on from the next.
+ *
+ * <p>Hunks are separated by at least {@code context} equal lines, each of
+ * which is listed once, and a run of differences too long to list in one
+ * hunk of about two windows is split into several. Reading stops once
+ * {@code maxHunks} hunks are complete, so a large failing comparison costs
+ * time in proportion to how far into the sequences its first differences
+ * lie, and space in proportion to the window and the report.
+ *
+ * @author Corey Morgan
+ */
+final class StreamingDiff {
+
+    /**
+     * Number of equal lines in a row taken as resynchronizing the sides,
+     * {@value}.
+     */
+    static final int ANCHOR = 3;
+
+    static final String DIFF_STR = "Streams differ, first %d hunk%s%s:";
+    static final String STOPPED_STR = ", stopped there";
+    static final String HUNK_STR = "%n@@ -%d,%d +%d,%d @@";
+
+    private final int window;
+    private final int maxHunks;
+    private final int context;
+    private final int maxHunkLines;
+    private final Lookahead exp;
+    private final Lookahead act;
+    private final Lookahead before;
+    private final StringBuilder report = new StringBuilder();
+    private int hunks;
+    private Hunk open;
+
+    /**
+     * Creates a diff of two sequences.
+     * @param expected Expected lines.
+     * @param actuals Actual lines.
+     * @param window most lines of each side read ahead to resynchronize.
+     * @param maxHunks most hunks to report before stopping.
+     * @param context equal lines listed before and after each hunk.
+     */
+    StreamingDiff(
+        final Iterator<String> expected,
+        final Iterator<String> actuals,
+        final int window,
+        final int maxHunks,
+        final int context)
+    {
+        if (window < 1 || maxHunks < 1 || context < 0) {
+            throw new IllegalArgumentException("window " + window
+                + ", maxHunks " + maxHunks + ", context " + context);
+        }
+        this.window = window;
+        this.maxHunks = maxHunks;
+        this.context = context;
+        this.maxHunkLines = 2 * window + 2 * context;
+        this.exp = new Lookahead(expected, window + ANCHOR);
+        this.act = new Lookahead(actuals, window + ANCHOR);
+        this.before = new Lookahead(null, Math.max(1, context));
+    }
+
+    /**
+     * Diffs the two sequences.
+     * @return the report of the differences, or {@code null} if the
+     *         sequences are equal.
+     */
+    String diff() {
+        while (hunks < maxHunks) {
+            exp.fill(1);
+            act.fill(1);
+            if (exp.size() == 0 && act.size() == 0) {
+                break;
+            }
+            if (exp.size() > 0 && act.size() > 0
+                && exp.get(0).equals(act.get(0))) {
+                equalLine(exp.poll());
+                act.poll();
+            } else {
+                difference();
+            }
+        }
+        final boolean stopped = hunks == maxHunks
+            && (exp.fill(1) > 0 || act.fill(1) > 0);
+        closeHunk();
+        if (hunks == 0) {
+            return null;
+        }
+        return String.format(DIFF_STR, hunks, hunks == 1 ? "" : "s",
+            stopped ? STOPPED_STR : "") + report;
+    }
+
+    /**
+     * Passes over a line equal on both sides, as trailing context of the
+     * open hunk or as possible leading context of the next.
+     */
+    private void equalLine(final String line) {
+        if (open != null && context == 0) {
+            closeHunk();
+        } else if (open != null) {
+            open.add(' ', line);
+            ++open.expectedCount;
+            ++open.actualCount;
+            if (++open.trailing >= context) {
+                closeHunk();
+            }
+        } else if (context > 0) {
+            if (before.size() == context) {
+                before.poll();
+            }
+            before.add(line);
+        }
+        exp.advanceLine();
+        act.advanceLine();
+    }
+
+    /**
+     * Finds where the sides resume after a difference, and adds the lines
+     * before that to the open hunk.
+     */
+    private void difference() {
+        exp.fill(window + ANCHOR);
+        act.fill(window + ANCHOR);
+        int skipExpected = exp.size() == 0 ? 0
+            : act.size() == 0 ? exp.size() : 1;
+        int skipActual = act.size() == 0 ? 0
+            : exp.size() == 0 ? act.size() : 1;
+        final Map<String, List<Integer>> index = new HashMap<>();
+        for (int j = 0; j < Math.min(window, act.size()); ++j) {
+            index.computeIfAbsent(act.get(j), line -> new ArrayList<>())
+                .add(j);
+        }
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < Math.min(window, exp.size()) && i < best; ++i) {
+            final List<Integer> at = index.get(exp.get(i));
+            if (at == null) {
+                continue;
+            }
+            for (int j : at) {
+                if (i + j >= best) {
+                    break;
+                }
+                if (anchored(i, j)) {
+                    best = i + j;
+                    skipExpected = i;
+                    skipActual = j;
+                }
+            }
+        }
+        if (open == null) {
+            open = new Hunk(exp.lineNumber() - before.size(),
+                act.lineNumber() - before.size());
+            while (before.size() > 0) {
+                open.add(' ', before.poll());
+                ++open.expectedCount;
+                ++open.actualCount;
+            }
+        }
+        open.trailing = 0;
+        for (int i = 0; i < skipExpected; ++i) {
+            open.add('-', exp.poll());
+            ++open.expectedCount;
+            exp.advanceLine();
+        }
+        for (int j = 0; j < skipActual; ++j) {
+            open.add('+', act.poll());
+            ++open.actualCount;
+            act.advanceLine();
+        }
+        if (open.lines.size() >= maxHunkLines) {
+            closeHunk();
+        }
+    }
+
+    /**
+     * {@code true} if the sides agree for {@value #ANCHOR} lines from the
+     * given positions, or up to the ends of both.
+     */
+    private boolean anchored(final int expAt, final int actAt) {
+        for (int k = 0; k < ANCHOR; ++k) {
+            final boolean expEnd = expAt + k >= exp.size();
+            final boolean actEnd = actAt + k >= act.size();
+            if (expEnd || actEnd) {
+                return expEnd && actEnd;
+            }
+            if (!exp.get(expAt + k).equals(act.get(actAt + k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void closeHunk() {
+        if (open == null) {
+            return;
+        }
+        report.append(String.format(HUNK_STR, open.expectedStart,
+            open.expectedCount, open.actualStart, open.actualCount));
+        for (String line : open.lines) {
+            report.append(System.lineSeparator()).append(line);
+        }
+        ++hunks;
+        open = null;
+        before.clear();
+    }
+
+    /**
+     * A hunk being built.
+     */
+    private final class Hunk {
+
+        private final long expectedStart;
+        private final long actualStart;
+        private final List<String> lines = new ArrayList<>();
+        private long expectedCount;
+        private long actualCount;
+        private int trailing;
+
+        Hunk(final long expectedStart, final long actualStart) {
+            this.expectedStart = expectedStart;
+            this.actualStart = actualStart;
+        }
+
+        void add(final char mark, final String line) {
+            lines.add(mark + line);
+        }
+    }
+
+    /**
+     * The lines read ahead from one side, in a ring, with the number of the
+     * first of them.
+     */
+    private static final class Lookahead {
+
+        private final Iterator<String> source;
+        private final String[] ring;
+        private int head;
+        private int size;
+        private long lineNumber = 1L;
+
+        Lookahead(final Iterator<String> source, final int capacity) {
+            this.source = source;
+            this.ring = new String[capacity];
+        }
+
+        /**
+         * Reads ahead until {@code count} lines are held or the source
+         * ends.
+         * @return the number of lines held.
+         */
+        int fill(final int count) {
+            while (size < count && source.hasNext()) {
+                add(source.next());
+            }
+            return size;
+        }
+
+        void add(final String line) {
+            ring[(head + size++) % ring.length] = line;
+        }
+
+        String get(final int at) {
+            return ring[(head + at) % ring.length];
+        }
+
+        String poll() {
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            final String line = ring[head];
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            --size;
+            return line;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            while (size > 0) {
+                poll();
+            }
+        }
+
+        long lineNumber() {
+            return lineNumber;
+        }
+
+        void advanceLine() {
+            ++lineNumber;
+        }
+    }
+
+}
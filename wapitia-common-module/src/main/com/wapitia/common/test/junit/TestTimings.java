@@ -0,0 +1,406 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import static java.lang.String.format;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * The times taken by the tests of a suite run, as recorded by a
+ * {@link TimingListener}: each test method's execution time, and each test
+ * class's setup time before its first test method starts.
+ *
+ * <p>Timings are written to, and read back from, a JUnit-XML report with a
+ * {@code testsuite} element per test class and a {@code testcase} element
+ * per test method, as CI servers read, times in seconds. Each class's setup
+ * time is kept in a {@code setup} property of its {@code testsuite}.
+ *
+ * @author Corey Morgan
+ */
+public final class TestTimings {
+
+    /**
+     * The outcome and execution time of one test method.
+     */
+    public static final class MethodTiming {
+
+        private final String className;
+        private final String methodName;
+        private final long nanos;
+        private final Outcome outcome;
+
+        MethodTiming(
+            final String className,
+            final String methodName,
+            final long nanos,
+            final Outcome outcome)
+        {
+            this.className = className;
+            this.methodName = methodName;
+            this.nanos = nanos;
+            this.outcome = outcome;
+        }
+
+        /**
+         * Name of the test class.
+         * @return fully qualified class name.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Name of the test method.
+         * @return method name.
+         */
+        public String getMethodName() {
+            return methodName;
+        }
+
+        /**
+         * Time taken running the method, including its {@code @Before} and
+         * {@code @After} methods.
+         * @return nanoseconds, 0 if skipped.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Whether the method passed, failed or was skipped.
+         * @return the outcome.
+         */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        @Override
+        public String toString() {
+            return format(Locale.ROOT, "%s %s.%s", seconds(nanos),
+                className.substring(className.lastIndexOf('.') + 1),
+                methodName);
+        }
+    }
+
+    /**
+     * Outcome of a test method.
+     */
+    public enum Outcome {
+        /** Ran and passed. */
+        PASSED,
+        /** Ran and failed. */
+        FAILED,
+        /** Ignored, not run. */
+        SKIPPED
+    }
+
+    private static final String SETUP = "setup";
+
+    private final List<MethodTiming> methods;
+    private final Map<String, Long> classSetups;
+
+    /**
+     * Timings of some test methods and classes.
+     * @param methods test methods in the order they finished.
+     * @param classSetups setup nanoseconds by test class name, in the order
+     *                    the classes started.
+     */
+    TestTimings(
+        final List<MethodTiming> methods,
+        final Map<String, Long> classSetups)
+    {
+        this.methods = Collections.unmodifiableList(new ArrayList<>(methods));
+        this.classSetups =
+            Collections.unmodifiableMap(new LinkedHashMap<>(classSetups));
+    }
+
+    /**
+     * The timings of all the test methods, in the order they finished.
+     * @return unmodifiable list of method timings.
+     */
+    public List<MethodTiming> getMethods() {
+        return methods;
+    }
+
+    /**
+     * The setup time of each test class: the time between the end of the
+     * previous class's last test, or the start of the run, and the start
+     * of its own first test, spent mostly in its {@code @BeforeClass}
+     * methods.
+     * @return unmodifiable map of nanoseconds by class name.
+     */
+    public Map<String, Long> getClassSetups() {
+        return classSetups;
+    }
+
+    /**
+     * The total time of each test class, its setup time plus the times of
+     * all its test methods.
+     * @return map of nanoseconds by class name, in the order the classes
+     *         started.
+     */
+    public Map<String, Long> getClassTotals() {
+        final Map<String, Long> totals = new LinkedHashMap<>(classSetups);
+        for (MethodTiming method : methods) {
+            totals.merge(method.getClassName(), method.getNanos(), Long::sum);
+        }
+        return totals;
+    }
+
+    /**
+     * The execution time under which some percentage of the methods run,
+     * taking the nearest rank among the methods that ran.
+     * @param percent percentile, greater than 0 and at most 100.
+     * @return nanoseconds, or 0 if no method ran.
+     */
+    public long percentile(final double percent) {
+        if (!(percent > 0.0 && percent <= 100.0)) {
+            throw new IllegalArgumentException("percentile " + percent);
+        }
+        final long[] sorted = methods.stream()
+            .filter(method -> method.getOutcome() != Outcome.SKIPPED)
+            .mapToLong(MethodTiming::getNanos)
+            .sorted()
+            .toArray();
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        final int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * The slowest test methods, slowest first.
+     * @param count the most to return.
+     * @return up to {@code count} method timings.
+     */
+    public List<MethodTiming> slowest(final int count) {
+        return methods.stream()
+            .sorted(Comparator.comparingLong(MethodTiming::getNanos)
+                .reversed())
+            .limit(count)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Lines summarizing the timings: the total time, the median, 90th and
+     * 99th percentile and longest method times, and then the slowest
+     * methods.
+     * @param name name of the run, such as the suite's name.
+     * @param count the number of slowest methods to list.
+     * @return summary lines.
+     */
+    public List<String> summary(final String name, final int count) {
+        final long total = getClassTotals().values().stream()
+            .mapToLong(Long::longValue).sum();
+        final List<String> lines = new ArrayList<>();
+        lines.add(format(Locale.ROOT,
+            "%s timings (s): %d tests in %s; p50 %s, p90 %s, p99 %s, max %s",
+            name, methods.size(), seconds(total), seconds(percentile(50.0)),
+            seconds(percentile(90.0)), seconds(percentile(99.0)),
+            seconds(percentile(100.0))));
+        for (MethodTiming method : slowest(count)) {
+            lines.add("  " + method);
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the timings as a JUnit-XML report.
+     * @param path file to write, replaced if it exists.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    public void write(final Path path) {
+        final Document doc = newBuilder().newDocument();
+        final Element root = doc.createElement("testsuites");
+        doc.appendChild(root);
+        final Map<String, Element> suites = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> setup : classSetups.entrySet()) {
+            suites.put(setup.getKey(),
+                testSuite(doc, setup.getKey(), setup.getValue()));
+        }
+        for (MethodTiming method : methods) {
+            final Element suite = suites.computeIfAbsent(
+                method.getClassName(), name -> testSuite(doc, name, 0L));
+            final Element testCase = doc.createElement("testcase");
+            testCase.setAttribute("classname", method.getClassName());
+            testCase.setAttribute("name", method.getMethodName());
+            testCase.setAttribute("time", seconds(method.getNanos()));
+            if (method.getOutcome() == Outcome.FAILED) {
+                testCase.appendChild(doc.createElement("failure"));
+            } else if (method.getOutcome() == Outcome.SKIPPED) {
+                testCase.appendChild(doc.createElement("skipped"));
+            }
+            suite.appendChild(testCase);
+        }
+        final Map<String, Long> totals = getClassTotals();
+        for (Element suite : suites.values()) {
+            final String name = suite.getAttribute("name");
+            suite.setAttribute("tests", Integer.toString(
+                suite.getElementsByTagName("testcase").getLength()));
+            suite.setAttribute("failures", Integer.toString(
+                suite.getElementsByTagName("failure").getLength()));
+            suite.setAttribute("skipped", Integer.toString(
+                suite.getElementsByTagName("skipped").getLength()));
+            suite.setAttribute("time", seconds(totals.get(name)));
+            root.appendChild(suite);
+        }
+        try {
+            final Transformer transformer =
+                TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.transform(new DOMSource(doc),
+                new StreamResult(path.toFile()));
+        } catch (TransformerException ex) {
+            throw new UncheckedIOException(
+                new IOException("Failed writing " + path, ex));
+        }
+    }
+
+    /**
+     * Reads the timings from a JUnit-XML report, such as one written by
+     * {@link #write(Path)} on an earlier run.
+     * @param path file to read.
+     * @return the timings.
+     * @throws UncheckedIOException if the file cannot be read or parsed.
+     */
+    public static TestTimings read(final Path path) {
+        final Document doc;
+        try {
+            doc = newBuilder().parse(path.toFile());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (SAXException ex) {
+            throw new UncheckedIOException(
+                new IOException("Malformed timings " + path, ex));
+        }
+        final Map<String, Long> setups = new LinkedHashMap<>();
+        final NodeList suites = doc.getElementsByTagName("testsuite");
+        for (int i = 0; i < suites.getLength(); ++i) {
+            final Element suite = (Element) suites.item(i);
+            final NodeList props = suite.getElementsByTagName("property");
+            for (int j = 0; j < props.getLength(); ++j) {
+                final Element prop = (Element) props.item(j);
+                if (SETUP.equals(prop.getAttribute("name"))) {
+                    setups.put(suite.getAttribute("name"),
+                        nanos(prop.getAttribute("value")));
+                }
+            }
+        }
+        final List<MethodTiming> methods = new ArrayList<>();
+        final NodeList cases = doc.getElementsByTagName("testcase");
+        for (int i = 0; i < cases.getLength(); ++i) {
+            final Element testCase = (Element) cases.item(i);
+            final Outcome outcome =
+                testCase.getElementsByTagName("failure").getLength() > 0
+                    || testCase.getElementsByTagName("error").getLength() > 0
+                ? Outcome.FAILED
+                : testCase.getElementsByTagName("skipped").getLength() > 0
+                ? Outcome.SKIPPED
+                : Outcome.PASSED;
+            methods.add(new MethodTiming(testCase.getAttribute("classname"),
+                testCase.getAttribute("name"),
+                nanos(testCase.getAttribute("time")), outcome));
+        }
+        return new TestTimings(methods, setups);
+    }
+
+    private static Element testSuite(
+        final Document doc,
+        final String name,
+        final long setupNanos)
+    {
+        final Element suite = doc.createElement("testsuite");
+        suite.setAttribute("name", name);
+        final Element props = doc.createElement("properties");
+        final Element prop = doc.createElement("property");
+        prop.setAttribute("name", SETUP);
+        prop.setAttribute("value", seconds(setupNanos));
+        props.appendChild(prop);
+        suite.appendChild(props);
+        return suite;
+    }
+
+    private static DocumentBuilder newBuilder() {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (ParserConfigurationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Nanoseconds as seconds to the microsecond, the form of JUnit-XML
+     * times.
+     */
+    private static String seconds(final long nanos) {
+        return format(Locale.ROOT, "%.6f",
+            nanos / (double) TimeUnit.SECONDS.toNanos(1L));
+    }
+
+    private static long nanos(final String seconds) {
+        if (seconds.isEmpty()) {
+            return 0L;
+        }
+        return Math.round(Double.parseDouble(seconds)
+            * TimeUnit.SECONDS.toNanos(1L));
+    }
+
+}
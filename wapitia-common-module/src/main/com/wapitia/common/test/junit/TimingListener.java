@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.common.test.junit;
+
+import com.wapitia.common.test.junit.TestTimings.MethodTiming;
+import com.wapitia.common.test.junit.TestTimings.Outcome;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JUnit {@link RunListener} recording how long each test method takes to
+ * run and how long each test class takes to set up, for a
+ * {@link TestTimings} report.
+ *
+ * <p>JUnit 4 reports no events for test classes, so a class's setup time
+ * is taken as the time between the end of the previous test, or the start
+ * of the run, and the start of the class's first test. It is spent mostly
+ * in the class's {@code @BeforeClass} methods, but also holds any
+ * {@code @AfterClass} methods of the class run before it. Timing is kept
+ * per thread, so one listener may time runs going on concurrently.
+ *
+ * @author Corey Morgan
+ */
+@RunListener.ThreadSafe
+public class TimingListener extends RunListener {
+
+    /**
+     * Where the current thread's run is up to.
+     */
+    private static final class Mark {
+        private long since = System.nanoTime();
+        private String className;
+        private Description test;
+        private boolean failed;
+    }
+
+    private final ThreadLocal<Mark> marks = ThreadLocal.withInitial(Mark::new);
+    private final List<MethodTiming> methods = new ArrayList<>();
+    private final Map<String, Long> classSetups = new LinkedHashMap<>();
+
+    @Override
+    public void testRunStarted(final Description description) {
+        final Mark mark = marks.get();
+        mark.since = System.nanoTime();
+        mark.className = null;
+    }
+
+    @Override
+    public void testStarted(final Description description) {
+        final long now = System.nanoTime();
+        final Mark mark = marks.get();
+        final String className = description.getClassName();
+        if (!className.equals(mark.className)) {
+            synchronized (this) {
+                classSetups.merge(className, now - mark.since, Long::sum);
+            }
+            mark.className = className;
+        }
+        mark.test = description;
+        mark.failed = false;
+        mark.since = now;
+    }
+
+    @Override
+    public void testFailure(final Failure failure) {
+        final Mark mark = marks.get();
+        if (failure.getDescription().equals(mark.test)) {
+            mark.failed = true;
+        }
+    }
+
+    @Override
+    public void testFinished(final Description description) {
+        final long now = System.nanoTime();
+        final Mark mark = marks.get();
+        add(new MethodTiming(description.getClassName(),
+            description.getMethodName(), now - mark.since,
+            mark.failed ? Outcome.FAILED : Outcome.PASSED));
+        mark.test = null;
+        mark.since = now;
+    }
+
+    @Override
+    public void testIgnored(final Description description) {
+        add(new MethodTiming(description.getClassName(),
+            description.getMethodName(), 0L, Outcome.SKIPPED));
+    }
+
+    /**
+     * The timings recorded so far.
+     * @return a snapshot of the timings.
+     */
+    public synchronized TestTimings getTimings() {
+        return new TestTimings(methods, classSetups);
+    }
+
+    private synchronized void add(final MethodTiming timing) {
+        methods.add(timing);
+    }
+
+}
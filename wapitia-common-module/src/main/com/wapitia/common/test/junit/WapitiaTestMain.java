@@ -38,6 +38,13 @@ import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 /**
@@ -97,9 +104,7 @@ public final class WapitiaTestMain {
             final Consumer<String> log)
     {
         final Result result = JUnitCore.runClasses(suite);
-        result.getFailures().stream().map(Failure::toString).forEach(log);
-        final String succFail = result.wasSuccessful() ? SUCCESS : FAIL;
-        log.accept(format("%s %s", suite.getSimpleName(), succFail));
+        report(suite, result, log);
     }
 
     /**
@@ -137,6 +142,337 @@ public final class WapitiaTestMain {
         WapitiaTestMain.runSuite(mainArgs, suite, System.out::println);
     }
 
+    /**
+     * Runs the JUnit tests packaged in the given test {@code suite} as
+     * {@link #runSuite(String[], Class, Consumer)} does, timing each test
+     * class and method with a {@link TimingListener}. After the failure
+     * results, a summary of the timings is printed to the {@link Consumer
+     * log}, with the median and other percentiles of the method times and
+     * the {@code slowest} methods, and the timings are written as a
+     * JUnit-XML report that a later run can {@link TestTimings#read read}.
+     *
+     * @param <T>
+     *            Test Suite instance type
+     * @param suite
+     *            Annotated test {@link org.junit.runners.Suite.SuiteClasses
+     *            Suite} type packaging a set of {@link org.junit.Test Test}s
+     *            to run.
+     * @param log
+     *            Consumer of lines of failures and other test results.
+     * @param slowest
+     *            the number of slowest test methods to list.
+     * @param timingsFile
+     *            file to write the timings to.
+     * @return the timings of the run.
+     *
+     * @see TestTimings
+     */
+    public static <T> TestTimings runSuiteTimed(
+            final Class<T> suite,
+            final Consumer<String> log,
+            final int slowest,
+            final Path timingsFile)
+    {
+        final TimingListener listener = new TimingListener();
+        final JUnitCore core = new JUnitCore();
+        core.addListener(listener);
+        final Result result = core.run(suite);
+        report(suite, result, log);
+        final TestTimings timings = listener.getTimings();
+        timings.summary(suite.getSimpleName(), slowest).forEach(log);
+        timings.write(timingsFile);
+        return timings;
+    }
+
+    /**
+     * Runs the JUnit tests packaged in the given test {@code suite}
+     * concurrently on some {@link ExecutorService}, and then prints the
+     * failure results to some {@link Consumer log} just as
+     * {@link #runSuite(String[], Class, Consumer)} does.
+     *
+     * <p>Each class listed by the suite's
+     * {@link org.junit.runners.Suite.SuiteClasses Suite.SuiteClasses}
+     * annotation, or with {@code byMethod} each of their test methods, is
+     * run as a separate JUnit run on the executor, so the tests must not
+     * depend on each other or on unguarded static state. The results of
+     * the runs are merged into one {@link Result}, in the order the suite
+     * lists its classes, so that the log is the same from one run to the
+     * next whatever order the tests finish in. Any executor will do, such
+     * as a fixed thread pool for CPU-bound tests or, from Java 21, a
+     * virtual thread per task for I/O-bound ones.
+     *
+     * @param <T>
+     *            Test Suite instance type
+     * @param suite
+     *            Annotated test {@link org.junit.runners.Suite.SuiteClasses
+     *            Suite} type packaging a set of {@link org.junit.Test Test}s
+     *            to run.
+     * @param log
+     *            Consumer of lines of failures and other test results.
+     * @param executor
+     *            executor running the test classes or methods; it is
+     *            not shut down.
+     * @param byMethod
+     *            {@code true} to schedule each test method separately,
+     *            {@code false} to schedule each test class.
+     * @return the merged result of all the tests.
+     *
+     * @see #runSuite(String[], Class, Consumer)
+     */
+    public static <T> Result runSuiteConcurrently(
+            final Class<T> suite,
+            final Consumer<String> log,
+            final ExecutorService executor,
+            final boolean byMethod)
+    {
+        final Result result =
+            new ConcurrentSuiteRunner(executor, byMethod).run(suite);
+        report(suite, result, log);
+        return result;
+    }
+
+    /**
+     * Runs the JUnit tests packaged in the given test {@code suite}
+     * concurrently on a pool of some number of threads, as
+     * {@link #runSuiteConcurrently(Class, Consumer, ExecutorService,
+     * boolean)} does.
+     *
+     * @param <T>
+     *            Test Suite instance type
+     * @param suite
+     *            Annotated test {@link org.junit.runners.Suite.SuiteClasses
+     *            Suite} type packaging a set of {@link org.junit.Test Test}s
+     *            to run.
+     * @param log
+     *            Consumer of lines of failures and other test results.
+     * @param threads
+     *            number of tests to run at once.
+     * @param byMethod
+     *            {@code true} to schedule each test method separately,
+     *            {@code false} to schedule each test class.
+     * @return the merged result of all the tests.
+     */
+    public static <T> Result runSuiteConcurrently(
+            final Class<T> suite,
+            final Consumer<String> log,
+            final int threads,
+            final boolean byMethod)
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            threads, WapitiaTestMain::daemonThread);
+        try {
+            return runSuiteConcurrently(suite, log, executor, byMethod);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the JUnit tests packaged in the given test {@code suite} in
+     * some number of child JVMs, and then prints the failure results to
+     * some {@link Consumer log} just as
+     * {@link #runSuite(String[], Class, Consumer)} does.
+     *
+     * <p>Each class listed by the suite's
+     * {@link org.junit.runners.Suite.SuiteClasses Suite.SuiteClasses}
+     * annotation runs whole in one of the child JVMs, each of which has
+     * its own static state and heap, so classes that would interfere with
+     * each other in one JVM can still run side by side. The classes are
+     * handed out longest first, by the class times in the
+     * {@code timingsFile} of an earlier run, to whichever child is free,
+     * which balances the shards. Anything the tests print is passed to the
+     * log as it arrives, marked with its shard, and the failures are
+     * merged in suite order. The timings of this run are written back to
+     * the {@code timingsFile} to balance the next one.
+     *
+     * <p>The children run on the same Java and class path as this JVM.
+     *
+     * @param <T>
+     *            Test Suite instance type
+     * @param suite
+     *            Annotated test {@link org.junit.runners.Suite.SuiteClasses
+     *            Suite} type packaging a set of {@link org.junit.Test Test}s
+     *            to run.
+     * @param log
+     *            Consumer of lines of output, failures and other test
+     *            results.
+     * @param shards
+     *            number of child JVMs to run at once.
+     * @param jvmArgs
+     *            options for each child JVM, such as {@code -Xmx4g}.
+     * @param timingsFile
+     *            JUnit-XML timings of an earlier run, read if it exists,
+     *            and replaced by the timings of this run.
+     * @return the merged result of all the tests.
+     *
+     * @see TestTimings
+     */
+    public static <T> Result runSuiteSharded(
+            final Class<T> suite,
+            final Consumer<String> log,
+            final int shards,
+            final List<String> jvmArgs,
+            final Path timingsFile)
+    {
+        final TestTimings previous = Files.isRegularFile(timingsFile)
+            ? TestTimings.read(timingsFile)
+            : null;
+        final ShardedSuiteRunner runner =
+            new ShardedSuiteRunner(shards, jvmArgs, previous, log);
+        final Result result = runner.run(suite);
+        report(suite, result, log);
+        runner.getTimings().write(timingsFile);
+        return result;
+    }
+
+    /**
+     * Runs the JUnit tests packaged in the given test {@code suite} as
+     * {@link #runSuite(String[], Class, Consumer)} does, except for those
+     * test classes that passed in an earlier run and have not changed
+     * since, and then prints the failure results to some {@link Consumer
+     * log}.
+     *
+     * <p>A test class is unchanged when its bytecode, with that of its
+     * nested classes and of its superclasses, is the same, and so is the
+     * content of every resource it opened through
+     * {@link com.wapitia.common.test.TextSource#fromResource(String, Class)
+     * TextSource} when it last ran. The fingerprints, with each class's
+     * outcome, are kept in the {@code stateFile}. The tests of a class
+     * skipped are counted as ignored, and a line naming the class is
+     * logged. Changes to the code under test are not detected, so the
+     * {@code stateFile} must be deleted when it changes, as on a clean
+     * build.
+     *
+     * @param <T>
+     *            Test Suite instance type
+     * @param suite
+     *            Annotated test {@link org.junit.runners.Suite.SuiteClasses
+     *            Suite} type packaging a set of {@link org.junit.Test Test}s
+     *            to run.
+     * @param log
+     *            Consumer of lines of failures and other test results.
+     * @param stateFile
+     *            fingerprints and outcomes of an earlier run, read if it
+     *            exists, and replaced by those of this run.
+     * @return the merged result of the tests run.
+     */
+    public static <T> Result runSuiteIncremental(
+            final Class<T> suite,
+            final Consumer<String> log,
+            final Path stateFile)
+    {
+        final IncrementalSuiteRunner runner =
+            new IncrementalSuiteRunner(stateFile, log);
+        final Result result = runner.run(suite);
+        report(suite, result, log);
+        runner.write(stateFile);
+        return result;
+    }
+
+    /**
+     * Runs suites on request, keeping this JVM up from one run to the
+     * next, so that JUnit, the library and whatever golden data it has
+     * cached stay loaded and compiled, and an edit-test loop pays for
+     * neither a JVM start nor a warm-up on each run. Returns once a client
+     * sends {@link #stopResident(int) stop}, or the {@code server} socket
+     * is closed.
+     *
+     * <p>A client, such as {@link #runRemote(int, String, Consumer)},
+     * sends {@code run} and the name of a suite class on one line, and
+     * reads back each line the tests print and the results just as
+     * {@link #runSuite(String[], Class, Consumer)} prints them. Each run
+     * loads the test classes from the {@code testClassPath} in a class
+     * loader of its own, ahead of any copies on this JVM's class path, so
+     * classes recompiled between runs are picked up. Runs take turns.
+     *
+     * <p><b>Usage example:</b>
+     *
+     * <pre>
+     *      ServerSocket server = new ServerSocket(
+     *          4711, 0, InetAddress.getLoopbackAddress());
+     *      WapitiaTestMain.runResident(server,
+     *          Arrays.asList(Paths.get("build/test").toUri().toURL()),
+     *          System.out::println);
+     * </pre>
+     *
+     * @param server
+     *            bound socket to accept requests on, best bound to the
+     *            loopback address only; it is closed on return.
+     * @param testClassPath
+     *            directories and jars of the test classes, which should
+     *            not hold JUnit or the library.
+     * @param log
+     *            Consumer of the requests taken and the suites' outcomes.
+     */
+    public static void runResident(
+            final ServerSocket server,
+            final List<URL> testClassPath,
+            final Consumer<String> log)
+    {
+        new ResidentRunner(server, testClassPath, log).serve();
+    }
+
+    /**
+     * Asks the resident runner listening on a port of this host to run
+     * a suite, as {@link #runResident(ServerSocket, List, Consumer)}
+     * describes, and prints the lines it answers with to some
+     * {@link Consumer log}.
+     *
+     * @param port
+     *            port the resident runner listens on.
+     * @param suiteName
+     *            fully qualified name of the suite class.
+     * @param log
+     *            Consumer of lines of output, failures and other test
+     *            results.
+     * @return {@code true} if every test passed.
+     * @throws java.io.UncheckedIOException if the runner cannot be
+     *            reached.
+     */
+    public static boolean runRemote(
+            final int port,
+            final String suiteName,
+            final Consumer<String> log)
+    {
+        final String last = ResidentRunner.request(
+            port, ResidentRunner.RUN + ' ' + suiteName, log);
+        return last != null && last.endsWith(' ' + SUCCESS);
+    }
+
+    /**
+     * Asks the resident runner listening on a port of this host to stop.
+     *
+     * @param port
+     *            port the resident runner listens on.
+     * @throws java.io.UncheckedIOException if the runner cannot be
+     *            reached.
+     */
+    public static void stopResident(final int port) {
+        ResidentRunner.request(port, ResidentRunner.STOP, line -> { });
+    }
+
+    /**
+     * Prints the failures and the overall outcome of a suite's run.
+     * @param suite the suite run.
+     * @param result result of the run.
+     * @param log Consumer of lines of failures and other test results.
+     */
+    static void report(
+            final Class<?> suite,
+            final Result result,
+            final Consumer<String> log)
+    {
+        result.getFailures().stream().map(Failure::toString).forEach(log);
+        final String succFail = result.wasSuccessful() ? SUCCESS : FAIL;
+        log.accept(format("%s %s", suite.getSimpleName(), succFail));
+    }
+
+    private static Thread daemonThread(final Runnable task) {
+        final Thread thread = new Thread(task, "wapitia-test");
+        thread.setDaemon(true);
+        return thread;
+    }
+
     /**
      * Constructor is private as this is a utility class.
      */
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.CompactTextSource;
+import com.wapitia.common.test.TextSource;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Test class to test the in-memory CompactTextSource.
+ * @author Corey Morgan
+ *
+ */
+public class TestCompactTextSource {
+
+    /**
+     * The lines match those of a BufferedReader, whatever the line ends.
+     */
+    @Test
+    public void testLinesMatchReader() {
+        final String[] texts = {
+            "", "\n", "\r\n", "\n\n", "a", "a\r", "a\r\n", "\r\rb\r\n\nc",
+            "# golden\nalpha\r\nbeta\rgamma\n\ndelta epsilon\nzeta",
+        };
+        for (String text : texts) {
+            final CompactTextSource src = compact(text);
+            final List<String> expected = TextFixtures.readerLines(text);
+            assertEquals(text, expected,
+                src.toStream().collect(Collectors.toList()));
+            assertEquals(text, expected.size(), src.getLineCount());
+        }
+    }
+
+    /**
+     * The source streams again and again, from several threads at once,
+     * in parallel and sized.
+     * @throws InterruptedException if interrupted.
+     * @throws ExecutionException if a stream fails.
+     */
+    @Test
+    public void testConcurrentStreams()
+        throws InterruptedException, ExecutionException
+    {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            text.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        final CompactTextSource src = compact(text.toString());
+        final List<String> expected = TextFixtures.readerLines(text.toString());
+        final Spliterator<?> lines = src.toByteLineStream().spliterator();
+        assertTrue(lines.hasCharacteristics(Spliterator.SUBSIZED));
+        assertEquals(expected.size(), lines.getExactSizeIfKnown());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<List<String>>> streams = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                final boolean parallel = i % 2 == 0;
+                streams.add(executor.submit(() -> parallel
+                    ? src.toStream().parallel().collect(Collectors.toList())
+                    : src.toStream().collect(Collectors.toList())));
+            }
+            for (Future<List<String>> stream : streams) {
+                assertEquals(expected, stream.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Loading a missing resource fails.
+     */
+    @Test(expected = UncheckedIOException.class)
+    public void testMissingResource() {
+        TextSource.loadResource("/no/such/resource.txt");
+    }
+
+    private static CompactTextSource compact(final String text) {
+        return new CompactTextSource(text.getBytes(StandardCharsets.UTF_8),
+            StandardCharsets.UTF_8) { };
+    }
+}
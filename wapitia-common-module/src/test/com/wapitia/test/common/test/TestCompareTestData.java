@@ -32,14 +32,32 @@
 
 package com.wapitia.test.common.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import com.wapitia.common.test.BufferTextSource;
+import com.wapitia.common.test.ByteLine;
+import com.wapitia.common.test.LineDigest;
+import com.wapitia.common.test.TextSource;
 import com.wapitia.common.test.junit.CompareTestData;
 
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Test class to test the testing class CompareTestData.
@@ -62,4 +80,341 @@ public class TestCompareTestData {
         assertFalse(commentPattern.matcher("Shou#n't work").matches());
         assertFalse(commentPattern.matcher("").matches());
     }
+
+    /**
+     * Comment lines are ignored in both streams.
+     */
+    @Test
+    public void testFilterComments() {
+        CompareTestData.assertEqual(
+            Stream.of("# header", "a", "b", "  # note", "c"),
+            Stream.of("a", "# other", "b", "c"),
+            CompareTestData.noHashComments());
+    }
+
+    /**
+     * The parallel comparison reports the same first mismatch as the
+     * sequential comparison.
+     */
+    @Test
+    public void testParallelMatchesSequential() {
+        final List<String> expected = numbered(50000);
+        final List<String> actual = new ArrayList<>(expected);
+        assertNull(failureOf(expected, actual, true, false));
+        assertNull(failureOf(expected, actual, true, true));
+
+        actual.set(31234, "changed");
+        actual.set(45678, "changed too");
+        assertMatchingFailures(expected, actual, true);
+
+        final List<String> shorter = expected.subList(0, 44444);
+        assertMatchingFailures(expected, shorter, true);
+
+        final List<String> longer = new ArrayList<>(expected);
+        longer.add("extra");
+        assertMatchingFailures(expected, longer, true);
+        assertNull(failureOf(expected, longer, false, true));
+    }
+
+    /**
+     * The digest comparison passes on equal lines, tells lines apart by
+     * where they split, reports mismatches as the line-by-line comparison
+     * does, and closes every stream it is supplied.
+     */
+    @Test
+    public void testDigest() {
+        final List<String> expected = numbered(1000);
+        final List<String> actual = new ArrayList<>(expected);
+        CompareTestData.assertEqualDigest(expected::stream, actual::stream,
+            CompareTestData.noHashComments(), true);
+        assertNotEquals(LineDigest.of(Stream.of("ab", "c")),
+            LineDigest.of(Stream.of("a", "bc")));
+
+        actual.set(777, "changed");
+        String message = null;
+        try {
+            CompareTestData.assertEqualDigest(expected::stream,
+                actual::stream, CompareTestData.noHashComments(), true);
+        } catch (AssertionError err) {
+            message = err.getMessage();
+        }
+        assertEquals(failureOf(expected, actual, true, false), message);
+
+        final AtomicInteger closed = new AtomicInteger();
+        try {
+            CompareTestData.assertEqualDigest(
+                () -> expected.stream().onClose(closed::incrementAndGet),
+                () -> actual.stream().onClose(closed::incrementAndGet),
+                CompareTestData.noHashComments(), true);
+        } catch (AssertionError err) {
+            assertEquals(message, err.getMessage());
+        }
+        assertEquals(4, closed.get());
+    }
+
+    /**
+     * The byte-level comment filter agrees with the comment regular
+     * expression on the decoded lines.
+     */
+    @Test
+    public void testCommentBytes() {
+        final Pattern commentPattern =
+            Pattern.compile(CompareTestData.HASH_COMMENT_REGEX);
+        final String text = String.join("\n", " \t # Just any old stuff",
+            "# More anything", "#", "Shou#n't work", "", "\u000B\f#x",
+            "# " + (char) 0xC5 + "ngstr" + (char) 0xF6 + "m",
+            "# NEL " + (char) 0x85, "# LS " + (char) 0x2028,
+            (char) 0xA0 + "# no-break space", "x # not first");
+        final List<ByteLine> lines = TextSource.fromBytes(
+            text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)
+            .toByteLineStream().collect(Collectors.toList());
+        assertEquals(11, lines.size());
+        for (ByteLine line : lines) {
+            assertEquals(line.toString(),
+                !commentPattern.matcher(line.toString()).matches(),
+                CompareTestData.noHashCommentBytes().test(line));
+        }
+    }
+
+    /**
+     * A non-ASCII line read as bytes compares equal to its own text, and
+     * in the order of its text, as well as to itself read as bytes.
+     */
+    @Test
+    public void testNonAsciiContent() {
+        final String text = "caf" + (char) 0xE9 + " " + (char) 0x2028;
+        final ByteLine line = TextSource.fromBytes(
+            text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)
+            .toByteLineStream().findFirst().get();
+        assertFalse(line.isAscii());
+        assertEquals(0, CompareTestData.compareContent(line, text));
+        assertEquals(0, CompareTestData.compareContent(text, line));
+        assertEquals(0, CompareTestData.compareContent(line, line));
+        assertEquals(0, CompareTestData.compareIgnoringTrailingWhitespace(
+            line, text + " "));
+        assertTrue(CompareTestData.compareContent(line, "caf" + (char) 0xEA)
+            < 0);
+        assertTrue(CompareTestData.compareContent(line, "cafe") > 0);
+    }
+
+    /**
+     * Byte comparison reports mismatches as the String comparison does.
+     */
+    @Test
+    public void testBytes() {
+        final List<String> expected = numbered(1000);
+        final List<String> actual = new ArrayList<>(expected);
+        actual.set(500, "line 500 changed " + (char) 0xE9);
+        final String message;
+        try {
+            CompareTestData.assertEqualBytes(
+                utf8(expected).toByteLineStream(),
+                utf8(actual).toByteLineStream(),
+                CompareTestData.noHashCommentBytes(), true);
+            throw new IllegalStateException("mismatch not found");
+        } catch (AssertionError err) {
+            message = err.getMessage();
+        }
+        assertEquals(failureOf(expected, actual, true, false), message);
+        CompareTestData.assertEqualBytes(utf8(expected).toByteLineStream(),
+            utf8(expected).toByteLineStream(),
+            CompareTestData.noHashCommentBytes(), true);
+    }
+
+    private static BufferTextSource utf8(final List<String> lines) {
+        return TextSource.fromBytes(String.join("\n", lines)
+            .getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static void assertMatchingFailures(
+        final List<String> expected,
+        final List<String> actual,
+        final boolean sameLength)
+    {
+        final String sequential = failureOf(expected, actual, sameLength,
+            false);
+        assertNotNull(sequential);
+        assertEquals(sequential,
+            failureOf(expected, actual, sameLength, true));
+    }
+
+    /**
+     * The unordered comparison passes on shuffled lines, and reports the
+     * missing and unexpected lines with their counts, both in memory and
+     * when spilling to temp files.
+     */
+    @Test
+    public void testUnordered() {
+        final List<String> expected = numbered(20000);
+        expected.add("line 5");
+        final List<String> actual = new ArrayList<>(expected);
+        Collections.shuffle(actual, new Random(3L));
+        for (long limit : new long[] { Long.MAX_VALUE, 4096L }) {
+            assertNull(unorderedFailureOf(expected, actual, limit));
+        }
+
+        actual.remove("line 5");
+        actual.remove("line 5");
+        actual.remove("line 7");
+        actual.add("line x");
+        actual.add("# not a line");
+        final String sep = System.lineSeparator();
+        final String failure = "Unordered mismatch: 3 lines missing,"
+            + " 1 lines unexpected" + sep
+            + "  missing 2x \"line 5\"" + sep
+            + "  missing 1x \"line 7\"" + sep
+            + "  unexpected 1x \"line x\"";
+        for (long limit : new long[] { Long.MAX_VALUE, 4096L }) {
+            assertEquals(failure,
+                unorderedFailureOf(expected, actual, limit));
+        }
+    }
+
+    /**
+     * The diff resynchronizes after an inserted, a deleted and a changed
+     * line, reporting each as a hunk with context, and stops after the
+     * hunks asked for.
+     */
+    @Test
+    public void testDiff() {
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            expected.add("line " + i);
+        }
+        final List<String> actual = new ArrayList<>(expected);
+        actual.set(9000, "changed");
+        actual.remove(5000);
+        actual.add(101, "inserted");
+        assertNull(diffFailureOf(expected, expected, 10));
+
+        final String sep = System.lineSeparator();
+        final String first = sep + "@@ -100,4 +100,5 @@"
+            + sep + " line 99" + sep + " line 100" + sep + "+inserted"
+            + sep + " line 101" + sep + " line 102";
+        assertEquals("Streams differ, first 3 hunks:" + first
+            + sep + "@@ -4999,5 +5000,4 @@"
+            + sep + " line 4998" + sep + " line 4999" + sep + "-line 5000"
+            + sep + " line 5001" + sep + " line 5002"
+            + sep + "@@ -8999,5 +8999,5 @@"
+            + sep + " line 8998" + sep + " line 8999" + sep + "-line 9000"
+            + sep + "+changed" + sep + " line 9001" + sep + " line 9002",
+            diffFailureOf(expected, actual, 10));
+        assertEquals("Streams differ, first 1 hunk, stopped there:" + first,
+            diffFailureOf(expected, actual, 1));
+    }
+
+    /**
+     * Without context, a hunk ends at the first equal line after it, and
+     * that line is not listed.
+     */
+    @Test
+    public void testDiffWithoutContext() {
+        final List<String> expected =
+            Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h");
+        final String sep = System.lineSeparator();
+        final String first = sep + "@@ -2,1 +2,1 @@" + sep + "-b" + sep + "+X";
+        assertEquals("Streams differ, first 1 hunk:" + first,
+            diffFailureOf(expected,
+                Arrays.asList("a", "X", "c", "d", "e", "f", "g", "h"), 10, 0));
+        assertEquals("Streams differ, first 2 hunks:" + first
+            + sep + "@@ -7,1 +7,1 @@" + sep + "-g" + sep + "+Y",
+            diffFailureOf(expected,
+                Arrays.asList("a", "X", "c", "d", "e", "f", "Y", "h"), 10, 0));
+    }
+
+    /**
+     * Lines left over at the end of either side are reported as deleted
+     * or inserted, with or without context.
+     */
+    @Test
+    public void testDiffTrailingLines() {
+        final List<String> shorter = Arrays.asList("a", "b", "c");
+        final List<String> longer = Arrays.asList("a", "b", "c", "d", "e");
+        final String sep = System.lineSeparator();
+        final String differ = "Streams differ, first 1 hunk:";
+        assertEquals(differ + sep + "@@ -2,2 +2,4 @@" + sep + " b" + sep
+            + " c" + sep + "+d" + sep + "+e",
+            diffFailureOf(shorter, longer, 10, 2));
+        assertEquals(differ + sep + "@@ -2,4 +2,2 @@" + sep + " b" + sep
+            + " c" + sep + "-d" + sep + "-e",
+            diffFailureOf(longer, shorter, 10, 2));
+        assertEquals(differ + sep + "@@ -4,0 +4,2 @@" + sep + "+d" + sep
+            + "+e", diffFailureOf(shorter, longer, 10, 0));
+        assertEquals(differ + sep + "@@ -4,2 +4,0 @@" + sep + "-d" + sep
+            + "-e", diffFailureOf(longer, shorter, 10, 0));
+        assertEquals(differ + sep + "@@ -1,1 +1,2 @@" + sep + "-x" + sep
+            + "+y" + sep + "+z", diffFailureOf(Arrays.asList("x"),
+                Arrays.asList("y", "z"), 10, 2));
+        assertEquals(differ + sep + "@@ -1,2 +1,1 @@" + sep + "-y" + sep
+            + "+x" + sep + "-z", diffFailureOf(Arrays.asList("y", "z"),
+                Arrays.asList("x"), 10, 0));
+    }
+
+    private static String diffFailureOf(
+        final List<String> expected,
+        final List<String> actual,
+        final int maxHunks)
+    {
+        return diffFailureOf(expected, actual, maxHunks, 2);
+    }
+
+    private static String diffFailureOf(
+        final List<String> expected,
+        final List<String> actual,
+        final int maxHunks,
+        final int context)
+    {
+        try {
+            CompareTestData.assertEqualDiff(expected.stream(), actual.stream(),
+                CompareTestData.noFilter, 100, maxHunks, context);
+            return null;
+        } catch (AssertionError err) {
+            return err.getMessage();
+        }
+    }
+
+    private static String unorderedFailureOf(
+        final List<String> expected,
+        final List<String> actual,
+        final long memoryLimit)
+    {
+        try {
+            CompareTestData.assertEqualUnordered(expected.stream(),
+                actual.stream(), CompareTestData.noHashComments(),
+                memoryLimit, ForkJoinPool.commonPool());
+            return null;
+        } catch (AssertionError err) {
+            return err.getMessage();
+        }
+    }
+
+    private static String failureOf(
+        final List<String> expected,
+        final List<String> actual,
+        final boolean sameLength,
+        final boolean parallel)
+    {
+        try {
+            if (parallel) {
+                CompareTestData.assertEqualParallel(expected.stream(),
+                    actual.stream(), String::compareTo,
+                    CompareTestData.noHashComments(), sameLength);
+            } else {
+                CompareTestData.assertEqual(expected.stream(),
+                    actual.stream(), String::compareTo,
+                    CompareTestData.noHashComments(), sameLength);
+            }
+            return null;
+        } catch (AssertionError err) {
+            return err.getMessage();
+        }
+    }
+
+    private static List<String> numbered(final int count) {
+        final List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            lines.add(i % 100 == 0 ? "# comment " + i : "line " + i);
+        }
+        return lines;
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.wapitia.common.test.GoldenCache;
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Test class to test reading compressed golden resources, which it writes
+ * next to its own class file so that they are on the class path.
+ * @author Corey Morgan
+ *
+ */
+public class TestCompressedResources {
+
+    private static final String PARALLEL = "wapitia.gzip.parallel";
+    private static final int BLOCK = 4000;
+
+    private static final List<Path> WRITTEN = new ArrayList<>();
+    private static Path dir;
+
+    /**
+     * Finds the directory holding this class, skipping the tests if the
+     * class is not in a directory.
+     * @throws URISyntaxException never.
+     */
+    @BeforeClass
+    public static void findDir() throws URISyntaxException {
+        final URL own = TestCompressedResources.class.getResource(
+            TestCompressedResources.class.getSimpleName() + ".class");
+        assumeTrue("file".equals(own.getProtocol()));
+        dir = Paths.get(own.toURI()).getParent();
+    }
+
+    /**
+     * Removes the resources written.
+     * @throws IOException on failure to delete.
+     */
+    @AfterClass
+    public static void removeResources() throws IOException {
+        for (Path path : WRITTEN) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Gzip of several members reads as the text, both streamed and loaded.
+     * @throws IOException on failure to write the resource.
+     */
+    @Test
+    public void testGzip() throws IOException {
+        final byte[] text = text(3000);
+        final ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        gzip(gz, text, 0, text.length / 2);
+        gzip(gz, text, text.length / 2, text.length);
+        final String name = write("golden-members.txt.gz", gz.toByteArray());
+        assertEquals(lines(text), TextSource.fromResource(name,
+            TestCompressedResources.class).toStream()
+            .collect(Collectors.toList()));
+        assertEquals(lines(text), TextSource.loadResource(name,
+            TestCompressedResources.class, Charset.defaultCharset())
+            .toStream().collect(Collectors.toList()));
+        CompareTestData.assertEqual(
+            "/com/wapitia/test/common/test/" + name, lines(text).stream());
+    }
+
+    /**
+     * A compressed resource that decompresses to more than the cache's
+     * budget is decompressed once, and later requests skip the cache.
+     * @throws IOException on failure to write the resource.
+     */
+    @Test
+    public void testOversizeRemembered() throws IOException {
+        final byte[] text = text(3000);
+        final ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        gzip(gz, text, 0, text.length);
+        final String name = write("golden-oversize.txt.gz", gz.toByteArray());
+        final GoldenCache cache = new GoldenCache(gz.size() + 1L);
+        assertTrue(text.length > cache.getBudget());
+        final Charset charset = Charset.defaultCharset();
+        assertNull(cache.get(name, TestCompressedResources.class, charset));
+        assertNull(cache.get(name, TestCompressedResources.class, charset));
+        assertEquals(1L, cache.getLoadCount());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    /**
+     * Zlib deflate is known by its first bytes when its name does not say.
+     * @throws IOException on failure to write the resource.
+     */
+    @Test
+    public void testDeflateByMagic() throws IOException {
+        final byte[] text = text(500);
+        final ByteArrayOutputStream zz = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(zz)) {
+            out.write(text);
+        }
+        final String name = write("golden-deflate.bin", zz.toByteArray());
+        assertEquals(lines(text), TextSource.fromResource(name,
+            TestCompressedResources.class).toStream()
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Blocked gzip, followed by an ordinary member, reads as the text when
+     * its blocks are inflated in parallel.
+     * @throws IOException on failure to write the resource.
+     */
+    @Test
+    public void testBlockedGzipInParallel() throws IOException {
+        final byte[] text = text(20000);
+        final int blocked = text.length - 1000;
+        final ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        for (int from = 0; from < blocked; from += BLOCK) {
+            blockedGzip(gz, text, from, Math.min(blocked, from + BLOCK));
+        }
+        gzip(gz, text, blocked, text.length);
+        final String name = write("golden-blocked.txt.gz", gz.toByteArray());
+        final String was = System.setProperty(PARALLEL, "true");
+        try {
+            assertEquals(lines(text), TextSource.loadResource(name,
+                TestCompressedResources.class, Charset.defaultCharset())
+                .toStream().collect(Collectors.toList()));
+        } finally {
+            if (was == null) {
+                System.clearProperty(PARALLEL);
+            } else {
+                System.setProperty(PARALLEL, was);
+            }
+        }
+    }
+
+    private static byte[] text(final int lines) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; ++i) {
+            text.append("golden line ").append(i * 7919 % 10007).append('\n');
+        }
+        return text.toString().getBytes(Charset.defaultCharset());
+    }
+
+    private static List<String> lines(final byte[] text) {
+        final List<String> lines = new ArrayList<>();
+        for (String line : new String(text, Charset.defaultCharset())
+            .split("\n")) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static String write(final String name, final byte[] bytes)
+        throws IOException
+    {
+        final Path path = dir.resolve(name);
+        WRITTEN.add(path);
+        Files.write(path, bytes);
+        return name;
+    }
+
+    private static void gzip(
+        final OutputStream out,
+        final byte[] text,
+        final int from,
+        final int to) throws IOException
+    {
+        final ByteArrayOutputStream member = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(member)) {
+            gz.write(text, from, to - from);
+        }
+        member.writeTo(out);
+    }
+
+    /**
+     * Writes a gzip member with the {@code BC} extra field of blocked gzip.
+     */
+    private static void blockedGzip(
+        final OutputStream out,
+        final byte[] text,
+        final int from,
+        final int to) throws IOException
+    {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION,
+            true);
+        deflater.setInput(text, from, to - from);
+        deflater.finish();
+        final byte[] data = new byte[2 * (to - from) + 64];
+        final int size = deflater.deflate(data);
+        deflater.end();
+        final CRC32 crc = new CRC32();
+        crc.update(text, from, to - from);
+        final int total = 18 + size + 8;
+        out.write(new byte[] {
+            0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF, 6, 0,
+            'B', 'C', 2, 0, (byte) (total - 1), (byte) ((total - 1) >> 8),
+        });
+        out.write(data, 0, size);
+        writeInt(out, crc.getValue());
+        writeInt(out, to - from);
+    }
+
+    private static void writeInt(final OutputStream out, final long value)
+        throws IOException
+    {
+        for (int shift = 0; shift < 32; shift += 8) {
+            out.write((int) (value >> shift));
+        }
+    }
+}
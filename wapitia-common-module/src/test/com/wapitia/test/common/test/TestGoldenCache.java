@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.wapitia.common.test.CompactTextSource;
+import com.wapitia.common.test.GoldenCache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Test class to test the GoldenCache, using class files as the resources
+ * since they are on the class path however the tests are built.
+ * @author Corey Morgan
+ *
+ */
+public class TestGoldenCache {
+
+    private static final Charset CS = StandardCharsets.ISO_8859_1;
+    private static final String OWN_CLASS = "TestGoldenCache.class";
+
+    /**
+     * A resource loads once, whether named relative to a class or
+     * absolutely.
+     */
+    @Test
+    public void testHitsAndMisses() {
+        final GoldenCache cache = new GoldenCache(1L << 20);
+        final CompactTextSource first =
+            cache.get(OWN_CLASS, TestGoldenCache.class, CS);
+        assertNotNull(first);
+        assertSame(first, cache.get(OWN_CLASS, TestGoldenCache.class, CS));
+        assertSame(first, cache.get(
+            "/com/wapitia/test/common/test/" + OWN_CLASS, String.class, CS));
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(1L, cache.getLoadCount());
+        assertEquals(1, cache.size());
+        assertNull(cache.get("NoSuch.txt", TestGoldenCache.class, CS));
+    }
+
+    /**
+     * The least recently used resource is evicted to stay in budget, and a
+     * resource larger than the budget is not cached.
+     */
+    @Test
+    public void testEviction() {
+        final GoldenCache sizer = new GoldenCache(1L << 20);
+        sizer.get(OWN_CLASS, TestGoldenCache.class, CS);
+        final long ownWeight = sizer.getWeight();
+
+        final GoldenCache cache = new GoldenCache(ownWeight + 1L);
+        cache.get(OWN_CLASS, TestGoldenCache.class, CS);
+        cache.get("TestLineFilter.class", TestGoldenCache.class, CS);
+        assertEquals(1L, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+        cache.get(OWN_CLASS, TestGoldenCache.class, CS);
+        assertEquals(3L, cache.getMissCount());
+
+        final GoldenCache tiny = new GoldenCache(16L);
+        assertNull(tiny.get(OWN_CLASS, TestGoldenCache.class, CS));
+        assertEquals(0, tiny.size());
+    }
+
+    /**
+     * Threads asking for the same resource at once share one load.
+     * @throws InterruptedException if interrupted.
+     * @throws ExecutionException if a load fails.
+     */
+    @Test
+    public void testSingleFlight()
+        throws InterruptedException, ExecutionException
+    {
+        final int threads = 8;
+        final GoldenCache cache = new GoldenCache(1L << 20);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<CompactTextSource>> gets = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                gets.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(OWN_CLASS, TestGoldenCache.class, CS);
+                }));
+            }
+            start.countDown();
+            final CompactTextSource first = gets.get(0).get();
+            for (Future<CompactTextSource> get : gets) {
+                assertSame(first, get.get());
+            }
+            assertEquals(1L, cache.getLoadCount());
+            assertEquals(threads,
+                cache.getHitCount() + cache.getMissCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A resource in a jar is loaded again once the jar is rebuilt, even by
+     * the class loader of a later run.
+     * @throws IOException if the jar cannot be written.
+     * @throws ClassNotFoundException if the jar's class cannot be loaded.
+     */
+    @Test
+    public void testRebuiltJar() throws IOException, ClassNotFoundException {
+        final GoldenCache cache = new GoldenCache(1L << 20);
+        final Path jar = Files.createTempFile("golden", ".jar");
+        try {
+            writeJar(jar, "a\nb\n");
+            try (URLClassLoader first = new URLClassLoader(
+                new URL[] { jar.toUri().toURL() }, null)) {
+                final Class<?> anchor = first.loadClass(Anchor.class.getName());
+                assertEquals(2L,
+                    cache.get("golden.txt", anchor, CS).getLineCount());
+                assertSame(cache.get("golden.txt", anchor, CS),
+                    cache.get("golden.txt", anchor, CS));
+            }
+            writeJar(jar, "a\nb\nc\n");
+            Files.setLastModifiedTime(jar, FileTime.fromMillis(
+                Files.getLastModifiedTime(jar).toMillis() + 2000L));
+            try (URLClassLoader second = new URLClassLoader(
+                new URL[] { jar.toUri().toURL() }, null)) {
+                final Class<?> anchor =
+                    second.loadClass(Anchor.class.getName());
+                assertEquals(3L,
+                    cache.get("golden.txt", anchor, CS).getLineCount());
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    /**
+     * A resource of short lines, whose length is within the budget but
+     * whose weight is not, is not cached and not loaded again.
+     * @throws IOException if the jar cannot be written.
+     * @throws ClassNotFoundException if the jar's class cannot be loaded.
+     */
+    @Test
+    public void testOverweight() throws IOException, ClassNotFoundException {
+        final StringBuilder golden = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            golden.append("a\n");
+        }
+        final GoldenCache cache = new GoldenCache(300L);
+        final Path jar = Files.createTempFile("golden", ".jar");
+        try {
+            writeJar(jar, golden.toString());
+            try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { jar.toUri().toURL() }, null)) {
+                final Class<?> anchor =
+                    loader.loadClass(Anchor.class.getName());
+                assertNull(cache.get("golden.txt", anchor, CS));
+                assertNull(cache.get("golden.txt", anchor, CS));
+                assertEquals(1L, cache.getLoadCount());
+                assertEquals(0, cache.size());
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    private static void writeJar(final Path jar, final String golden)
+        throws IOException
+    {
+        final String anchor = Anchor.class.getName().replace('.', '/')
+            + ".class";
+        try (JarOutputStream out =
+            new JarOutputStream(Files.newOutputStream(jar));
+            InputStream in = TestGoldenCache.class.getResourceAsStream(
+                "/" + anchor)) {
+            out.putNextEntry(new JarEntry(anchor));
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            out.putNextEntry(new JarEntry(
+                Anchor.class.getPackage().getName().replace('.', '/')
+                + "/golden.txt"));
+            out.write(golden.getBytes(CS));
+        }
+    }
+
+    /**
+     * A class with no dependencies, to load from a jar.
+     */
+    public static final class Anchor {
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.ResourceRecorder;
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+import com.wapitia.common.test.junit.WapitiaTestMain;
+
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Test class to test skipping the unchanged classes of a suite.
+ * @author Corey Morgan
+ *
+ */
+public class TestIncrementalSuite {
+
+    private static final String GOLDEN_FILE = "incremental-golden.txt";
+    private static final String GOLDEN_LINE = "golden";
+
+    /**
+     * A class that passed is skipped until a resource it read changes,
+     * while a failing class is always run.
+     * @throws IOException if the state file cannot be made.
+     */
+    @Test
+    public void testIncremental() throws IOException {
+        final Path state = Files.createTempFile("incremental", ".properties");
+        Files.delete(state);
+        try {
+            final Result first = WapitiaTestMain.runSuiteIncremental(
+                Incremental.class, line -> { }, state);
+            assertEquals(3, first.getRunCount());
+            assertEquals(1, first.getFailureCount());
+
+            final List<String> log = new ArrayList<>();
+            final Result second = WapitiaTestMain.runSuiteIncremental(
+                Incremental.class, log::add, state);
+            assertEquals(1, second.getRunCount());
+            assertEquals(2, second.getIgnoreCount());
+            assertEquals(1, second.getFailureCount());
+            assertEquals(Reading.class.getName()
+                + " unchanged since it passed, 2 tests not run", log.get(0));
+
+            final Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(state)) {
+                props.load(in);
+            }
+            final String resource = props.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(Reading.class.getName() + "|"))
+                .findFirst().get();
+            assertTrue(resource.endsWith("/TestIncrementalSuite.class"));
+            props.setProperty(resource, "changed");
+            try (OutputStream out = Files.newOutputStream(state)) {
+                props.store(out, null);
+            }
+            assertEquals(3, WapitiaTestMain.runSuiteIncremental(
+                Incremental.class, line -> { }, state).getRunCount());
+        } finally {
+            Files.deleteIfExists(state);
+        }
+    }
+
+    /**
+     * A class comparing against the digest sidecar of a golden file is
+     * run again once the golden file changes, though the lines of the file
+     * were never read when its sidecar matched.
+     * @throws Exception if the golden file cannot be written.
+     */
+    @Test
+    public void testDigestGoldenChanged() throws Exception {
+        final Path dir = Paths.get(TestIncrementalSuite.class.getResource(
+            "TestIncrementalSuite.class").toURI()).getParent();
+        final Path golden = dir.resolve(GOLDEN_FILE);
+        final Path sidecar = dir.resolve(GOLDEN_FILE + ".digest");
+        final Path state = Files.createTempFile("incremental", ".properties");
+        Files.delete(state);
+        try {
+            Files.write(golden, Arrays.asList(GOLDEN_LINE));
+            new DigestReading().compares();
+            assertTrue(Files.exists(sidecar));
+            assertTrue(WapitiaTestMain.runSuiteIncremental(
+                DigestIncremental.class, line -> { }, state).wasSuccessful());
+            assertEquals(1, WapitiaTestMain.runSuiteIncremental(
+                DigestIncremental.class, line -> { }, state).getIgnoreCount());
+
+            Files.write(golden, Arrays.asList(GOLDEN_LINE + " edited"));
+            final Result edited = WapitiaTestMain.runSuiteIncremental(
+                DigestIncremental.class, line -> { }, state);
+            assertEquals(1, edited.getRunCount());
+            assertEquals(1, edited.getFailureCount());
+        } finally {
+            Files.deleteIfExists(state);
+            Files.deleteIfExists(sidecar);
+            Files.deleteIfExists(golden);
+        }
+    }
+
+    /**
+     * A recording that ends leaves one under way that has recorded the
+     * same resources, so far none, still recording.
+     */
+    @Test
+    public void testNestedRecording() {
+        final Set<String> opened = ResourceRecorder.recording(() -> {
+            assertTrue(ResourceRecorder.recording(() -> { }).isEmpty());
+            TextSource.fromResource("TestIncrementalSuite.class",
+                TestIncrementalSuite.class).close();
+        });
+        assertEquals(1, opened.size());
+        assertTrue(opened.iterator().next().endsWith(
+            "/TestIncrementalSuite.class"));
+    }
+
+    /**
+     * A suite of classes to run incrementally.
+     */
+    @RunWith(Suite.class)
+    @Suite.SuiteClasses({ Reading.class, Failing.class })
+    public static class Incremental {
+    }
+
+    /**
+     * A suite of one class comparing against a digest sidecar.
+     */
+    @RunWith(Suite.class)
+    @Suite.SuiteClasses({ DigestReading.class })
+    public static class DigestIncremental {
+    }
+
+    /**
+     * A test comparing lines against the digest of a golden file.
+     */
+    public static class DigestReading {
+
+        /**
+         * Compares against the golden file.
+         */
+        @Test
+        public void compares() {
+            CompareTestData.assertEqualDigest(
+                "/com/wapitia/test/common/test/" + GOLDEN_FILE,
+                () -> Stream.of(GOLDEN_LINE));
+        }
+    }
+
+    /**
+     * Passing tests, one reading a resource.
+     */
+    public static class Reading {
+
+        /**
+         * Reads a resource.
+         */
+        @Test
+        public void reads() {
+            assertTrue(TextSource.fromResource("TestIncrementalSuite.class",
+                TestIncrementalSuite.class).toStream().count() > 0L);
+        }
+
+        /**
+         * Passes.
+         */
+        @Test
+        public void passes() {
+            assertEquals(1, 1);
+        }
+    }
+
+    /**
+     * A failing test.
+     */
+    public static class Failing {
+
+        /**
+         * Fails.
+         */
+        @Test
+        public void fails() {
+            assertEquals("wrong", 1, 2);
+        }
+    }
+}
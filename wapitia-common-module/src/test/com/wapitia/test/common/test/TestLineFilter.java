@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.LineFilter;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Test class to test the compiled LineFilter.
+ * @author Corey Morgan
+ *
+ */
+public class TestLineFilter {
+
+    private static final List<String> LINES = Arrays.asList(
+        " \t # Just any old stuff", "# More anything", "#",
+        "Shou#n't work", "", "   ", "\u000B\f#x", "#\tnote",
+        "# NEL " + (char) 0x85, "# PS " + (char) 0x2029,
+        (char) 0xA0 + "# no-break space", "x # not first",
+        "// slashes", "  //indented", "/ single");
+
+    /**
+     * Hash comment filtering agrees with the comment regular expression.
+     */
+    @Test
+    public void testHashComments() {
+        final Pattern commentPattern =
+            Pattern.compile(CompareTestData.HASH_COMMENT_REGEX);
+        final LineFilter filter = LineFilter.keepAll().dropHashComments();
+        for (String line : LINES) {
+            assertEquals(line, !commentPattern.matcher(line).matches(),
+                filter.test(line));
+            assertEquals(line, filter.test(line),
+                CompareTestData.noHashComments().test(line));
+        }
+    }
+
+    /**
+     * Several kinds of line are dropped by one filter.
+     */
+    @Test
+    public void testChained() {
+        final LineFilter filter = LineFilter.keepAll()
+            .dropHashComments()
+            .dropBlankLines()
+            .dropPrefix("//");
+        assertFalse(filter.test("# comment"));
+        assertFalse(filter.test(""));
+        assertFalse(filter.test(" \t "));
+        assertFalse(filter.test("// slashes"));
+        assertFalse(filter.accepts(new StringBuilder("  //indented")));
+        assertTrue(filter.test("/ single"));
+        assertTrue(filter.test("x # not first"));
+        assertTrue(LineFilter.keepAll().test(""));
+        assertTrue(LineFilter.keepAll().dropHashComments().test("   "));
+    }
+
+    /**
+     * Trailing whitespace can be ignored when comparing lines.
+     */
+    @Test
+    public void testTrailingWhitespace() {
+        assertEquals(0,
+            CompareTestData.compareIgnoringTrailingWhitespace("ab \t", "ab"));
+        assertTrue(CompareTestData
+            .compareIgnoringTrailingWhitespace("ab c", "ab") > 0);
+        assertTrue(CompareTestData
+            .compareIgnoringTrailingWhitespace(" ", "a") < 0);
+    }
+}
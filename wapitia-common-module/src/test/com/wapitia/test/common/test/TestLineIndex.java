@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.wapitia.common.test.LineIndex;
+import com.wapitia.common.test.TextSource;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test class to test the LineIndex and ranges of lines read through it.
+ * @author Corey Morgan
+ *
+ */
+public class TestLineIndex {
+
+    /** Offset of the count of offsets in a sidecar, after its header. */
+    private static final int COUNT_AT = 36;
+
+    /**
+     * Every range of lines matches the same lines read from the start.
+     * @throws IOException on temp file failure.
+     */
+    @Test
+    public void testRanges() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= 5000; ++i) {
+            text.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        text.append("last, unterminated");
+        final Path path = TextFixtures.tempFile(text.toString());
+        try {
+            final List<String> all = TextFixtures.readerLines(text.toString());
+            final long[][] ranges = {
+                { 1, 10 }, { 1, 0 }, { 1024, 1 }, { 1025, 3000 },
+                { 4990, 100 }, { 5001, 1 }, { 5002, 10 }, { 2047, 2 },
+                { 10, Long.MAX_VALUE }, { 1, Long.MAX_VALUE },
+                { 5000, Long.MAX_VALUE - 4998 },
+            };
+            for (long[] range : ranges) {
+                final int from = (int) Math.min(range[0] - 1, all.size());
+                final int to = from
+                    + (int) Math.min(range[1], all.size() - from);
+                assertEquals(range[0] + "+" + range[1], all.subList(from, to),
+                    TextSource.fromPath(path, StandardCharsets.UTF_8,
+                        range[0], range[1]).toStream()
+                        .collect(Collectors.toList()));
+            }
+        } finally {
+            Files.deleteIfExists(LineIndex.sidecarOf(path));
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * The sidecar reads back the same index, and is rebuilt once the file
+     * changes.
+     * @throws IOException on temp file failure.
+     */
+    @Test
+    public void testSidecar() throws IOException {
+        final Path path = TextFixtures.tempFile("a\nb\nc\nd\ne\n");
+        final Path sidecar = LineIndex.sidecarOf(path);
+        try {
+            final LineIndex built = LineIndex.forPath(path, 2);
+            assertTrue(Files.exists(sidecar));
+            final LineIndex read = LineIndex.read(sidecar);
+            assertEquals(5L, read.getLineCount());
+            assertEquals(2, read.getInterval());
+            for (long line = 0; line < 6; ++line) {
+                assertEquals(built.offsetAtOrBefore(line),
+                    read.offsetAtOrBefore(line));
+            }
+            assertEquals(4L, read.offsetAtOrBefore(3));
+            assertEquals(8L, read.offsetAtOrAfter(3));
+            assertTrue(read.describes(path));
+
+            Files.write(path, "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(path, FileTime.fromMillis(0L));
+            assertEquals(3L, LineIndex.forPath(path, 2).getLineCount());
+            assertEquals(3L, LineIndex.read(sidecar).getLineCount());
+
+            for (int count : new int[] { -1, Integer.MAX_VALUE }) {
+                final byte[] corrupt = Files.readAllBytes(sidecar);
+                ByteBuffer.wrap(corrupt).putInt(COUNT_AT, count);
+                Files.write(sidecar, corrupt);
+                try {
+                    LineIndex.read(sidecar);
+                    fail("read a count of " + count);
+                } catch (IllegalArgumentException ex) {
+                    assertTrue(ex.getMessage().endsWith("corrupt line index"));
+                }
+                assertEquals(3L, LineIndex.forPath(path, 2).getLineCount());
+                assertEquals(3L, LineIndex.read(sidecar).getLineCount());
+            }
+        } finally {
+            Files.deleteIfExists(sidecar);
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.wapitia.common.test.ByteLine;
+import com.wapitia.common.test.LineNormalizer;
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Test class to test masking volatile tokens of lines.
+ * @author Corey Morgan
+ *
+ */
+public class TestLineNormalizer {
+
+    private static final LineNormalizer ALL = LineNormalizer.identity()
+        .maskTimestamps()
+        .maskUuids()
+        .maskHexIds(8)
+        .maskAfter("pid=", "<PID>");
+
+    /**
+     * Timestamps of each supported form are masked whole.
+     */
+    @Test
+    public void testTimestamps() {
+        final LineNormalizer ts = LineNormalizer.identity().maskTimestamps();
+        assertEquals("at <TIMESTAMP> ok",
+            ts.apply("at 2016-03-04T05:06:07.123456Z ok"));
+        assertEquals("<TIMESTAMP>|<TIMESTAMP>|<TIMESTAMP>",
+            ts.apply("2016-03-04 05:06|2016-03-04T05:06:07+01:00"
+                + "|2016-03-04T05:06:07,5-0800"));
+        assertEquals("on <TIMESTAMP> at noon",
+            ts.apply("on 2016-03-04 at noon"));
+        assertEquals("v12016-03-04 2016-03-045",
+            ts.apply("v12016-03-04 2016-03-045"));
+    }
+
+    /**
+     * UUIDs and hex ids are masked, but not decimal numbers or words.
+     */
+    @Test
+    public void testIds() {
+        assertEquals("id <UUID>, hash <HEX>, at <HEX>",
+            ALL.apply("id 123e4567-e89b-12d3-a456-426614174000,"
+                + " hash 9fceb02d0ae598e95dc970b74767f19372d61af8,"
+                + " at 0x7FFE1234"));
+        assertEquals("12345678 deadbeefcafe 0x12 g9fceb02d0a",
+            ALL.apply("12345678 deadbeefcafe 0x12 g9fceb02d0a"));
+        assertEquals("pid=<PID> pid= user=x",
+            ALL.apply("pid=4711 pid= user=x"));
+    }
+
+    /**
+     * A line with nothing to mask is returned as it is, and others are
+     * written into the buffer given.
+     */
+    @Test
+    public void testReuse() {
+        final String plain = "nothing volatile here";
+        assertSame(plain, ALL.apply(plain));
+        final StringBuilder buf = new StringBuilder("left over");
+        assertSame(plain, ALL.normalize(plain, buf));
+        assertSame(buf, ALL.normalize("pid=1", buf));
+        assertEquals("pid=<PID>", buf.toString());
+        final ByteLine line = TextSource.fromBytes(
+            "pid=2 at 2016-03-04".getBytes(StandardCharsets.UTF_8),
+            StandardCharsets.UTF_8).toByteLineStream().findFirst().get();
+        assertEquals("pid=<PID> at <TIMESTAMP>",
+            ALL.normalize(line, buf).toString());
+    }
+
+    /**
+     * Lines differing only in volatile tokens compare equal, and others
+     * fail showing the normalized lines.
+     */
+    @Test
+    public void testAssertEqualNormalized() {
+        CompareTestData.assertEqualNormalized(
+            Stream.of("# run log", "start 2016-03-04T05:06:07Z pid=12",
+                "done"),
+            Stream.of("start 2017-11-12T13:14:15Z pid=345", "done"),
+            ALL, CompareTestData.noHashComments(), true);
+        String message = null;
+        try {
+            CompareTestData.assertEqualNormalized(
+                Stream.of("start 2016-03-04T05:06:07Z", "done"),
+                Stream.of("start 2017-11-12T13:14:15Z", "failed"),
+                ALL, CompareTestData.noFilter, true);
+        } catch (AssertionError err) {
+            message = err.getMessage();
+        }
+        assertEquals("Item mismatch at line 2, expected \"done\","
+            + " but got \"failed\"", message);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+import com.wapitia.common.test.junit.LineSubscriber;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test class to test comparing lines published asynchronously.
+ * @author Corey Morgan
+ *
+ */
+public class TestLineSubscriber {
+
+    private static final int LINES = 100000;
+
+    /**
+     * Published lines matching the expected ones pass, and are produced no
+     * faster than requested.
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testMatch() throws InterruptedException {
+        final Publisher publisher = new Publisher(LINES, -1, true);
+        CompareTestData.assertEqual(expected(LINES), publisher::subscribe,
+            CompareTestData.noHashComments(), true, 10, TimeUnit.SECONDS);
+        assertEquals(LINES, publisher.produced.get());
+        assertTrue(publisher.maxAhead <= 2 * LineSubscriber.DEFAULT_DEMAND);
+    }
+
+    /**
+     * The subscription is cancelled at the first mismatch, so the publisher
+     * stops soon after it.
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testCancelOnMismatch() throws InterruptedException {
+        final Publisher publisher = new Publisher(LINES, 1000, true);
+        assertEquals("Item mismatch at line 1001, expected \"line 1000\","
+            + " but got \"wrong\"", failure(publisher, 10, TimeUnit.SECONDS));
+        assertTrue(publisher.cancelled.get());
+        assertTrue(publisher.produced.get()
+            <= 1001 + 2 * LineSubscriber.DEFAULT_DEMAND);
+    }
+
+    /**
+     * A publisher that does not complete in time fails the comparison and
+     * is cancelled.
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testTimeout() throws InterruptedException {
+        final Publisher publisher = new Publisher(10, -1, false);
+        assertEquals("Timed out after 200 milliseconds at line 10,"
+            + " expecting more lines",
+            failure(publisher, 200, TimeUnit.MILLISECONDS));
+        assertTrue(publisher.cancelled.get());
+    }
+
+    private static String failure(
+        final Publisher publisher,
+        final long timeout,
+        final TimeUnit unit) throws InterruptedException
+    {
+        try {
+            CompareTestData.assertEqual(expected(LINES), publisher::subscribe,
+                CompareTestData.noHashComments(), true, timeout, unit);
+        } catch (AssertionError err) {
+            return err.getMessage();
+        }
+        return null;
+    }
+
+    private static TextSource expected(final int count) {
+        final StringBuilder text = new StringBuilder("# expected lines\n");
+        for (int i = 0; i < count; ++i) {
+            text.append("line ").append(i).append('\n');
+        }
+        return TextSource.fromBytes(
+            text.toString().getBytes(StandardCharsets.UTF_8),
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Publishes numbered lines on its own thread as they are requested,
+     * with one wrong line if asked.
+     */
+    private static final class Publisher {
+
+        private final int count;
+        private final int wrongAt;
+        private final boolean complete;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicLong produced = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile long maxAhead;
+
+        Publisher(final int count, final int wrongAt, final boolean complete) {
+            this.count = count;
+            this.wrongAt = wrongAt;
+            this.complete = complete;
+        }
+
+        void subscribe(final LineSubscriber subscriber) {
+            subscriber.onSubscribe(new LineSubscriber.Subscription() {
+                @Override
+                public void request(final long more) {
+                    maxAhead = Math.max(maxAhead, requested.addAndGet(more)
+                        - produced.get());
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(true);
+                }
+            });
+            final Thread thread = new Thread(() -> {
+                while (!cancelled.get() && produced.get() < count) {
+                    if (produced.get() < requested.get()) {
+                        final long next = produced.getAndIncrement();
+                        subscriber.onNext(
+                            next == wrongAt ? "wrong" : "line " + next);
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                if (!cancelled.get() && complete) {
+                    subscriber.onComplete();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.wapitia.common.test.MappedTextSource;
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test class to test the memory-mapped MappedTextSource.
+ * @author Corey Morgan
+ *
+ */
+public class TestMappedTextSource {
+
+    private static final String TEXT =
+        "# golden\nalpha\r\nbeta\rgamma\n\ndelta epsilon\nzeta";
+
+    /**
+     * The mapped lines match those of a BufferedReader.
+     * @throws IOException on temp file failure.
+     */
+    @Test
+    public void testLinesMatchReader() throws IOException {
+        final Path path = TextFixtures.tempFile(TEXT);
+        try {
+            final List<String> mapped = TextSource.fromPath(path).toStream()
+                .collect(Collectors.toList());
+            assertEquals(TextFixtures.readerLines(TEXT), mapped);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Small mapped regions cut only at line ends, including between the
+     * two bytes of a CR LF.
+     * @throws IOException on temp file failure.
+     */
+    @Test
+    public void testSmallRegions() throws IOException {
+        final Path path = TextFixtures.tempFile(TEXT);
+        try {
+            for (int size = 14; size < 20; ++size) {
+                final MappedTextSource src = new MappedTextSource(
+                    path, StandardCharsets.UTF_8, size) { };
+                final List<String> mapped = src.toStream()
+                    .collect(Collectors.toList());
+                assertEquals(TextFixtures.readerLines(TEXT), mapped);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * The views work with the generic comparison and can be streamed
+     * again.
+     * @throws IOException on temp file failure.
+     */
+    @Test
+    public void testCompareViews() throws IOException {
+        final Path path = TextFixtures.tempFile(TEXT);
+        try {
+            final MappedTextSource src = TextSource.fromPath(path);
+            final Stream<CharSequence> actuals =
+                TextFixtures.readerLines(TEXT).stream().map(s -> s);
+            CompareTestData.assertEqual(src.toCharSequenceStream(), actuals,
+                CompareTestData::compareContent, CompareTestData.noFilter,
+                true);
+            assertEquals(7L, src.toCharSequenceStream().count());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * A parallel stream over many lines, in one or several mapped regions,
+     * splits and gives the lines in their original order.
+     * @throws IOException on temp file failure.
+     */
+    @Test
+    public void testParallelSplits() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            text.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        final Path path = TextFixtures.tempFile(text.toString());
+        try {
+            final List<String> expected =
+                TextFixtures.readerLines(text.toString());
+            for (int size : new int[] { 1 << 16, Integer.MAX_VALUE }) {
+                final MappedTextSource src = new MappedTextSource(
+                    path, StandardCharsets.UTF_8, size) { };
+                assertNotNull(src.toCharSequenceStream().spliterator()
+                    .trySplit());
+                final List<String> mapped = src.toStream().parallel()
+                    .collect(Collectors.toList());
+                assertEquals(expected, mapped);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
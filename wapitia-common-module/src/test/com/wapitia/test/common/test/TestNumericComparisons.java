@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.DecimalParser;
+import com.wapitia.common.test.TextSource;
+import com.wapitia.common.test.junit.CompareTestData;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Test class to test comparing and parsing series of primitive numbers.
+ * @author Corey Morgan
+ *
+ */
+public class TestNumericComparisons {
+
+    /**
+     * Integer series compare exactly, and report mismatches as lines do.
+     */
+    @Test
+    public void testIntsAndLongs() {
+        CompareTestData.assertEqual(IntStream.range(0, 10000),
+            IntStream.range(0, 10000), true);
+        CompareTestData.assertEqual(LongStream.of(Long.MIN_VALUE, 0L),
+            LongStream.of(Long.MIN_VALUE, 0L, 1L), false);
+        assertEquals("Item mismatch at line 4, expected \"3\", but got \"9\"",
+            failure(() -> CompareTestData.assertEqual(IntStream.range(0, 5),
+                IntStream.of(0, 1, 2, 9, 4), true)));
+        assertEquals("Came up short at line 3, expected \"2\"",
+            failure(() -> CompareTestData.assertEqual(LongStream.range(0, 5),
+                LongStream.range(0, 2), true)));
+        assertEquals("Expected end of actual data at line 2, but got \"2\"",
+            failure(() -> CompareTestData.assertEqual(LongStream.range(0, 2),
+                LongStream.range(0, 5), true)));
+    }
+
+    /**
+     * Doubles match within either tolerance, and NaN and infinities only
+     * themselves.
+     */
+    @Test
+    public void testDoubleTolerance() {
+        CompareTestData.assertEqual(DoubleStream.of(1.0, 1000.0, Double.NaN,
+            Double.POSITIVE_INFINITY, 0.0), DoubleStream.of(1.0005, 1000.9,
+                Double.NaN, Double.POSITIVE_INFINITY, -0.0),
+            1e-3, 1e-3, true);
+        assertEquals("Item mismatch at line 1, expected \"1.0\", but got"
+            + " \"1.002\"", failure(() -> CompareTestData.assertEqual(
+                DoubleStream.of(1.0), DoubleStream.of(1.002), 1e-3, 1e-3,
+                true)));
+        assertEquals("Item mismatch at line 1, expected \"Infinity\", but"
+            + " got \"1.0\"", failure(() -> CompareTestData.assertEqual(
+                DoubleStream.of(Double.POSITIVE_INFINITY),
+                DoubleStream.of(1.0), 0.0, 1.0, true)));
+    }
+
+    /**
+     * Numbers read from text, separated by whitespace and commas with
+     * comment lines skipped, are the numbers written.
+     */
+    @Test
+    public void testParse() {
+        final String text = "# header\n1, 2,3\r\n  # indented comment\r"
+            + "-4\t+5\n\n" + Long.MIN_VALUE + " " + Long.MAX_VALUE + "\n";
+        assertArrayEquals(new long[] {
+            1, 2, 3, -4, 5, Long.MIN_VALUE, Long.MAX_VALUE,
+        }, TextSource.fromBytes(text.getBytes(StandardCharsets.US_ASCII),
+            StandardCharsets.US_ASCII).toLongStream().toArray());
+    }
+
+    /**
+     * Doubles read from text are exactly those
+     * {@link Double#parseDouble(String)} reads, whether or not they take
+     * the fast path, as are those the fast path converts by itself.
+     */
+    @Test
+    public void testParseDoubles() {
+        final Random random = new Random(17L);
+        final double[] written = new double[20000];
+        final StringBuilder text = new StringBuilder();
+        int exact = 0;
+        for (int i = 0; i < written.length; ++i) {
+            final String number;
+            switch (i % 4) {
+                case 0:
+                    number = Double.toString(random.nextGaussian() * 1e3);
+                    break;
+                case 1:
+                    number = String.format(Locale.ROOT, "%.6f",
+                        random.nextDouble());
+                    break;
+                case 2:
+                    number = String.format(Locale.ROOT, "%.17e",
+                        random.nextDouble() * Math.pow(10, i % 600 - 300));
+                    break;
+                default:
+                    number = Integer.toString(random.nextInt()) + "e-"
+                        + i % 30;
+                    break;
+            }
+            written[i] = Double.parseDouble(number);
+            text.append(number).append(i % 5 == 0 ? "\n" : " ");
+            final double parsed = DecimalParser.parseExact(number);
+            if (!Double.isNaN(parsed)) {
+                assertEquals(number, Double.doubleToLongBits(written[i]),
+                    Double.doubleToLongBits(parsed));
+                ++exact;
+            }
+        }
+        assertTrue(exact > written.length / 2);
+        text.append("NaN -Infinity -0.0 .5 5.\n");
+        final double[] read = TextSource.fromBytes(
+            text.toString().getBytes(StandardCharsets.US_ASCII),
+            StandardCharsets.US_ASCII).toDoubleStream().toArray();
+        assertEquals(written.length + 5, read.length);
+        for (int i = 0; i < written.length; ++i) {
+            assertEquals(Double.doubleToLongBits(written[i]),
+                Double.doubleToLongBits(read[i]));
+        }
+        assertArrayEquals(new double[] {
+            Double.NaN, Double.NEGATIVE_INFINITY, -0.0, 0.5, 5.0,
+        }, Arrays.copyOfRange(read, written.length, read.length), 0.0);
+    }
+
+    /**
+     * A token that is not a number fails, naming its line.
+     */
+    @Test
+    public void testParseFailure() {
+        String message = null;
+        try {
+            TextSource.fromBytes("1\n2 3\n4 x5\n".getBytes(
+                StandardCharsets.US_ASCII), StandardCharsets.US_ASCII)
+                .toIntStream().sum();
+        } catch (NumberFormatException ex) {
+            message = ex.getMessage();
+        }
+        assertEquals("Not an int at line 3: \"x5\"", message);
+    }
+
+    private static String failure(final Runnable comparison) {
+        try {
+            comparison.run();
+        } catch (AssertionError err) {
+            return err.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.wapitia.common.test.TextSource;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Test class to test the ReadAheadTextSource decorator.
+ * @author Corey Morgan
+ *
+ */
+public class TestReadAheadTextSource {
+
+    /**
+     * Lines read ahead arrive in order, across batch boundaries.
+     */
+    @Test
+    public void testLinesInOrder() {
+        final List<String> lines = IntStream.range(0, 1000)
+            .mapToObj(Integer::toString)
+            .collect(Collectors.toList());
+        for (int batchSize : new int[] { 1, 7, 1000, 4096 }) {
+            final TextSource source =
+                TextSource.readAhead(lines::stream, batchSize, 2);
+            assertEquals(lines,
+                source.toStream().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Closing the stream early stops reading and closes the decorated
+     * source's stream.
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testCloseEarly() throws InterruptedException {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final TextSource endless = () -> Stream.iterate(0, num -> num + 1)
+            .map(Object::toString)
+            .onClose(closed::countDown);
+        try (Stream<String> stream =
+                TextSource.readAhead(endless, 16, 2).toStream()) {
+            assertEquals("0,1,2", stream.limit(3)
+                .collect(Collectors.joining(",")));
+        }
+        assertTrue(closed.await(10L, TimeUnit.SECONDS));
+    }
+
+    /**
+     * An exception reading the decorated source reaches the consumer after
+     * the lines read before it.
+     */
+    @Test
+    public void testFailurePassedOn() {
+        final UncheckedIOException thrown =
+            new UncheckedIOException(new IOException("disk gone"));
+        final TextSource failing = () -> IntStream.range(0, 10)
+            .mapToObj(num -> {
+                if (num == 5) {
+                    throw thrown;
+                }
+                return Integer.toString(num);
+            });
+        final StringBuilder seen = new StringBuilder();
+        try {
+            TextSource.readAhead(failing, 2, 1).toStream()
+                .forEach(seen::append);
+            fail("expected failure");
+        } catch (UncheckedIOException ex) {
+            assertSame(thrown, ex);
+        }
+        assertEquals("01234", seen.toString());
+    }
+}
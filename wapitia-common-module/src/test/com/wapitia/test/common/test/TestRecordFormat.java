@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.wapitia.common.test.junit.CompareTestData;
+import com.wapitia.common.test.junit.RecordFormat;
+
+import org.junit.Test;
+
+import java.util.stream.Stream;
+
+/**
+ * Test class to test comparing delimited records field by field.
+ * @author Corey Morgan
+ *
+ */
+public class TestRecordFormat {
+
+    private static final RecordFormat FORMAT = RecordFormat.csv()
+        .ignore(1)
+        .numeric(3, 1e-6, 0.0);
+
+    /**
+     * Ignored columns and numbers within tolerance match, and quoted
+     * fields may hold the delimiter.
+     */
+    @Test
+    public void testMatch() {
+        assertNull(failure(FORMAT,
+            "# id,name,value", "7,\"Smith, J\",1.5", "8,x,2e3", "9,y,n/a",
+            "--",
+            "17,\"Smith, J\",1.5000001", "18,x,2000", "19,y,n/a"));
+        assertNull(failure(RecordFormat.tsv().numeric(2, 0.0, 1e-3),
+            "a\t1000\t", "--", "a\t1000.5\t"));
+    }
+
+    /**
+     * Every differing field of the first mismatched record is reported.
+     */
+    @Test
+    public void testFieldMismatch() {
+        assertEquals(String.format("Field mismatch at line 2%n"
+            + "  column 2 expected \"b\"\"q\", but got \"c\"%n"
+            + "  column 3 expected \"1.5\", but got \"1.6\""),
+            failure(FORMAT, "1,a,1", "2,\"b\"\"q\",1.5", "--",
+                "1,a,1.0", "2,c,1.6"));
+        assertEquals("Field count mismatch at line 1, expected 3 fields,"
+            + " but got 4", failure(FORMAT, "1,a,1", "--", "1,a,1,"));
+    }
+
+    /**
+     * Running out of records fails as whole-line comparisons do.
+     */
+    @Test
+    public void testLength() {
+        assertEquals("Came up short at line 2, expected \"2,b,2\"",
+            failure(FORMAT, "1,a,1", "2,b,2", "--", "1,a,1"));
+        assertEquals("Expected end of actual data at line 1,"
+            + " but got \"2,b,2\"",
+            failure(FORMAT, "1,a,1", "--", "1,a,1", "2,b,2"));
+    }
+
+    /**
+     * Compares the lines before the "--" line with those after it.
+     */
+    private static String failure(
+        final RecordFormat format,
+        final String... lines)
+    {
+        int split = 0;
+        while (!"--".equals(lines[split])) {
+            ++split;
+        }
+        try {
+            CompareTestData.assertEqualRecords(
+                Stream.of(lines).limit(split),
+                Stream.of(lines).skip(split + 1L),
+                format, CompareTestData.noHashComments(), true);
+        } catch (AssertionError err) {
+            return err.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.GoldenCache;
+import com.wapitia.common.test.junit.WapitiaTestMain;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class to test running suites on request in a resident JVM.
+ * @author Corey Morgan
+ *
+ */
+public class TestResidentRunner {
+
+    /**
+     * Suites run on request with their classes loaded afresh, and the
+     * golden data they read stays cached between runs.
+     * @throws IOException if the server socket cannot be bound.
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testResident() throws IOException, InterruptedException {
+        final ServerSocket server =
+            new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        final int port = server.getLocalPort();
+        final URL testClasses = TestResidentRunner.class
+            .getProtectionDomain().getCodeSource().getLocation();
+        final List<String> served =
+            Collections.synchronizedList(new ArrayList<>());
+        final Thread thread = new Thread(() -> WapitiaTestMain.runResident(
+            server, Collections.singletonList(testClasses), served::add));
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            final List<String> log = new ArrayList<>();
+            assertFalse(WapitiaTestMain.runRemote(
+                port, Resident.class.getName(), log::add));
+            assertTrue(log.contains("hello resident"));
+            assertTrue(log.stream().anyMatch(line ->
+                line.startsWith("fails(" + Failing.class.getName() + ")")));
+            assertEquals("Resident fail", log.get(log.size() - 1));
+            final long loads = GoldenCache.shared().getLoadCount();
+
+            assertTrue(WapitiaTestMain.runRemote(
+                port, Fresh.class.getName(), line -> { }));
+            assertEquals(loads, GoldenCache.shared().getLoadCount());
+            assertFalse(WapitiaTestMain.runRemote(
+                port, "com.wapitia.NoSuchSuite", line -> { }));
+        } finally {
+            WapitiaTestMain.stopResident(port);
+            thread.join(10000L);
+        }
+        assertFalse(thread.isAlive());
+        assertTrue(server.isClosed());
+        assertTrue(served.contains("Resident ran 3, failed 1"));
+    }
+
+    /**
+     * A suite run on request.
+     */
+    @RunWith(Suite.class)
+    @Suite.SuiteClasses({ Fresh.class, Failing.class })
+    public static class Resident {
+    }
+
+    /**
+     * Tests loaded afresh, reading a cached resource.
+     */
+    public static class Fresh {
+
+        /**
+         * Is loaded by a class loader of its own, and prints.
+         */
+        @Test
+        public void loadedAfresh() {
+            assertNotSame(ClassLoader.getSystemClassLoader(),
+                getClass().getClassLoader());
+            System.out.println("hello resident");
+        }
+
+        /**
+         * Reads a resource through the shared cache.
+         */
+        @Test
+        public void readsCached() {
+            assertNotNull(GoldenCache.shared().get(
+                "TestResidentRunner.class", getClass(),
+                StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * A failing test.
+     */
+    public static class Failing {
+
+        /**
+         * Fails.
+         */
+        @Test
+        public void fails() {
+            assertEquals("wrong", 1, 2);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.junit.TestTimings;
+import com.wapitia.common.test.junit.WapitiaTestMain;
+
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class to test running a suite's classes in child JVMs.
+ * @author Corey Morgan
+ *
+ */
+public class TestShardedSuite {
+
+    /**
+     * The classes run in child JVMs, their output is logged as it comes,
+     * their failures are merged, and their timings are written.
+     * @throws IOException if the timings file cannot be made.
+     */
+    @Test
+    public void testSharded() throws IOException {
+        final Path timings = Files.createTempFile("timings", ".xml");
+        Files.delete(timings);
+        try {
+            final List<String> log = Collections.synchronizedList(
+                new ArrayList<>());
+            final Result result = WapitiaTestMain.runSuiteSharded(
+                Sharded.class, log::add, 2, Collections.<String>emptyList(),
+                timings);
+            assertEquals(3, result.getRunCount());
+            assertEquals(1, result.getFailureCount());
+            assertEquals("fails(" + Failing.class.getName() + ")",
+                result.getFailures().get(0).getTestHeader());
+            assertTrue(result.getFailures().get(0).getTrace()
+                .contains("AssertionError: wrong"));
+            assertTrue(log.stream().anyMatch(line ->
+                line.matches("\\[shard \\d\\] hello from a child")));
+            assertEquals("Sharded fail", log.get(log.size() - 1));
+            assertEquals(3,
+                TestTimings.read(timings).getMethods().size());
+            assertEquals(3, WapitiaTestMain.runSuiteSharded(Sharded.class,
+                line -> { }, 3, Collections.<String>emptyList(), timings)
+                .getRunCount());
+        } finally {
+            Files.deleteIfExists(timings);
+        }
+    }
+
+    /**
+     * A suite of classes to run sharded.
+     */
+    @RunWith(Suite.class)
+    @Suite.SuiteClasses({ Passing.class, Failing.class })
+    public static class Sharded {
+    }
+
+    /**
+     * Passing tests, printing a line.
+     */
+    public static class Passing {
+
+        /**
+         * Prints and passes.
+         */
+        @Test
+        public void prints() {
+            System.out.println("hello from a child");
+        }
+
+        /**
+         * Passes.
+         */
+        @Test
+        public void passes() {
+            assertEquals(1, 1);
+        }
+    }
+
+    /**
+     * A failing test.
+     */
+    public static class Failing {
+
+        /**
+         * Fails.
+         */
+        @Test
+        public void fails() {
+            assertEquals("wrong", 1, 2);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.TextSource;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test class to test the StreamTextSource and the closing of sources.
+ * @author Corey Morgan
+ *
+ */
+public class TestStreamTextSource {
+
+    /**
+     * The lines match those of a BufferedReader, whatever the line ends,
+     * including line ends and characters split across read buffers.
+     */
+    @Test
+    public void testLinesMatchReader() {
+        final String accent = String.valueOf((char) 0xE9);
+        final String longLine = String.join("",
+            Collections.nCopies(3000, accent + "t" + accent + " "));
+        final String[] texts = {
+            "", "\n", "\r\n", "\n\n", "a", "a\r", "a\r\n", "\r\rb\r\n\nc",
+            "# golden\nalpha\r\nbeta\rgamma\n\ndelta epsilon\nzeta",
+            longLine + "\r\n" + longLine + "\r" + longLine,
+            pad(8191) + "\r\nx", pad(8190) + accent + accent + "\nx",
+        };
+        for (String text : texts) {
+            final List<String> expected =
+                new BufferedReader(new StringReader(text)).lines()
+                    .collect(Collectors.toList());
+            try (Stream<String> lines = TextSource.fromStream(
+                new ByteArrayInputStream(
+                    text.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8).toStream()) {
+                assertEquals(expected, lines.collect(Collectors.toList()));
+            }
+        }
+    }
+
+    /**
+     * The input is closed when its lines are read to the end, or when the
+     * stream is closed before then.
+     */
+    @Test
+    public void testClosed() {
+        final Closing all = new Closing("a\nb\nc\n");
+        assertEquals(Arrays.asList("a", "b", "c"),
+            TextSource.fromStream(all, StandardCharsets.UTF_8).toStream()
+                .collect(Collectors.toList()));
+        assertTrue(all.closed);
+
+        final Closing first = new Closing("a\nb\nc\n");
+        try (Stream<String> lines = TextSource.fromStream(
+            first, StandardCharsets.UTF_8).toStream()) {
+            assertEquals("a", lines.findFirst().get());
+            assertFalse(first.closed);
+        }
+        assertTrue(first.closed);
+
+        final Closing readAhead = new Closing("a\nb\n");
+        try (TextSource source = TextSource.readAhead(
+            TextSource.fromStream(readAhead, StandardCharsets.UTF_8))) {
+            assertEquals(2L, source.toStream().count());
+        }
+        assertTrue(readAhead.closed);
+    }
+
+    private static String pad(final int length) {
+        return String.join("", Collections.nCopies(length, "x"));
+    }
+
+    /**
+     * An input stream recording whether it is closed.
+     */
+    private static final class Closing extends FilterInputStream {
+
+        private boolean closed;
+
+        Closing(final String text) {
+            super(new ByteArrayInputStream(
+                text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.test.common.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.common.test.junit.TestTimings;
+import com.wapitia.common.test.junit.TestTimings.MethodTiming;
+import com.wapitia.common.test.junit.TestTimings.Outcome;
+import com.wapitia.common.test.junit.WapitiaTestMain;
+
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class to test the suite runners of WapitiaTestMain, running a small
+ * fixture suite with one failing test.
+ * @author Corey Morgan
+ *
+ */
+public class TestWapitiaTestMain {
+
+    /**
+     * Fixture test class whose tests pass.
+     */
+    public static class PassingFixture {
+
+        /**
+         * Passes.
+         */
+        @Test
+        public void pass1() {
+            assertTrue(true);
+        }
+
+        /**
+         * Passes after a pause.
+         * @throws InterruptedException if interrupted.
+         */
+        @Test
+        public void pass2() throws InterruptedException {
+            Thread.sleep(20L);
+        }
+    }
+
+    /**
+     * Fixture test class with a failing test.
+     */
+    public static class FailingFixture {
+
+        /**
+         * Passes.
+         */
+        @Test
+        public void pass3() {
+            assertTrue(true);
+        }
+
+        /**
+         * Fails.
+         */
+        @Test
+        public void fail1() {
+            assertEquals("expected", "actual");
+        }
+    }
+
+    /**
+     * Fixture suite.
+     */
+    @RunWith(Suite.class)
+    @Suite.SuiteClasses({
+        FailingFixture.class,
+        PassingFixture.class,
+        })
+    public static class FixtureSuite {
+    }
+
+    /**
+     * Concurrent runs by class or by method log just what a sequential run
+     * logs.
+     */
+    @Test
+    public void testConcurrentLikeSequential() {
+        final List<String> sequential = new ArrayList<>();
+        WapitiaTestMain.runSuite(new String[0], FixtureSuite.class,
+            sequential::add);
+        assertEquals(2, sequential.size());
+        for (boolean byMethod : new boolean[] { false, true }) {
+            final List<String> concurrent = new ArrayList<>();
+            final Result result = WapitiaTestMain.runSuiteConcurrently(
+                FixtureSuite.class, concurrent::add, 4, byMethod);
+            assertEquals(sequential, concurrent);
+            assertEquals(4, result.getRunCount());
+            assertEquals(1, result.getFailureCount());
+        }
+    }
+
+    /**
+     * A timed run records each test method and class, and writes timings
+     * that read back the same.
+     * @throws IOException on failing to create or delete a temp file.
+     */
+    @Test
+    public void testTimed() throws IOException {
+        final Path file = Files.createTempFile("timings", ".xml");
+        try {
+            final List<String> log = new ArrayList<>();
+            final TestTimings timings = WapitiaTestMain.runSuiteTimed(
+                FixtureSuite.class, log::add, 1, file);
+            assertEquals(4, timings.getMethods().size());
+            assertEquals(2, timings.getClassSetups().size());
+            final MethodTiming slowest = timings.slowest(1).get(0);
+            assertEquals("pass2", slowest.getMethodName());
+            assertTrue(slowest.getNanos() >= 20_000_000L);
+            assertEquals(slowest.getNanos(), timings.percentile(100.0));
+            assertEquals(1L, timings.getMethods().stream()
+                .filter(method -> method.getOutcome() == Outcome.FAILED)
+                .count());
+            assertEquals(4, log.size());
+            assertTrue(log.get(2).startsWith("FixtureSuite timings"));
+            assertTrue(log.get(3).endsWith("PassingFixture.pass2"));
+
+            final TestTimings read = TestTimings.read(file);
+            assertEquals(timings.getClassSetups().keySet(),
+                read.getClassSetups().keySet());
+            assertEquals(timings.getMethods().toString(),
+                read.getMethods().toString());
+            assertEquals(Outcome.FAILED, read.getMethods().stream()
+                .filter(method -> method.getMethodName().equals("fail1"))
+                .findFirst().get().getOutcome());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -49,6 +49,23 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     TestCompareTestData.class,
+    TestMappedTextSource.class,
+    TestLineFilter.class,
+    TestWapitiaTestMain.class,
+    TestReadAheadTextSource.class,
+    TestCompactTextSource.class,
+    TestGoldenCache.class,
+    TestLineIndex.class,
+    TestCompressedResources.class,
+    TestNumericComparisons.class,
+    TestLineSubscriber.class,
+    TestLineNormalizer.class,
+    TestRecordFormat.class,
+    TestTestDataMetrics.class,
+    TestShardedSuite.class,
+    TestResidentRunner.class,
+    TestIncrementalSuite.class,
+    TestStreamTextSource.class,
     })
 public class TestWapitiaTestSuite {
 